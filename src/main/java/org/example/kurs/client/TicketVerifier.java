@@ -0,0 +1,177 @@
+package org.example.kurs.client;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Проверка подписанных тикетов на стороне клиента.
+ * Класс использует только JDK (Ed25519, Java 15+), не зависит от остального кода сервера и может быть
+ * скопирован в клиентское приложение как есть. Сервер берет отсюда только формат payload.
+ * <p>
+ * Формат тикета: base64url(payload) + "." + base64url(signature), где payload:
+ * version(1) | serverDate(8) | ticketLifetime(4) | flags(1) | userId(8) | deviceId(8) | expirationDate(8).
+ * Флаги: бит 0 - лицензия заблокирована, биты 1-3 - наличие userId, deviceId, expirationDate.
+ */
+public final class TicketVerifier {
+
+    public static final byte VERSION = 1;
+    public static final String ALGORITHM = "Ed25519";
+
+    private static final int PAYLOAD_LENGTH = 1 + 8 + 4 + 1 + 8 + 8 + 8;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final int FLAG_BLOCKED = 1;
+    private static final int FLAG_USER = 1 << 1;
+    private static final int FLAG_DEVICE = 1 << 2;
+    private static final int FLAG_EXPIRATION = 1 << 3;
+
+    private final PublicKey publicKey;
+
+    public TicketVerifier(PublicKey publicKey) {
+        this.publicKey = publicKey;
+    }
+
+    // Создание по открытому ключу в формате X.509 (base64), который отдает сервер
+    public static TicketVerifier fromBase64(String publicKeyBase64) throws GeneralSecurityException {
+        byte[] encoded = Base64.getDecoder().decode(publicKeyBase64);
+        return new TicketVerifier(KeyFactory.getInstance(ALGORITHM).generatePublic(new X509EncodedKeySpec(encoded)));
+    }
+
+    // Проверка подписи и разбор тикета; IllegalArgumentException, если тикет поврежден или подделан
+    public VerifiedTicket verify(String compactTicket) {
+        int separator = compactTicket == null ? -1 : compactTicket.indexOf('.');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Неверный формат тикета");
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(compactTicket.substring(0, separator));
+            signature = decoder.decode(compactTicket.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неверный формат тикета", e);
+        }
+
+        try {
+            Signature verifier = Signature.getInstance(ALGORITHM);
+            verifier.initVerify(publicKey);
+            verifier.update(payload);
+            if (!verifier.verify(signature)) {
+                throw new IllegalArgumentException("Недействительная подпись тикета");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Недействительная подпись тикета", e);
+        }
+
+        return decodePayload(payload);
+    }
+
+    // Каноническое представление подписываемых данных, общее для сервера и клиента
+    public static byte[] encodePayload(long serverDate, int ticketLifetime, Long userId, Long deviceId,
+                                       Date expirationDate, boolean blocked) {
+        int flags = (blocked ? FLAG_BLOCKED : 0)
+                | (userId != null ? FLAG_USER : 0)
+                | (deviceId != null ? FLAG_DEVICE : 0)
+                | (expirationDate != null ? FLAG_EXPIRATION : 0);
+
+        return ByteBuffer.allocate(PAYLOAD_LENGTH)
+                .put(VERSION)
+                .putLong(serverDate)
+                .putInt(ticketLifetime)
+                .put((byte) flags)
+                .putLong(userId != null ? userId : 0L)
+                .putLong(deviceId != null ? deviceId : 0L)
+                .putLong(expirationDate != null ? expirationDate.getTime() : 0L)
+                .array();
+    }
+
+    private static VerifiedTicket decodePayload(byte[] payload) {
+        if (payload.length != PAYLOAD_LENGTH || payload[0] != VERSION) {
+            throw new IllegalArgumentException("Неподдерживаемая версия тикета");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, PAYLOAD_LENGTH - 1);
+        long serverDate = buffer.getLong();
+        int ticketLifetime = buffer.getInt();
+        int flags = buffer.get();
+        long userId = buffer.getLong();
+        long deviceId = buffer.getLong();
+        long expirationDate = buffer.getLong();
+
+        return new VerifiedTicket(
+                new Date(serverDate),
+                ticketLifetime,
+                (flags & FLAG_USER) != 0 ? userId : null,
+                (flags & FLAG_DEVICE) != 0 ? deviceId : null,
+                (flags & FLAG_EXPIRATION) != 0 ? new Date(expirationDate) : null,
+                (flags & FLAG_BLOCKED) != 0);
+    }
+
+    /**
+     * Проверенное содержимое тикета.
+     */
+    public static final class VerifiedTicket {
+
+        private final Date serverDate;
+        private final int ticketLifetime;   // Срок жизни тикета в днях
+        private final Long userId;
+        private final Long deviceId;
+        private final Date expirationDate;
+        private final boolean blocked;
+
+        VerifiedTicket(Date serverDate, int ticketLifetime, Long userId, Long deviceId,
+                       Date expirationDate, boolean blocked) {
+            this.serverDate = serverDate;
+            this.ticketLifetime = ticketLifetime;
+            this.userId = userId;
+            this.deviceId = deviceId;
+            this.expirationDate = expirationDate;
+            this.blocked = blocked;
+        }
+
+        public Date getServerDate() {
+            return serverDate;
+        }
+
+        public int getTicketLifetime() {
+            return ticketLifetime;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Long getDeviceId() {
+            return deviceId;
+        }
+
+        public Date getExpirationDate() {
+            return expirationDate;
+        }
+
+        public boolean isBlocked() {
+            return blocked;
+        }
+
+        // Время, до которого клиент может доверять тикету без повторной проверки на сервере
+        public Date getTrustedUntil() {
+            long until = serverDate.getTime() + ticketLifetime * DAY_MILLIS;
+            if (expirationDate != null) {
+                until = Math.min(until, expirationDate.getTime());
+            }
+            return new Date(until);
+        }
+
+        // Лицензия действительна, если тикет не заблокирован и не истек
+        public boolean isValidAt(Date date) {
+            return !blocked && expirationDate != null && date.before(getTrustedUntil());
+        }
+    }
+}
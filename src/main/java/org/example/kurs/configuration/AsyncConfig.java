@@ -0,0 +1,41 @@
+package org.example.kurs.configuration;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Пул для @Async обработчиков событий (запись истории лицензий).
+ * Обработчик ждет коммита пакета, поэтому размер пула ограничивает размер группового коммита.
+ * Пул не объявлен бином, чтобы не заменять applicationTaskExecutor Spring MVC.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig implements AsyncConfigurer, DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    public AsyncConfig(@Value("${licensing.history.listener-threads:32}") int threads) {
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("event-listener-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(5);
+        executor.initialize();
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
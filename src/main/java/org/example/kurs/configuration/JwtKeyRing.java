@@ -0,0 +1,325 @@
+package org.example.kurs.configuration;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Набор RSA-ключей подписи JWT (RS256) с ротацией.
+ * <p>
+ * Новый ключ сначала только публикуется и начинает подписывать токены через activation delay
+ * (refresh-interval + jwks-max-age): к этому времени его прочитали все узлы и внешние проверяющие
+ * обновили кеш /.well-known/jwks.json. В заголовке токена передается kid. Старые ключи остаются
+ * для проверки, пока не истекут все подписанные ими токены. Ключи хранятся в каталоге jwt.keys.directory
+ * (файл {@code <kid>.key}, PKCS8 в base64): узлы с общим каталогом используют один набор ключей.
+ * Токен с неизвестным kid (ключ создан другим узлом после последнего чтения) перечитывает каталог.
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private static final String KEY_SUFFIX = ".key";
+
+    // Не чаще одного перечитывания каталога в секунду по неизвестным kid (защита от подбора kid)
+    private static final long UNKNOWN_KID_RELOAD_INTERVAL = 1000;
+
+    @Value("${jwt.signing-mode:RS256}")
+    private JwtTokenProvider.SigningMode signingMode;
+
+    @Value("${jwt.keys.directory:data/jwt-keys}")
+    private String directoryName;
+
+    @Value("${jwt.keys.size:2048}")
+    private int keySize;
+
+    @Value("${jwt.keys.rotation-interval:86400000}")
+    private long rotationInterval;
+
+    @Value("${jwt.keys.refresh-interval:60000}")
+    private long refreshInterval;
+
+    // Время кеширования JWKS внешними проверяющими (Cache-Control: max-age)
+    @Value("${jwt.keys.jwks-max-age:300000}")
+    private long jwksMaxAge;
+
+    @Value("${jwt.expiration}")
+    private long tokenLifetime;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private Clock clock = Clock.systemUTC();
+
+    private Path directory;
+    private volatile long lastUnknownKidReload;
+
+    // Ключи по убыванию времени создания; текущий ключ подписи выбирает current()
+    private volatile List<SigningKey> keys = List.of();
+
+    @PostConstruct
+    public void init() {
+        if (signingMode != JwtTokenProvider.SigningMode.RS256) {
+            return;
+        }
+        if (!directoryName.isBlank()) {
+            directory = Path.of(directoryName);
+        } else {
+            logger.warn("Каталог ключей JWT не задан: ключи создаются в памяти и не переживут перезапуск, " +
+                    "токены других узлов проверяться не будут");
+        }
+        refresh();
+    }
+
+    public boolean isEnabled() {
+        return signingMode == JwtTokenProvider.SigningMode.RS256;
+    }
+
+    // Самый новый ключ, опубликованный не менее activation delay назад; при первом запуске - единственный ключ
+    public SigningKey current() {
+        List<SigningKey> snapshot = keys;
+        if (snapshot.isEmpty()) {
+            throw new IllegalStateException("Нет ключа подписи JWT");
+        }
+        long now = clock.millis();
+        for (SigningKey key : snapshot) {
+            if (isActive(key, now)) {
+                return key;
+            }
+        }
+        return snapshot.get(snapshot.size() - 1);
+    }
+
+    public SigningKey find(String kid) {
+        for (SigningKey key : keys) {
+            if (key.getKid().equals(kid)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    // Ключ для проверки токена; неизвестный kid перечитывает каталог (ключ другого узла еще не загружен)
+    public SigningKey findOrReload(String kid) {
+        SigningKey key = find(kid);
+        if (key != null || directory == null) {
+            return key;
+        }
+        long now = clock.millis();
+        if (now - lastUnknownKidReload < UNKNOWN_KID_RELOAD_INTERVAL) {
+            return null;
+        }
+        lastUnknownKidReload = now;
+        refresh();
+        return find(kid);
+    }
+
+    // Задержка между публикацией ключа и началом подписи им
+    public long getActivationDelay() {
+        return refreshInterval + jwksMaxAge;
+    }
+
+    public long getJwksMaxAge() {
+        return jwksMaxAge;
+    }
+
+    // Часы подменяются в тестах
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    // Перечитывание каталога (ключи других узлов), ротация и удаление ключей, которые больше не нужны
+    @Scheduled(initialDelayString = "${jwt.keys.refresh-interval:60000}",
+            fixedDelayString = "${jwt.keys.refresh-interval:60000}")
+    public synchronized void refresh() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            List<SigningKey> loaded = directory != null ? load() : new ArrayList<>(keys);
+            long now = clock.millis();
+            // Следующий ключ создается заранее, чтобы начать подпись им ровно через rotation-interval
+            if (loaded.isEmpty() || loaded.get(0).getCreatedAt() + Math.max(0, rotationInterval - getActivationDelay()) <= now) {
+                SigningKey created = generate(now);
+                if (directory != null) {
+                    store(created);
+                }
+                loaded.add(0, created);
+                logger.info("Создан новый ключ подписи JWT: {}", created.getKid());
+            }
+            keys = List.copyOf(retain(loaded, now));
+        } catch (IOException | GeneralSecurityException e) {
+            // Продолжаем работать с уже загруженными ключами
+            logger.error("Не удалось обновить ключи JWT: {}", e.getMessage());
+            if (keys.isEmpty()) {
+                throw new IllegalStateException("Не удалось загрузить ключи JWT", e);
+            }
+        }
+    }
+
+    // Открытые ключи в формате JWK Set (RFC 7517)
+    public Map<String, Object> getJwks() {
+        List<Map<String, Object>> jwks = keys.stream().map(key -> {
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "RSA");
+            jwk.put("use", "sig");
+            jwk.put("alg", "RS256");
+            jwk.put("kid", key.getKid());
+            jwk.put("n", base64Url(key.getPublicKey().getModulus()));
+            jwk.put("e", base64Url(key.getPublicKey().getPublicExponent()));
+            return jwk;
+        }).collect(Collectors.toList());
+        return Map.of("keys", jwks);
+    }
+
+    // Ключ нужен, пока не истекли токены, подписанные до начала подписи следующим ключом (с запасом на обновление узлов)
+    private List<SigningKey> retain(List<SigningKey> sorted, long now) {
+        List<SigningKey> retained = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            SigningKey key = sorted.get(i);
+            boolean expired = i > 0 && sorted.get(i - 1).getCreatedAt() + getActivationDelay() + tokenLifetime + refreshInterval < now;
+            if (!expired) {
+                retained.add(key);
+            } else if (directory != null) {
+                try {
+                    Files.deleteIfExists(directory.resolve(key.getKid() + KEY_SUFFIX));
+                    logger.info("Удален устаревший ключ подписи JWT: {}", key.getKid());
+                } catch (IOException e) {
+                    logger.warn("Не удалось удалить ключ JWT {}: {}", key.getKid(), e.getMessage());
+                }
+            }
+        }
+        return retained;
+    }
+
+    private boolean isActive(SigningKey key, long now) {
+        return key.getCreatedAt() + getActivationDelay() <= now;
+    }
+
+    private List<SigningKey> load() throws IOException, GeneralSecurityException {
+        Files.createDirectories(directory);
+        List<SigningKey> loaded = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(KEY_SUFFIX)).collect(Collectors.toList());
+        }
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String kid = name.substring(0, name.length() - KEY_SUFFIX.length());
+            SigningKey known = find(kid);
+            if (known != null) {
+                loaded.add(known);
+                continue;
+            }
+            try {
+                byte[] encoded = Base64.getDecoder().decode(Files.readString(file, StandardCharsets.US_ASCII).trim());
+                RSAPrivateCrtKey privateKey = (RSAPrivateCrtKey) keyFactory.generatePrivate(new PKCS8EncodedKeySpec(encoded));
+                RSAPublicKey publicKey = (RSAPublicKey) keyFactory.generatePublic(
+                        new RSAPublicKeySpec(privateKey.getModulus(), privateKey.getPublicExponent()));
+                loaded.add(new SigningKey(kid, createdAt(kid), privateKey, publicKey));
+            } catch (GeneralSecurityException | IllegalArgumentException | ClassCastException e) {
+                logger.warn("Пропущен некорректный файл ключа JWT {}: {}", name, e.getMessage());
+            }
+        }
+        loaded.sort(Comparator.comparingLong(SigningKey::getCreatedAt).reversed());
+        return loaded;
+    }
+
+    private SigningKey generate(long now) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(keySize, random);
+        KeyPair pair = generator.generateKeyPair();
+        byte[] suffix = new byte[4];
+        random.nextBytes(suffix);
+        // kid содержит время создания: порядок ключей не зависит от метаданных файлов
+        String kid = now + "-" + HexFormat.of().formatHex(suffix);
+        return new SigningKey(kid, now, (RSAPrivateCrtKey) pair.getPrivate(), (RSAPublicKey) pair.getPublic());
+    }
+
+    // Запись через временный файл, чтобы другие узлы не прочитали ключ частично
+    private void store(SigningKey key) throws IOException {
+        Path target = directory.resolve(key.getKid() + KEY_SUFFIX);
+        Path temp = Files.createTempFile(directory, key.getKid(), ".tmp");
+        try {
+            Files.writeString(temp, Base64.getEncoder().encodeToString(key.getPrivateKey().getEncoded()), StandardCharsets.US_ASCII);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long createdAt(String kid) {
+        int separator = kid.indexOf('-');
+        return Long.parseLong(separator > 0 ? kid.substring(0, separator) : kid);
+    }
+
+    // Беззнаковое big-endian представление без ведущих нулей (RFC 7518, 6.3.1)
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static final class SigningKey {
+
+        private final String kid;
+        private final long createdAt;
+        private final RSAPrivateCrtKey privateKey;
+        private final RSAPublicKey publicKey;
+
+        private SigningKey(String kid, long createdAt, RSAPrivateCrtKey privateKey, RSAPublicKey publicKey) {
+            this.kid = kid;
+            this.createdAt = createdAt;
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public RSAPrivateCrtKey getPrivateKey() {
+            return privateKey;
+        }
+
+        public RSAPublicKey getPublicKey() {
+            return publicKey;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.kurs.configuration;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +8,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
@@ -25,13 +27,27 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 
         String token = resolveToken(request);
 
-        if (token != null && jwtTokenProvider.validateToken(token)) {
-            SecurityContextHolder.getContext().setAuthentication(jwtTokenProvider.getAuthentication(token));
+        // Токен проверяется и разбирается один раз; claims доступны контроллерам через атрибут запроса
+        Claims claims = token != null ? jwtTokenProvider.resolveClaims(token) : null;
+        if (claims != null) {
+            request.setAttribute(JwtTokenProvider.CLAIMS_ATTRIBUTE, claims);
+            try {
+                SecurityContextHolder.getContext().setAuthentication(jwtTokenProvider.getAuthentication(claims));
+            } catch (UsernameNotFoundException e) {
+                // Пользователь удален после выдачи токена - запрос остается неаутентифицированным
+                SecurityContextHolder.clearContext();
+            }
         }
 
         filterChain.doFilter(request, response);
     }
 
+    // Асинхронный dispatch (StreamingResponseBody, CompletableFuture) тоже проходит авторизацию - аутентифицируем повторно
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
     private String resolveToken(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
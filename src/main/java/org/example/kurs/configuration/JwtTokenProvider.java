@@ -1,22 +1,29 @@
 package org.example.kurs.configuration;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.example.kurs.service.impl.UserStateCache;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
-import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -26,7 +33,34 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class JwtTokenProvider {
 
+    // Атрибут запроса с claims, проверенными в JwtTokenFilter
+    public static final String CLAIMS_ATTRIBUTE = JwtTokenProvider.class.getName() + ".claims";
+
+    public enum AuthenticationMode {
+        DATABASE,   // Пользователь загружается из базы на каждый запрос
+        CLAIMS      // Пользователь и права берутся из подписанного токена
+    }
+
+    public enum SigningMode {
+        HMAC,       // Общий секрет jwt.secret: проверить токен может только узел, знающий секрет
+        RS256       // Ключи RSA из JwtKeyRing: проверка по открытому ключу из /.well-known/jwks.json
+    }
+
     private final UserDetailsService userDetailsService;
+    private final UserStateCache userStateCache;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final JwtKeyRing keyRing;
+
+    @Value("${jwt.authentication-mode:CLAIMS}")
+    private AuthenticationMode authenticationMode;
+
+    @Value("${jwt.signing-mode:RS256}")
+    private SigningMode signingMode;
+
+    // Принимать токены без kid, подписанные общим секретом (выданные до перехода на RS256).
+    // Только на время жизни токена после запуска: позже таких токенов быть не может
+    @Value("${jwt.hmac-fallback:false}")
+    private boolean hmacFallback;
 
     @Value("${jwt.secret}")
     private String secret;
@@ -34,8 +68,25 @@ public class JwtTokenProvider {
     @Value("${jwt.expiration}")
     private long expiration;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    // Ключ HMAC и парсер создаются один раз, оба потокобезопасны
+    private Key signingKey;
+    private JwtParser parser;
+    private long hmacFallbackUntil;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        hmacFallbackUntil = System.currentTimeMillis() + expiration;
+        parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // В jjwt 0.11 метод объявлен с сырым JwsHeader: JwsHeader<?> его не переопределяет
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveVerificationKey(header.getKeyId());
+                    }
+                })
+                .build();
     }
 
     public String createToken(String username, Set<GrantedAuthority> authorities) {
@@ -48,87 +99,135 @@ public class JwtTokenProvider {
         Date now = new Date();
         Date expiationDate = new Date(now.getTime() + expiration);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setClaims(claims)
                 .setIssuedAt(now)
-                .setExpiration(expiationDate)
-                .signWith(getSigningKey())
-                .compact();
+                .setExpiration(expiationDate);
+        if (signingMode == SigningMode.RS256) {
+            JwtKeyRing.SigningKey key = keyRing.current();
+            builder.setHeaderParam(JwsHeader.KEY_ID, key.getKid())
+                    .signWith(key.getPrivateKey(), SignatureAlgorithm.RS256);
+        } else {
+            builder.signWith(signingKey);
+        }
+        return builder.compact();
     }
 
-    public boolean validateToken(String token) {
+    // Ключ проверки по kid из заголовка; тип ключа должен соответствовать алгоритму, иначе jjwt отклонит токен
+    private Key resolveVerificationKey(String kid) {
+        if (kid == null) {
+            if (signingMode == SigningMode.HMAC || hmacFallback && System.currentTimeMillis() < hmacFallbackUntil) {
+                return signingKey;
+            }
+            throw new JwtException("Токен без идентификатора ключа");
+        }
+        JwtKeyRing.SigningKey key = keyRing.isEnabled() ? keyRing.findOrReload(kid) : null;
+        if (key == null) {
+            throw new JwtException("Неизвестный ключ подписи: " + kid);
+        }
+        return key.getPublicKey();
+    }
+
+    // Проверка подписи и разбор токена; повторный токен берется из кеша без криптографии
+    public Claims parseClaims(String token) {
+        String digest = VerifiedTokenCache.digest(token);
+        Claims claims = verifiedTokenCache.get(digest);
+        if (claims == null) {
+            claims = parser.parseClaimsJws(token).getBody();
+            verifiedTokenCache.put(digest, claims);
+        }
+        return claims;
+    }
+
+    // Claims валидного токена или null, если токен не прошел проверку
+    public Claims resolveClaims(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (Exception e) {
-            return false;
+            return parseClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
         }
     }
 
+    public boolean validateToken(String token) {
+        return resolveClaims(token) != null;
+    }
+
     public String getUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public Authentication getAuthentication(String token) {
-        String username = getUsername(token);
+        return getAuthentication(parseClaims(token));
+    }
+
+    public Authentication getAuthentication(Claims claims) {
+        String username = claims.getSubject();
+        if (authenticationMode == AuthenticationMode.DATABASE) {
+            return loadAuthentication(username);
+        }
+
+        // Пользователь изменен или удален после выдачи токена - права из токена устарели, проверяем по базе
+        if (userStateCache.isRevoked(username, claims.getIssuedAt())) {
+            return loadAuthentication(username);
+        }
+
+        Set<GrantedAuthority> authorities = getRoles(claims).stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toSet());
+        UserDetails userDetails = new User(username, "", authorities);
+        return new UsernamePasswordAuthenticationToken(userDetails, null, authorities);
+    }
+
+    private Authentication loadAuthentication(String username) {
         UserDetails userDetails = userDetailsService.loadUserByUsername(username);
         return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
     }
 
+    // Роли берутся из аутентификации запроса, а не из claim "auth": для пользователя, измененного после выдачи
+    // токена, фильтр загружает их из базы, поэтому понижение роли действует сразу, а не после истечения токена.
+    // Удаленный пользователь и запрос без аутентификации ролей не имеют
     public Set<String> getRolesFromRequest(HttpServletRequest request) {
-        // Извлекаем токен из запроса
-        String token = resolveToken(request);
-
-        // Если токен не найден, выбрасываем исключение или возвращаем пустой набор
-        if (token == null) {
-            throw new IllegalArgumentException("Токен не найден в запросе");
+        if (!(request.getUserPrincipal() instanceof Authentication authentication)) {
+            return Set.of();
         }
-
-        // Декодируем и извлекаем роли из токена
-        return getRolesFromToken(token);
+        return authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
     }
 
     public String getEmailFromRequest(HttpServletRequest request) {
-        // Извлекаем токен из запроса
-        String token = resolveToken(request);
+        return getClaimsFromRequest(request).getSubject();
+    }
 
-        // Если токен не найден, выбрасываем исключение или возвращаем пустой набор
-        if (token == null) {
-            throw new IllegalArgumentException("Токен не найден в запросе");
-        }
+    public String getEmailFromToken(String token) {
+        return parseClaims(token).getSubject();
+    }
 
-        // Декодируем и извлекаем роли из токена
-        return getEmailFromToken(token);
+    public Set<String> getRolesFromToken(String token) {
+        return getRoles(parseClaims(token));
     }
 
-    public String getEmailFromToken(String token)
-    {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey()) // Используем секретный ключ для проверки подписи
-                .build()
-                .parseClaimsJws(token) // Разбираем токен
-                .getBody(); // Извлекаем тело (claims)
+    // Claims, сохраненные фильтром; если фильтр не выполнялся - разбираем токен из заголовка
+    private Claims getClaimsFromRequest(HttpServletRequest request) {
+        Object attribute = request.getAttribute(CLAIMS_ATTRIBUTE);
+        if (attribute instanceof Claims claims) {
+            return claims;
+        }
 
-        String email = claims.getSubject();
+        // Извлекаем токен из запроса
+        String token = resolveToken(request);
 
-        return email;
+        // Если токен не найден, выбрасываем исключение
+        if (token == null) {
+            throw new IllegalArgumentException("Токен не найден в запросе");
+        }
 
+        Claims claims = parseClaims(token);
+        request.setAttribute(CLAIMS_ATTRIBUTE, claims);
+        return claims;
     }
-    public Set<String> getRolesFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey()) // Используем секретный ключ для проверки подписи
-                .build()
-                .parseClaimsJws(token) // Разбираем токен
-                .getBody(); // Извлекаем тело (claims)
 
+    private static Set<String> getRoles(Claims claims) {
         // Извлекаем роли из claim "auth"
         List<String> roles = (List<String>) claims.get("auth");
 
@@ -136,7 +235,7 @@ public class JwtTokenProvider {
         return roles.stream().collect(Collectors.toSet());
     }
 
-    private String resolveToken(HttpServletRequest request) {
+    public String resolveToken(HttpServletRequest request) {
         // Получаем значение заголовка Authorization из запроса
         String bearerToken = request.getHeader("Authorization");
 
@@ -150,4 +249,3 @@ public class JwtTokenProvider {
         return null;
     }
 }
-
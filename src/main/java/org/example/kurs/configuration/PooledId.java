@@ -0,0 +1,23 @@
+package org.example.kurs.configuration;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Идентификатор из таблицы id_generators, выдаваемый блоками (см. IdentifierAllocator).
+ * Значение известно до INSERT, поэтому Hibernate группирует вставки в пакеты JDBC.
+ */
+@IdGeneratorType(PooledIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PooledId {
+
+    // Строка в id_generators (имя таблицы)
+    String value();
+
+    int allocationSize() default 50;
+}
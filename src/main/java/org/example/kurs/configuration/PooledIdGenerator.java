@@ -0,0 +1,74 @@
+package org.example.kurs.configuration;
+
+import org.example.kurs.service.impl.IdentifierAllocator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+import org.hibernate.service.ServiceRegistry;
+
+import java.lang.reflect.Member;
+
+// Генератор для @PooledId: Hibernate создает его сам, поэтому распределитель берется из контейнера бинов
+// Hibernate (SpringBeanContainer контекста, которому принадлежит SessionFactory)
+public class PooledIdGenerator implements IdentifierGenerator {
+
+    // Существующий singleton-бин контекста, а не новый экземпляр, как при JPA-совместимом создании
+    private static final BeanContainer.LifecycleOptions SINGLETON = new BeanContainer.LifecycleOptions() {
+        @Override
+        public boolean canUseCachedReferences() {
+            return true;
+        }
+
+        @Override
+        public boolean useJpaCompliantCreation() {
+            return false;
+        }
+    };
+
+    // Без контейнера Spring распределитель создать нельзя: ему нужны настройки источника данных
+    private static final BeanInstanceProducer NO_FALLBACK = new BeanInstanceProducer() {
+        @Override
+        public <B> B produceBeanInstance(Class<B> beanType) {
+            throw new IllegalStateException("IdentifierAllocator недоступен в контейнере бинов Hibernate");
+        }
+
+        @Override
+        public <B> B produceBeanInstance(String name, Class<B> beanType) {
+            return produceBeanInstance(beanType);
+        }
+    };
+
+    private final String name;
+    private final int allocationSize;
+    private final ServiceRegistry serviceRegistry;
+
+    // Распределитель запрашивается при первой вставке: при создании генератора контекст еще строится
+    private volatile IdentifierAllocator allocator;
+
+    public PooledIdGenerator(PooledId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.name = config.value();
+        this.allocationSize = config.allocationSize();
+        this.serviceRegistry = context.getServiceRegistry();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return allocator().next(name, allocationSize);
+    }
+
+    private IdentifierAllocator allocator() {
+        IdentifierAllocator resolved = allocator;
+        if (resolved == null) {
+            BeanContainer container = serviceRegistry.requireService(ManagedBeanRegistry.class).getBeanContainer();
+            if (container == null) {
+                throw new IllegalStateException("Контейнер бинов Hibernate не настроен, IdentifierAllocator недоступен");
+            }
+            resolved = container.getBean(IdentifierAllocator.class, SINGLETON, NO_FALLBACK).getBeanInstance();
+            allocator = resolved;
+        }
+        return resolved;
+    }
+}
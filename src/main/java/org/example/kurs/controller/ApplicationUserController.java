@@ -1,9 +1,19 @@
 package org.example.kurs.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.ApplicationRole;
 import org.example.kurs.model.ApplicationUser;
 import org.example.kurs.repository.ApplicationUserRepository;
+import org.example.kurs.service.impl.AdminListService;
+import org.example.kurs.service.impl.UserImportService;
+import org.example.kurs.service.impl.UserStateCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
@@ -15,12 +25,40 @@ public class ApplicationUserController {
     @Autowired
     private ApplicationUserRepository userRepository;
 
+    @Autowired
+    private UserStateCache userStateCache;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private AdminListService adminListService;
+
     // Получение всех пользователей
     @GetMapping
     public List<ApplicationUser> getAllUsers() {
         return userRepository.findAll();
     }
 
+    // Постраничный список пользователей: следующая страница - по nextCursor
+    @GetMapping("/page")
+    public ResponseEntity<?> getUserPage(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) ApplicationRole role,
+                                         HttpServletRequest request) {
+        if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(adminListService.users(cursor, limit, role));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     // Получение пользователя по ID
     @GetMapping("/{id}")
     public ApplicationUser getUserById(@PathVariable Long id) {
@@ -38,12 +76,35 @@ public class ApplicationUserController {
     @PutMapping("/{id}")
     public ApplicationUser updateUser(@PathVariable Long id, @RequestBody ApplicationUser user) {
         user.setId(id);  // Обновление ID пользователя
-        return userRepository.save(user);
+        // Роль или email могли измениться - токены, выданные до обновления, проверяются по базе
+        userRepository.findById(id).ifPresent(existing -> userStateCache.invalidate(existing.getEmail()));
+        ApplicationUser saved = userRepository.save(user);
+        userStateCache.invalidate(saved.getEmail());
+        return saved;
     }
 
     // Удаление пользователя по ID
     @DeleteMapping("/{id}")
     public void deleteUser(@PathVariable Long id) {
+        Optional<ApplicationUser> user = userRepository.findById(id);
         userRepository.deleteById(id);
+        user.ifPresent(deleted -> userStateCache.invalidate(deleted.getEmail()));
+    }
+
+    // Массовое создание пользователей из CSV (text/csv) или NDJSON (application/x-ndjson).
+    // Ответ - NDJSON с результатом по каждой строке и итоговой строкой summary
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<StreamingResponseBody> importUsers(HttpServletRequest request) {
+        if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+
+        StreamingResponseBody body = output -> userImportService.importUsers(request.getInputStream(), format, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 }
@@ -1,12 +1,13 @@
 package org.example.kurs.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,6 +17,12 @@ import org.example.kurs.model.ApplicationUser;
 import org.example.kurs.model.AuthenticationRequest;
 import org.example.kurs.model.AuthenticationResponse;
 import org.example.kurs.repository.ApplicationUserRepository;
+import org.example.kurs.service.impl.LoginThrottle;
+import org.example.kurs.service.impl.PasswordHashingService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/auth")
@@ -25,28 +32,62 @@ public class AuthenticationController {
     private final ApplicationUserRepository ApplicationUserRepository;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
+    private final PasswordHashingService passwordHashingService;
+    private final LoginThrottle loginThrottle;
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody AuthenticationRequest request) {
-        try {
-            String email = request.getEmail();
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody AuthenticationRequest request,
+                                                      HttpServletRequest httpRequest) {
+        String email = request.getEmail();
+        String ip = httpRequest.getRemoteAddr();
 
-            ApplicationUser user = ApplicationUserRepository.findByEmail(email)
-                    .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        // Ограничение попыток по IP и учетной записи проверяется до хеширования пароля
+        long retryAfter = loginThrottle.tryAcquire(email, ip);
+        if (retryAfter > 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body("Слишком много попыток входа, повторите позже"));
+        }
 
-            authenticationManager
-                    .authenticate(
-                            new UsernamePasswordAuthenticationToken(
-                                    email, request.getPassword())
-                    );
+        ApplicationUser user = ApplicationUserRepository.findByEmail(email).orElse(null);
+        if (user == null) {
+            return CompletableFuture.completedFuture(unauthorized());
+        }
 
-            String token = jwtTokenProvider
-                    .createToken(email, user.getRole().getGrantedAuthorities());
+        // Проверка пароля (BCrypt) выполняется в пуле PasswordHashingService
+        CompletableFuture<ResponseEntity<?>> response;
+        try {
+            response = passwordHashingService.submit(() -> {
+                authenticationManager
+                        .authenticate(
+                                new UsernamePasswordAuthenticationToken(
+                                        email, request.getPassword())
+                        );
 
-            return ResponseEntity.ok(new AuthenticationResponse(email, token));
-        } catch (AuthenticationException ex) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body("Invalid email or password");
+                String token = jwtTokenProvider
+                        .createToken(email, user.getRole().getGrantedAuthorities());
+
+                loginThrottle.recordSuccess(email, ip);
+                return ResponseEntity.ok(new AuthenticationResponse(email, token));
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Сервис перегружен, повторите попытку позже"));
         }
+
+        return response.exceptionally(ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof AuthenticationException) {
+                loginThrottle.recordFailure(email, ip);
+                return unauthorized();
+            }
+            throw ex instanceof CompletionException completion ? completion : new CompletionException(cause);
+        });
+    }
+
+    private static ResponseEntity<?> unauthorized() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body("Invalid email or password");
     }
 }
@@ -1,6 +1,9 @@
 package org.example.kurs.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.kurs.configuration.JwtTokenProvider;
 import org.example.kurs.model.Device;
+import org.example.kurs.service.impl.AdminListService;
 import org.example.kurs.service.impl.DeviceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -15,10 +18,14 @@ import java.util.Optional;
 public class DeviceController {
 
     private final DeviceService deviceService;
+    private final AdminListService adminListService;
+    private final JwtTokenProvider jwtTokenProvider;
 
     @Autowired
-    public DeviceController(DeviceService deviceService) {
+    public DeviceController(DeviceService deviceService, AdminListService adminListService, JwtTokenProvider jwtTokenProvider) {
         this.deviceService = deviceService;
+        this.adminListService = adminListService;
+        this.jwtTokenProvider = jwtTokenProvider;
     }
 
     // Создание или обновление устройства
@@ -50,6 +57,22 @@ public class DeviceController {
         return ResponseEntity.ok(devices);
     }
 
+    // Постраничный список устройств: следующая страница - по nextCursor
+    @GetMapping("/page")
+    public ResponseEntity<?> getDevicePage(@RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer limit,
+                                           @RequestParam(required = false) Long userId,
+                                           HttpServletRequest request) {
+        if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(adminListService.devices(cursor, limit, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     // Удаление устройства по ID
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteDevice(@PathVariable Long id) {
@@ -0,0 +1,69 @@
+package org.example.kurs.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.service.impl.ExportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+@RestController
+@RequestMapping("/api/export")
+@RequiredArgsConstructor
+public class ExportController {
+
+    private final ExportService exportService;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    // Тайм-аут асинхронной выгрузки; общий тайм-аут Spring MVC (30 с в Tomcat) прервал бы долгую выгрузку
+    @Value("${export.timeout:3600000}")
+    private long exportTimeout;
+
+    // Полная выгрузка таблицы: licenses, devices, device_license, license_history; format=ndjson|csv.
+    // Набор пишется прямо в ответ внутри задачи; слот выгрузки занимается и освобождается там же
+    @GetMapping("/{dataset}")
+    public WebAsyncTask<ResponseEntity<String>> export(@PathVariable String dataset,
+                                                       @RequestParam(defaultValue = "ndjson") String format,
+                                                       HttpServletRequest request,
+                                                       HttpServletResponse response) {
+        return new WebAsyncTask<>(exportTimeout, () -> {
+            if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            if (!exportService.isDataset(dataset)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Доступные наборы: " + exportService.datasets());
+            }
+            ExportService.Format exportFormat;
+            try {
+                exportFormat = ExportService.Format.valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body("Формат выгрузки: ndjson или csv");
+            }
+            if (!exportService.tryAcquire()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "60")
+                        .body("Выполняется максимальное число выгрузок");
+            }
+            try {
+                String fileName = dataset + (exportFormat == ExportService.Format.CSV ? ".csv" : ".ndjson");
+                response.setContentType(exportFormat == ExportService.Format.CSV ? "text/csv;charset=UTF-8" : "application/x-ndjson");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+                exportService.export(dataset, exportFormat, response.getOutputStream());
+                response.flushBuffer();
+            } finally {
+                exportService.release();
+            }
+            // Ответ уже записан: null означает, что Spring не пишет тело повторно
+            return null;
+        });
+    }
+}
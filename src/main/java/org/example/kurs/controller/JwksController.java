@@ -0,0 +1,29 @@
+package org.example.kurs.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.configuration.JwtKeyRing;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+
+    // Открытые ключи проверки JWT для внешних узлов; новый ключ публикуется раньше, чем начинает подписывать,
+    // на время кеширования (jwt.keys.jwks-max-age)
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        Map<String, Object> jwks = keyRing.isEnabled() ? keyRing.getJwks() : Map.of("keys", List.of());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(keyRing.getJwksMaxAge(), TimeUnit.MILLISECONDS))
+                .body(jwks);
+    }
+}
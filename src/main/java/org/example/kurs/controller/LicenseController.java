@@ -1,8 +1,17 @@
 package org.example.kurs.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.kurs.configuration.JwtTokenProvider;
 import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseStatus;
+import org.example.kurs.model.LicenseView;
 import org.example.kurs.repository.LicenseRepository;
+import org.example.kurs.service.impl.AdminListService;
+import org.example.kurs.service.impl.LicenseCheckCache;
+import org.example.kurs.service.impl.LicenseExpiryScheduler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -15,30 +24,74 @@ public class LicenseController {
     @Autowired
     private LicenseRepository licenseRepository;
 
+    @Autowired
+    private LicenseCheckCache licenseCheckCache;
+
+    @Autowired
+    private AdminListService adminListService;
+
+    @Autowired
+    private LicenseExpiryScheduler licenseExpiryScheduler;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    // Чтение возвращает проекцию LicenseView: связи лицензии не загружаются и не сериализуются
     @GetMapping
-    public List<License> getAllLicenses() {
-        return licenseRepository.findAll();
+    public List<LicenseView> getAllLicenses() {
+        return licenseRepository.findAllViews();
+    }
+
+    // Постраничный список лицензий: следующая страница - по nextCursor
+    @GetMapping("/page")
+    public ResponseEntity<?> getLicensePage(@RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) Long ownerId,
+                                            @RequestParam(required = false) Long userId,
+                                            @RequestParam(required = false) Long productId,
+                                            @RequestParam(required = false) Boolean blocked,
+                                            @RequestParam(required = false) LicenseStatus status,
+                                            HttpServletRequest request) {
+        if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(adminListService.licenses(cursor, limit, ownerId, userId, productId, blocked, status));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
-    public License getLicenseById(@PathVariable Long id) {
-        Optional<License> license = licenseRepository.findById(id);
+    public LicenseView getLicenseById(@PathVariable Long id) {
+        Optional<LicenseView> license = licenseRepository.findViewById(id);
         return license.orElse(null);
     }
 
     @PostMapping
-    public License createLicense(@RequestBody License license) {
-        return licenseRepository.save(license);
+    public LicenseView createLicense(@RequestBody License license) {
+        License saved = licenseRepository.save(license);
+        licenseExpiryScheduler.schedule(saved.getId(), saved.getEndingDate());
+        return licenseRepository.findViewById(saved.getId()).orElse(null);
     }
 
     @PutMapping("/{id}")
-    public License updateLicense(@PathVariable Long id, @RequestBody License license) {
+    public LicenseView updateLicense(@PathVariable Long id, @RequestBody License license) {
         license.setId(id);
-        return licenseRepository.save(license);
+        // Ревизия и статус берутся из базы: ревизия увеличится, только если изменится статус
+        licenseRepository.findViewById(id).ifPresent(current -> {
+            license.setRevision(current.getRevision());
+            license.setStatus(current.getStatus());
+        });
+        licenseRepository.save(license);
+        licenseCheckCache.evictLicense(id);
+        licenseExpiryScheduler.schedule(id, license.getEndingDate());
+        return licenseRepository.findViewById(id).orElse(null);
     }
 
     @DeleteMapping("/{id}")
     public void deleteLicense(@PathVariable Long id) {
         licenseRepository.deleteById(id);
+        licenseCheckCache.evictLicense(id);
     }
 }
@@ -0,0 +1,117 @@
+package org.example.kurs.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.KeysetPage;
+import org.example.kurs.model.LicenseHistory;
+import org.example.kurs.service.impl.LicenseHistoryArchive;
+import org.example.kurs.service.impl.LicenseHistoryQueryService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/license-history")
+@RequiredArgsConstructor
+public class LicenseHistoryController {
+
+    private final LicenseHistoryQueryService licenseHistoryQueryService;
+    private final LicenseHistoryArchive licenseHistoryArchive;
+    private final ObjectMapper objectMapper;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    // История изменений лицензий, новые записи первыми; следующая страница - по nextCursor
+    @GetMapping
+    public ResponseEntity<?> getHistory(@RequestParam(required = false) Long licenseId,
+                                        @RequestParam(required = false) Long userId,
+                                        @RequestParam(required = false) String status,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer limit,
+                                        HttpServletRequest request) {
+        if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            KeysetPage<LicenseHistory> page = licenseHistoryQueryService.find(licenseId, userId, status, from, to, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Месяцы, перенесенные в архив
+    @GetMapping("/archive")
+    public ResponseEntity<List<String>> getArchivedMonths(HttpServletRequest request) throws IOException {
+        if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(licenseHistoryArchive.months());
+    }
+
+    // Архив месяца (YYYY-MM) в формате NDJSON; файлы читаются потоком без загрузки в память.
+    // Тип ответа объявлен как StreamingResponseBody: иначе Spring сериализует тело в JSON, а не пишет поток
+    @GetMapping("/archive/{month}")
+    public ResponseEntity<StreamingResponseBody> getArchivedHistory(@PathVariable String month,
+                                                                    @RequestParam(required = false) Long licenseId,
+                                                                    @RequestParam(required = false) Long userId,
+                                                                    @RequestParam(required = false) String status,
+                                                                    HttpServletRequest request) throws IOException {
+        if (!jwtTokenProvider.getRolesFromRequest(request).contains("ROLE_ADMIN")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            return text(HttpStatus.BAD_REQUEST, "Некорректный месяц, ожидается YYYY-MM");
+        }
+        if (!licenseHistoryArchive.months().contains(yearMonth.toString())) {
+            return text(HttpStatus.NOT_FOUND, "Архив за " + yearMonth + " не найден");
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            licenseHistoryArchive.read(yearMonth,
+                    history -> (licenseId == null || licenseId.equals(history.getLicenseId()))
+                            && (userId == null || userId.equals(history.getUserId()))
+                            && (status == null || status.equals(history.getStatus())),
+                    history -> {
+                        try {
+                            writer.write(objectMapper.writeValueAsString(history));
+                            writer.newLine();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> text(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(outputStream -> outputStream.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -1,17 +1,35 @@
 package org.example.kurs.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.apache.catalina.User;
 import org.example.kurs.model.*;
 import org.example.kurs.repository.*;
 import org.example.kurs.service.LicenseHistoryService;
+import org.example.kurs.service.ProductService;
+import org.example.kurs.service.impl.DeviceKeyFilter;
+import org.example.kurs.service.impl.IdempotencyService;
+import org.example.kurs.service.impl.LicenseActivationService;
+import org.example.kurs.service.impl.LicenseCheckCache;
+import org.example.kurs.service.impl.LicenseCheckService;
+import org.example.kurs.service.impl.LicenseExpiryScheduler;
+import org.example.kurs.service.impl.LicenseTypeService;
+import org.example.kurs.service.impl.TicketJournal;
+import org.example.kurs.service.impl.TicketSigner;
 import org.example.kurs.configuration.JwtTokenProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -24,8 +42,7 @@ import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-//TODO: 1. Не сохранять тикеты
-//TODO: 2. Добавить CRUD для Device, Product, LicenseType
+//TODO: 1. Добавить CRUD для Device, Product, LicenseType
 
 @RestController
 @RequestMapping("/licensing")
@@ -33,13 +50,40 @@ import org.slf4j.LoggerFactory;
 public class LicensingController {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final ProductRepository productRepository;
+    private final ProductService productService;
     private final ApplicationUserRepository applicationUserRepository;
-    private final LicenseTypeRepository licenseTypeRepository;
+    private final LicenseTypeService licenseTypeService;
     private final LicenseRepository licenseRepository;
     private final DeviceLicenseRepository deviceLicenseRepository;
     private final LicenseHistoryService licenseHistoryService;
     private final DeviceRepository deviceRepository;
+    private final LicenseCheckService licenseCheckService;
+    private final LicenseCheckCache licenseCheckCache;
+    private final ObjectMapper objectMapper;
+    private final TicketSigner ticketSigner;
+    private final TicketJournal ticketJournal;
+    private final DeviceKeyFilter deviceKeyFilter;
+    private final LicenseActivationService licenseActivationService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionTemplate transactionTemplate;
+    private final LicenseExpiryScheduler licenseExpiryScheduler;
+
+    @Value("${licensing.check-batch.max-size:1000}")
+    private int checkBatchMaxSize;
+
+    @Value("${licensing.check-batch.chunk-size:200}")
+    private int checkBatchChunkSize;
+
+    @Value("${licensing.bulk-activation.max-size:10000}")
+    private int bulkActivationMaxSize;
+
+    // Пакет разбивается на части размером chunk-size: при нуле цикл по частям не завершится
+    @PostConstruct
+    public void validateSettings() {
+        if (checkBatchChunkSize <= 0) {
+            throw new IllegalStateException("licensing.check-batch.chunk-size должен быть больше 0: " + checkBatchChunkSize);
+        }
+    }
 
     // Метод для преобразования LocalDate в Date
     private Date convertLocalDateToDate(LocalDate localDate) {
@@ -47,8 +91,15 @@ public class LicensingController {
     }
 
 
+    // Повтор с тем же Idempotency-Key возвращает сохраненный ответ, лицензия повторно не создается
     @PostMapping("/create")
-    public ResponseEntity<?> createLicense(HttpServletRequest request, @RequestBody LicenseCreateRequest requestData) {
+    public ResponseEntity<?> createLicense(HttpServletRequest request, @RequestBody LicenseCreateRequest requestData,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("/licensing/create", jwtTokenProvider.getEmailFromRequest(request),
+                idempotencyKey, requestData, () -> doCreateLicense(request, requestData));
+    }
+
+    private ResponseEntity<?> doCreateLicense(HttpServletRequest request, LicenseCreateRequest requestData) {
         Logger logger = LoggerFactory.getLogger(getClass());
 
         try {
@@ -68,7 +119,7 @@ public class LicensingController {
 
             // 3. Проверка существования продукта по ID
             logger.info("Проверка существования продукта с ID: {}", requestData.getProductId());
-            Product product = productRepository.findById(requestData.getProductId())
+            Product product = productService.getProductById(requestData.getProductId())
                     .orElseThrow(() -> new IllegalArgumentException("Продукт не найден"));
             logger.info("Продукт найден: {}", product.getName());
 
@@ -86,7 +137,7 @@ public class LicensingController {
 
             // 5. Проверка существования типа лицензии по ID
             logger.info("Проверка существования типа лицензии с ID: {}", requestData.getLicenseTypeId());
-            LicenseType licenseType = licenseTypeRepository.findById(requestData.getLicenseTypeId())
+            LicenseType licenseType = licenseTypeService.getLicenseTypeById(requestData.getLicenseTypeId())
                     .orElseThrow(() -> new IllegalArgumentException("Тип лицензии не найден"));
             logger.info("Тип лицензии найден: {}", licenseType.getName());
 
@@ -121,14 +172,15 @@ public class LicensingController {
 
             // Сохраняем лицензию в базе данных
             logger.info("Сохранение лицензии в базе данных...");
-            licenseRepository.save(newLicense);
-            logger.info("Лицензия успешно сохранена в базе данных с ID: {}", newLicense.getId());
-
-            // 8. Запись в history
+            // 8. Запись в history: событие сохраняется той же транзакцией, строка истории пишется после коммита
             String description = "Лицензия создана";
             Date changeDate = convertLocalDateToDate(LocalDate.now());
-            licenseHistoryService.recordLicenseChange(newLicense.getId(), owner.getId(), "Создана", changeDate, description);
-            logger.info("Запись изменений лицензии в историю завершена");
+            transactionTemplate.executeWithoutResult(status -> {
+                licenseRepository.save(newLicense);
+                licenseHistoryService.recordLicenseChange(newLicense.getId(), owner.getId(), "Создана", changeDate, description);
+            });
+            licenseExpiryScheduler.schedule(newLicense.getId(), newLicense.getEndingDate());
+            logger.info("Лицензия успешно сохранена в базе данных с ID: {}", newLicense.getId());
 
             return ResponseEntity.status(HttpStatus.CREATED).body("Лицензия успешно создана");
 
@@ -230,6 +282,8 @@ public class LicensingController {
 
             // Сохраняем изменения в базе данных
             licenseRepository.save(license);
+            licenseCheckCache.evictLicense(license.getId());
+            licenseExpiryScheduler.schedule(license.getId(), newExpirationDate);
             logger.info("Лицензия с кодом {} продлена до: {}", requestData.getCode(), newExpirationDate);
 
             // 7. Создание тикета с подтверждением продления
@@ -257,11 +311,13 @@ public class LicensingController {
             ticket.setActivationDate(activationDate);
             ticket.setDeviceId(deviceId);
             ticket.setTicketLifetime(newDuration);
+            issueTicket(ticket);
             // Логируем тикет
             logger.info("Тикет: {}", ticket);
 
-            // Отправляем ответ с текстом сообщения (разделяем на две строки)
-            return ResponseEntity.status(HttpStatus.OK).body(deviceMessage + "\nЛицензия продлена до: " + newExpirationDate);
+            // Отправляем ответ с текстом сообщения и подписанным тикетом
+            return ResponseEntity.status(HttpStatus.OK).body(deviceMessage + "\nЛицензия продлена до: " + newExpirationDate
+                    + "\nТикет: " + ticket.getDigitalSignature());
 
         } catch (ParseException e) {
             logger.error("Ошибка при парсинге даты: {}", e.getMessage());
@@ -307,7 +363,8 @@ public class LicensingController {
 
 
     @PostMapping("/check")
-    public ResponseEntity<?> checkLicense(HttpServletRequest request, @RequestBody LicenseCheckRequest requestData) {
+    public ResponseEntity<?> checkLicense(HttpServletRequest request, @RequestBody LicenseCheckRequest requestData,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         Logger logger = LoggerFactory.getLogger(getClass());
 
         try {
@@ -321,43 +378,44 @@ public class LicensingController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Ошибка аутентификации");
             }
 
-            // 3. Поиск устройства по MAC-адресу и имени
-            Optional<Device> deviceOptional = deviceRepository.findByMacAddressAndName(requestData.getMacAddress(), requestData.getDeviceName());
-            if (!deviceOptional.isPresent()) {
+            // 3. Поиск устройства и его лицензии (результат кешируется)
+            LicenseCheckResult result = licenseCheckService.check(requestData.getMacAddress(), requestData.getDeviceName());
+
+            if (result.getStatus() == LicenseCheckStatus.DEVICE_NOT_FOUND) {
                 logger.error("Ошибка: устройство не найдено с MAC-адресом {} и именем {}", requestData.getMacAddress(), requestData.getDeviceName());
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Устройство не найдено");
             }
-            Device device = deviceOptional.get();
-            logger.info("Устройство найдено: {}", device);
+            logger.info("Устройство найдено: {}", result.getDeviceId());
 
             // 4. Получение информации о лицензиях устройства
-            Optional<DeviceLicense> deviceLicenseOptional = deviceLicenseRepository.findByDeviceId(device.getId());
-
-            if (!deviceLicenseOptional.isPresent()) {
-                logger.warn("Лицензия не найдена для устройства с ID {}", device.getId());
+            if (result.getStatus() == LicenseCheckStatus.NOT_ACTIVATED) {
+                logger.warn("Лицензия не найдена для устройства с ID {}", result.getDeviceId());
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Активная лицензия для устройства не найдена");
             }
 
-            // 5. Лицензия найдена, извлекаем license_id и находим соответствующую лицензию в таблице licenses
-            DeviceLicense deviceLicense = deviceLicenseOptional.get();
-
-            // Находим лицензию по license_id
-            Optional<License> licenseOptional = licenseRepository.findById(deviceLicense.getLicenseId());
+            // 5. Лицензия найдена
+            if (result.getStatus() == LicenseCheckStatus.FOUND) {
+                // Вердикт не изменился с прошлой проверки клиента: 304 без тела
+                String etag = LicenseCheckService.etag(result);
+                if (LicenseCheckService.matches(ifNoneMatch, etag)) {
+                    logger.info("Лицензия для устройства с ID {} не изменилась", result.getDeviceId());
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                }
 
-            if (licenseOptional.isPresent()) {
-                License license = licenseOptional.get();
                 // Используем ending_date из лицензии вместо expirationDate
-                Ticket ticket = Ticket.createTicket(license.getUser().getId(), false, license.getEndingDate());
-                ticket.setDeviceId(deviceLicense.getDeviceId());
+                Ticket ticket = Ticket.createTicket(result.getUserId(), false, result.getEndingDate());
+                ticket.setDeviceId(result.getDeviceId());
+                ticket.setBlocked(Boolean.TRUE.equals(result.getBlocked()));
+                issueTicket(ticket);
 
                 logger.info("Тикет с подтверждением лицензии: {}", ticket);
 
-                // Отправляем ответ с тикетом
-                return ResponseEntity.status(HttpStatus.OK).body("Лицензия активирована на устройстве. Тикет: " + ticket.getId());
+                // Отправляем ответ с подписанным тикетом
+                return ResponseEntity.status(HttpStatus.OK).eTag(etag).body("Лицензия активирована на устройстве. Тикет: " + ticket.getDigitalSignature());
 
             } else {
                 // Логика, если лицензия не найдена (например, обработка ошибки)
-                logger.error("Лицензия с ID {} не найдена", deviceLicense.getLicenseId());
+                logger.error("Лицензия с ID {} не найдена", result.getLicenseId());
                 // Создаем тикет с ошибкой
                 Ticket ticket = Ticket.createTicket(null, true, null);
                 // Отправляем ответ с тикетом
@@ -373,11 +431,56 @@ public class LicensingController {
     }
 
 
+    // Тип тела объявлен явно: только для ResponseEntity<StreamingResponseBody> ответ пишется потоком,
+    // ResponseEntity<?> с лямбдой в теле Jackson сериализует как {}
+    @PostMapping("/check/batch")
+    public ResponseEntity<StreamingResponseBody> checkLicenses(HttpServletRequest request, @RequestBody List<LicenseCheckRequest> requestData) {
+        Logger logger = LoggerFactory.getLogger(getClass());
+
+        // 1. Извлекаем роли из токена
+        Set<String> roles = jwtTokenProvider.getRolesFromRequest(request);
+        if (roles.isEmpty()) {
+            logger.error("Ошибка аутентификации: отсутствуют роли");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        // 2. Проверка размера пакета
+        if (requestData.size() > checkBatchMaxSize) {
+            logger.warn("Размер пакета {} превышает допустимый {}", requestData.size(), checkBatchMaxSize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .header("X-Max-Batch-Size", String.valueOf(checkBatchMaxSize))
+                    .build();
+        }
+
+        // 3. Проверка частями и потоковая запись результатов в порядке запросов
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.writeStartArray();
+                for (int from = 0; from < requestData.size(); from += checkBatchChunkSize) {
+                    int to = Math.min(from + checkBatchChunkSize, requestData.size());
+                    for (LicenseCheckResult result : licenseCheckService.checkAll(requestData.subList(from, to))) {
+                        generator.writeObject(result);
+                    }
+                    generator.flush();
+                }
+                generator.writeEndArray();
+            }
+        };
+        logger.info("Пакетная проверка лицензий для {} устройств", requestData.size());
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+
+    // Повтор с тем же Idempotency-Key возвращает сохраненный ответ, место повторно не резервируется
     @PostMapping("/activation")
-    public ResponseEntity<?> activateLicense(HttpServletRequest request, @RequestBody LicenseActivationRequest activationRequest) {
+    public ResponseEntity<?> activateLicense(HttpServletRequest request, @RequestBody LicenseActivationRequest activationRequest,
+                                             @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("/licensing/activation", jwtTokenProvider.getEmailFromRequest(request),
+                idempotencyKey, activationRequest, () -> doActivateLicense(request, activationRequest));
+    }
+
+    private ResponseEntity<?> doActivateLicense(HttpServletRequest request, LicenseActivationRequest activationRequest) {
         Logger logger = LoggerFactory.getLogger(getClass());
-        //TODO: проверить существование устройства, проверка доступа к лицензии
-        // по счетчику
         try {
             // 1. Извлекаем роли из токена
             Set<String> roles = jwtTokenProvider.getRolesFromRequest(request);
@@ -388,103 +491,129 @@ public class LicensingController {
                 logger.error("Ошибка аутентификации: отсутствуют роли");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Ошибка аутентификации");
             }
-            // Поиск лицензии по коду
-            Optional<License> licenseOptional = licenseRepository.findByCode(activationRequest.getCode());
-            License license = licenseOptional.get();
-
-
-
-            // 4. Проверка лицензии по коду;
-            if (!licenseOptional.isPresent()) {
-                logger.error("Лицензия с кодом {} не найдена", activationRequest.getCode());
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Лицензия не найдена");
-            }
-            logger.info("Лицензия с кодом {} найдена", activationRequest.getCode());
-
+            // 3-9. Проверка лицензии, регистрация устройства, резервирование места и запись в историю - одной транзакцией
             String email = jwtTokenProvider.getEmailFromRequest(request);
-            Optional<ApplicationUser> userOptional = applicationUserRepository.findByEmail(email);
-            ApplicationUser user = userOptional.get();
-            if (license.getUser() != null) {
-                if (!license.getUser().getEmail().equals(email)) {
+            LicenseActivationResult activation = licenseActivationService.activate(activationRequest.getCode(), email,
+                    activationRequest.getMacAddress(), activationRequest.getDeviceName());
+
+            switch (activation.getStatus()) {
+                case LICENSE_NOT_FOUND:
+                    logger.error("Лицензия с кодом {} не найдена", activationRequest.getCode());
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Лицензия не найдена");
+                case ACCESS_DENIED:
                     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Ошибка");
-                }
-            } else {
-                license.setUser(user);
-            }
-
-            // 3. Регистрация или обновление устройства
-            Optional<Device> deviceOptional = deviceRepository.findByMacAddressAndName(activationRequest.getMacAddress(), activationRequest.getDeviceName());
-            Device device;
-
-            Optional<Device> existingDevice = deviceRepository.findByMacAddressAndName(activationRequest.getMacAddress(), activationRequest.getDeviceName());
-            if (existingDevice.isPresent()) {
-                logger.error("Устройство с MAC-адресом {} и именем {} уже существует", activationRequest.getMacAddress(), activationRequest.getDeviceName());
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Устройство с таким MAC-адресом и именем уже существует");
+                case DEVICE_EXISTS:
+                    logger.error("Устройство с MAC-адресом {} и именем {} уже существует", activationRequest.getMacAddress(), activationRequest.getDeviceName());
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Устройство с таким MAC-адресом и именем уже существует");
+                case NO_SEATS:
+                    logger.warn("Для лицензии с кодом {} нет доступных мест для активации", activationRequest.getCode());
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Нет доступных мест для активации на этой лицензии");
+                default:
+                    break;
             }
 
-            if (deviceOptional.isPresent()) {
-                device = deviceOptional.get();
-                logger.info("Устройство найдено: {}", device);
+            // Транзакция зафиксирована: обновляем фильтр устройств и кеш проверок
+            deviceKeyFilter.put(activationRequest.getMacAddress(), activationRequest.getDeviceName());
+            licenseCheckCache.evict(activationRequest.getMacAddress(), activationRequest.getDeviceName());
+            licenseCheckCache.evictLicense(activation.getLicenseId());
+            logger.info("Лицензия с кодом {} активирована на устройстве с ID {}", activationRequest.getCode(), activation.getDeviceId());
 
-            } else {
-                // Если устройство не найдено, регистрируем его
-                device = new Device();
-                device.setMacAddress(activationRequest.getMacAddress());
-                device.setName(activationRequest.getDeviceName());
-                device.setUserId(license.getUser().getId());
-                deviceRepository.save(device);
-                logger.info("Устройство с MAC-адресом {} и именем {} зарегистрировано", activationRequest.getMacAddress(), activationRequest.getDeviceName());
-            }
+            // 10. Создаем тикет для успешной активации
+            Ticket ticket = Ticket.createTicket(activation.getUserId(), false, activation.getEndingDate());
+            ticket.setDeviceId(activation.getDeviceId());
+            issueTicket(ticket);
+            logger.info("Тикет с подтверждением активации лицензии создан: {}", ticket);
 
-            // 5. Проверка доступных мест для активации устройства на лицензии
-            if (license.getDeviceCount() <= 0) {
-                logger.warn("Для лицензии с кодом {} нет доступных мест для активации", activationRequest.getCode());
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Нет доступных мест для активации на этой лицензии");
-            }
+            return ResponseEntity.status(HttpStatus.OK).body("Лицензия успешно активирована на устройстве. Тикет: " + ticket.getDigitalSignature());
 
-            // 6. Проверка активации лицензии
-            Optional<DeviceLicense> existingDeviceLicenseOptional = deviceLicenseRepository.findByDeviceIdAndLicenseId(device.getId(), license.getId());
+        } catch (Exception e) {
+            logger.error("Произошла ошибка при активации лицензии: {}", e.getMessage(), e);
+            // Создаем тикет с ошибкой
+            Ticket ticket = Ticket.createTicket(null, true, null);
+            logger.info("Тикет с ошибкой: {}", ticket);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Произошла ошибка при активации лицензии");
+        }
+    }
 
-            if (existingDeviceLicenseOptional.isPresent()) {
-                logger.warn("Лицензия с кодом {} уже активирована на устройстве с ID {}", activationRequest.getCode(), device.getId());
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Лицензия уже активирована на данном устройстве");
-            }
 
-            // 7. Активация лицензии на устройстве
-            DeviceLicense deviceLicense = new DeviceLicense();
-            deviceLicense.setLicenseId(license.getId());
-            deviceLicense.setDeviceId(device.getId());
-            deviceLicense.setActivationDate(new Date());
-            deviceLicenseRepository.save(deviceLicense);
-            logger.info("Лицензия с кодом {} активирована на устройстве с ID {}", activationRequest.getCode(), device.getId());
+    // Массовая активация одной лицензии на множестве устройств; результат по каждому устройству
+    @PostMapping("/activation/bulk")
+    public ResponseEntity<?> activateLicenseBulk(HttpServletRequest request, @RequestBody LicenseBulkActivationRequest activationRequest,
+                                                 @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("/licensing/activation/bulk", jwtTokenProvider.getEmailFromRequest(request),
+                idempotencyKey, activationRequest, () -> doActivateLicenseBulk(request, activationRequest));
+    }
 
-            // 8. Обновляем количество доступных мест на лицензии
-            license.setDeviceCount(license.getDeviceCount() - 1);
-            licenseRepository.save(license);
-            logger.info("Количество доступных мест для активации на лицензии с кодом {} уменьшено на 1", activationRequest.getCode());
+    private ResponseEntity<?> doActivateLicenseBulk(HttpServletRequest request, LicenseBulkActivationRequest activationRequest) {
+        Logger logger = LoggerFactory.getLogger(getClass());
 
-            // 9. Запись в историю лицензий
-            String description = "Лицензия активирована на устройстве";
-            Date changeDate = new Date();
-            licenseHistoryService.recordLicenseChange(license.getId(), license.getUser().getId(), "Активирована", changeDate, description);
-            logger.info("Запись изменений лицензии в историю завершена");
+        // 1. Извлекаем роли из токена
+        Set<String> roles = jwtTokenProvider.getRolesFromRequest(request);
+        if (roles.isEmpty()) {
+            logger.error("Ошибка аутентификации: отсутствуют роли");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Ошибка аутентификации");
+        }
 
-            // 10. Создаем тикет для успешной активации
-            Ticket ticket = Ticket.createTicket(null, false, license.getEndingDate());
-            logger.info("Тикет с подтверждением активации лицензии создан: {}", ticket);
+        // 2. Проверка запроса и размера пакета
+        List<LicenseCheckRequest> devices = activationRequest.getDevices();
+        if (activationRequest.getCode() == null || devices == null || devices.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Не указан код лицензии или список устройств");
+        }
+        if (devices.size() > bulkActivationMaxSize) {
+            logger.warn("Размер пакета {} превышает допустимый {}", devices.size(), bulkActivationMaxSize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Максимальный размер пакета: " + bulkActivationMaxSize);
+        }
 
-            return ResponseEntity.status(HttpStatus.OK).body("Лицензия успешно активирована на устройстве");
+        try {
+            // 3. Устройства, привязки, история и резервирование мест - одной транзакцией
+            String email = jwtTokenProvider.getEmailFromRequest(request);
+            List<LicenseActivationResult> results = licenseActivationService.activateBulk(activationRequest.getCode(), email, devices);
+
+            // 4. Транзакция зафиксирована: обновляем фильтр и кеш, выдаем тикеты активированным устройствам
+            Long licenseId = null;
+            int activated = 0;
+            for (LicenseActivationResult result : results) {
+                if (result.getStatus() != LicenseActivationStatus.ACTIVATED) {
+                    continue;
+                }
+                activated++;
+                licenseId = result.getLicenseId();
+                deviceKeyFilter.put(result.getMacAddress(), result.getDeviceName());
+                licenseCheckCache.evict(result.getMacAddress(), result.getDeviceName());
+
+                Ticket ticket = Ticket.createTicket(result.getUserId(), false, result.getEndingDate());
+                ticket.setDeviceId(result.getDeviceId());
+                result.setTicket(issueTicket(ticket).getDigitalSignature());
+            }
+            if (licenseId != null) {
+                licenseCheckCache.evictLicense(licenseId);
+            }
+            logger.info("Массовая активация лицензии с кодом {}: активировано {} из {} устройств",
+                    activationRequest.getCode(), activated, results.size());
 
+            return ResponseEntity.ok(new LicenseBulkActivationResponse(licenseId, activated, results.size() - activated, results));
         } catch (Exception e) {
-            logger.error("Произошла ошибка при активации лицензии: {}", e.getMessage(), e);
-            // Создаем тикет с ошибкой
-            Ticket ticket = Ticket.createTicket(null, true, null);
-            logger.info("Тикет с ошибкой: {}", ticket);
+            logger.error("Произошла ошибка при массовой активации лицензии: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Произошла ошибка при активации лицензии");
         }
     }
 
 
+    // Открытый ключ для проверки подписи тикетов на клиенте (TicketVerifier)
+    @GetMapping("/ticket-key")
+    public ResponseEntity<String> getTicketKey() {
+        return ResponseEntity.ok(ticketSigner.getPublicKey());
+    }
+
+    // Выдача тикета: подпись Ed25519, которую клиент может проверить без обращения к серверу,
+    // и запись в журнал тикетов вместо сохранения в базу данных
+    private Ticket issueTicket(Ticket ticket) {
+        ticketSigner.sign(ticket);
+        ticketJournal.append(ticket);
+        return ticket;
+    }
+
     // Метод для генерации активационного кода (можно улучшить по необходимости)
     private String generateActivationCode() {
         return UUID.randomUUID().toString().replace("-", "").toUpperCase();
@@ -5,18 +5,21 @@ import org.example.kurs.model.ApplicationUser;
 import org.example.kurs.model.ApplicationRole;
 import org.example.kurs.model.RegistrationRequest;
 import org.example.kurs.repository.ApplicationUserRepository;
+import org.example.kurs.service.impl.PasswordHashingService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/auth")
 @RequiredArgsConstructor
 public class RegistrationController {
 
     private final ApplicationUserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
 
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody RegistrationRequest request) {
@@ -25,11 +28,22 @@ public class RegistrationController {
             return ResponseEntity.status(HttpStatus.CONFLICT).body("Email уже используется");
         }
 
+        // В пуле PasswordHashingService выполняется только хеширование пароля; сохранение - в потоке запроса,
+        // чтобы потоки ограниченного пула не ждали базу данных
+        String hash;
+        try {
+            hash = passwordHashingService.encode(request.getPassword()).join();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Сервис перегружен, повторите попытку позже");
+        }
+
         // Создание нового пользователя и установка свойств
         ApplicationUser newUser = new ApplicationUser();
         newUser.setUsername(request.getUsername());
         newUser.setEmail(request.getEmail());
-        newUser.setPassword(passwordEncoder.encode(request.getPassword()));
+        newUser.setPassword(hash);
         newUser.setRole(ApplicationRole.USER); // Устанавливаем роль по умолчанию
 
         userRepository.save(newUser);
@@ -0,0 +1,122 @@
+package org.example.kurs.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.configuration.VerifiedTokenCache;
+import org.example.kurs.service.ProductService;
+import org.example.kurs.service.impl.DeviceKeyFilter;
+import org.example.kurs.service.impl.ExportService;
+import org.example.kurs.service.impl.IdempotencyService;
+import org.example.kurs.service.impl.IdentifierAllocator;
+import org.example.kurs.service.impl.LicenseCheckCache;
+import org.example.kurs.service.impl.LicenseHistoryArchive;
+import org.example.kurs.service.impl.LicenseExpiryScheduler;
+import org.example.kurs.service.impl.LicenseHistoryWriter;
+import org.example.kurs.service.impl.LicenseTypeService;
+import org.example.kurs.service.impl.LoginThrottle;
+import org.example.kurs.service.impl.PasswordHashingService;
+import org.example.kurs.service.impl.TicketJournal;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final LicenseCheckCache licenseCheckCache;
+    private final DeviceKeyFilter deviceKeyFilter;
+    private final TicketJournal ticketJournal;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final PasswordHashingService passwordHashingService;
+    private final LoginThrottle loginThrottle;
+    private final IdempotencyService idempotencyService;
+    private final IdentifierAllocator identifierAllocator;
+    private final LicenseHistoryWriter licenseHistoryWriter;
+    private final LicenseHistoryArchive licenseHistoryArchive;
+    private final ExportService exportService;
+    private final ProductService productService;
+    private final LicenseTypeService licenseTypeService;
+    private final LicenseExpiryScheduler licenseExpiryScheduler;
+
+    // Счетчики кеша проверки лицензий (попадания, промахи, вытеснения)
+    @GetMapping("/license-check-cache")
+    public ResponseEntity<Map<String, Object>> getLicenseCheckCacheStats() {
+        return ResponseEntity.ok(licenseCheckCache.getStats());
+    }
+
+    // Размер фильтра известных устройств и доля ложных срабатываний
+    @GetMapping("/device-filter")
+    public ResponseEntity<Map<String, Object>> getDeviceFilterStats() {
+        return ResponseEntity.ok(deviceKeyFilter.getStats());
+    }
+
+    // Состояние журнала тикетов
+    @GetMapping("/ticket-journal")
+    public ResponseEntity<Map<String, Object>> getTicketJournalStats() {
+        return ResponseEntity.ok(ticketJournal.getStats());
+    }
+
+    // Кеш проверенных JWT
+    @GetMapping("/jwt-cache")
+    public ResponseEntity<Map<String, Object>> getJwtCacheStats() {
+        return ResponseEntity.ok(verifiedTokenCache.getStats());
+    }
+
+    // Пул хеширования паролей: глубина очереди, отказы, время хеширования; ограничение попыток входа
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(passwordHashingService.getStats());
+        stats.put("loginThrottle", loginThrottle.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    // Ключи идемпотентности: повторы из памяти и из базы, конфликты
+    @GetMapping("/idempotency")
+    public ResponseEntity<Map<String, Object>> getIdempotencyStats() {
+        return ResponseEntity.ok(idempotencyService.getStats());
+    }
+
+    // Выделение блоков идентификаторов (id_generators)
+    @GetMapping("/id-allocator")
+    public ResponseEntity<Map<String, Object>> getIdAllocatorStats() {
+        return ResponseEntity.ok(identifierAllocator.getStats());
+    }
+
+    // Групповая запись истории лицензий: пакеты, размер пакета, ошибки
+    @GetMapping("/license-history")
+    public ResponseEntity<Map<String, Object>> getLicenseHistoryStats() {
+        return ResponseEntity.ok(licenseHistoryWriter.getStats());
+    }
+
+    // Перенос истории лицензий в архив: месяцы, строки, последний месяц
+    @GetMapping("/license-history-archive")
+    public ResponseEntity<Map<String, Object>> getLicenseHistoryArchiveStats() {
+        return ResponseEntity.ok(licenseHistoryArchive.getStats());
+    }
+
+    // Выгрузки таблиц: выполнено, строк, выполняется сейчас, отклонено из-за лимита
+    @GetMapping("/export")
+    public ResponseEntity<Map<String, Object>> getExportStats() {
+        return ResponseEntity.ok(exportService.getStats());
+    }
+
+    // Кеш справочников (продукты, типы лицензий): доля попаданий, загрузки, фоновые обновления
+    @GetMapping("/reference-cache")
+    public ResponseEntity<Map<String, Object>> getReferenceCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("products", productService.getCacheStats());
+        stats.put("licenseTypes", licenseTypeService.getCacheStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    // Планировщик истечения лицензий: запланировано, истекло, пакеты, наибольшая задержка
+    @GetMapping("/license-expiry")
+    public ResponseEntity<Map<String, Object>> getLicenseExpiryStats() {
+        return ResponseEntity.ok(licenseExpiryScheduler.getStats());
+    }
+}
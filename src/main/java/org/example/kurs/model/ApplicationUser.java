@@ -1,15 +1,18 @@
 package org.example.kurs.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.kurs.configuration.PooledId;
 
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "uk_users_email", columnList = "email", unique = true))
 @Getter
 @Setter
 @AllArgsConstructor
@@ -17,16 +20,21 @@ import java.util.List;
 public class ApplicationUser {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("users")
     private Long id;
 
     private String username;
+
+    // Хеш пароля принимается в запросах, но не попадает в ответы (списки и страницы пользователей)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
     private String email;
 
     @Enumerated(EnumType.STRING)
     private ApplicationRole role;
 
+    // Не сериализуется: лицензия ссылается на пользователя, и ответ со списком лицензий зацикливается
+    @JsonIgnore
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     private List<License> licenses;
 
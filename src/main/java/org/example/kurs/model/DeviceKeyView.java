@@ -0,0 +1,13 @@
+package org.example.kurs.model;
+
+/**
+ * Проекция ключа устройства (MAC-адрес, имя) для построения фильтра известных устройств.
+ */
+public interface DeviceKeyView {
+
+    Long getId();
+
+    String getMacAddress();
+
+    String getName();
+}
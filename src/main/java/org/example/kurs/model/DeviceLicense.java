@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.kurs.configuration.PooledId;
 
 import java.util.Date;
 
@@ -13,11 +14,15 @@ import java.util.Date;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "device_license")
+@Table(name = "device_license", indexes = {
+        @Index(name = "idx_device_license_device_id_license_id", columnList = "device_id, license_id"),
+        @Index(name = "idx_device_license_license_id", columnList = "license_id"),
+        @Index(name = "idx_device_license_activation_date", columnList = "activation_date")
+})
 public class DeviceLicense {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("device_license")
     @Column(name = "id")
     private Long id;
 
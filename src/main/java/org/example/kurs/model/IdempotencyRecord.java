@@ -0,0 +1,47 @@
+package org.example.kurs.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Сохраненный ответ на запрос с заголовком Idempotency-Key.
+ * Пока запрос выполняется, statusCode пуст, а expiresAt ограничивает время захвата ключа.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "id", length = 64)
+    private String id;  // SHA-256 от (эндпоинт, пользователь, ключ)
+
+    @Column(name = "endpoint", nullable = false)
+    private String endpoint;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;  // SHA-256 тела запроса: повтор ключа с другим телом отклоняется
+
+    @Column(name = "status_code")
+    private Integer statusCode;
+
+    @Column(name = "response_body", columnDefinition = "longtext")
+    private String responseBody;
+
+    @Column(name = "content_type")
+    private String contentType;  // null - тип выбирается конвертером по телу, как и для первого ответа
+
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Date expiresAt;
+}
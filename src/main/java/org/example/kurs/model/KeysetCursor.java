@@ -0,0 +1,42 @@
+package org.example.kurs.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: значения ключа сортировки последнего элемента страницы,
+ * закодированные в base64url. Клиент передает курсор обратно без изменений.
+ */
+public final class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Object... values) {
+        StringBuilder raw = new StringBuilder();
+        for (Object value : values) {
+            if (raw.length() > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(value);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // IllegalArgumentException - курсор поврежден или от другого списка
+    public static String[] decode(String cursor, int parts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор", e);
+        }
+        String[] values = raw.split("\\|", -1);
+        if (values.length != parts) {
+            throw new IllegalArgumentException("Некорректный курсор");
+        }
+        return values;
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.kurs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Страница keyset-пагинации: элементы и курсор следующей страницы (null - страница последняя).
+ * Общее количество не считается - стоимость страницы не зависит от ее номера.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeysetPage<T> {
+
+    private List<T> items;
+    private String nextCursor;
+}
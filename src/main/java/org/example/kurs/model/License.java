@@ -5,11 +5,15 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.kurs.configuration.PooledId;
 
 import java.util.Date;
 
 @Entity
-@Table(name = "licenses")
+@Table(name = "licenses", indexes = {
+        @Index(name = "uk_licenses_code", columnList = "code", unique = true),
+        @Index(name = "idx_licenses_status_ending_date", columnList = "status, ending_date")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -17,27 +21,27 @@ import java.util.Date;
 public class License {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("licenses")
     @Column(name = "id")
     private Long id;
 
     @Column(name = "code", nullable = false)
     private String code;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id", nullable = true)
     private ApplicationUser user;  // Ссылка на владельца/пользователя, кому принадлежит лицензия
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", referencedColumnName = "id", nullable = false)
     private ApplicationUser owner;  // Ссылка на владельца лицензии
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", referencedColumnName = "id", nullable = false)
     private Product product;  // Ссылка на продукт, к которому прикреплена лицензия
 
     // Ссылка на объект LicenseType, связь с таблицей типов лицензий
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "type_id", referencedColumnName = "id", nullable = false)
     private LicenseType licenseType;  // Ссылка на объект типа лицензии (LicenseType)
 
@@ -58,4 +62,42 @@ public class License {
 
     @Column(name = "description")
     private String description;  // Описание лицензии
+
+    // Счетчик изменений вердикта, которые не видны в остальных полях ETag проверки (смена статуса).
+    // Срок, блокировка и пользователь входят в ETag сами, места и описание на вердикт не влияют
+    @Column(name = "revision")
+    private Long revision;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16, nullable = false)
+    private LicenseStatus status;  // Статус по blocked и endingDate; истечение отмечает LicenseExpiryScheduler
+
+    @PrePersist
+    void initRevision() {
+        if (revision == null) {
+            revision = 0L;
+        }
+        status = computeStatus(new Date());
+    }
+
+    // Переход ACTIVE -> EXPIRED делает только LicenseExpiryScheduler: он же пишет событие "Истекла" в историю.
+    // Обычное изменение просроченной лицензии оставляет ее активной до ближайшего тика планировщика
+    @PreUpdate
+    void updateStatus() {
+        LicenseStatus computed = computeStatus(new Date());
+        if (computed == LicenseStatus.EXPIRED && status != LicenseStatus.EXPIRED) {
+            computed = LicenseStatus.ACTIVE;
+        }
+        if (computed != status) {
+            status = computed;
+            revision = revision == null ? 1L : revision + 1;
+        }
+    }
+
+    public LicenseStatus computeStatus(Date now) {
+        if (Boolean.TRUE.equals(blocked)) {
+            return LicenseStatus.BLOCKED;
+        }
+        return endingDate != null && !endingDate.after(now) ? LicenseStatus.EXPIRED : LicenseStatus.ACTIVE;
+    }
 }
@@ -0,0 +1,35 @@
+package org.example.kurs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Результат активации лицензии на устройстве.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LicenseActivationResult {
+
+    private LicenseActivationStatus status;
+    private String macAddress;   // MAC-адрес устройства из запроса
+    private String deviceName;   // Имя устройства из запроса
+    private Long licenseId;
+    private Long userId;         // Пользователь, на которого активирована лицензия
+    private Long deviceId;
+    private Date endingDate;     // Дата окончания срока действия лицензии
+    private String ticket;       // Подпись тикета активации (при массовой активации)
+
+    public static LicenseActivationResult of(String macAddress, String deviceName, LicenseActivationStatus status) {
+        LicenseActivationResult result = new LicenseActivationResult();
+        result.setMacAddress(macAddress);
+        result.setDeviceName(deviceName);
+        result.setStatus(status);
+        return result;
+    }
+}
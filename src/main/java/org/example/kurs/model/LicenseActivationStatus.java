@@ -0,0 +1,9 @@
+package org.example.kurs.model;
+
+public enum LicenseActivationStatus {
+    ACTIVATED,          // Место зарезервировано, устройство привязано к лицензии
+    LICENSE_NOT_FOUND,  // Лицензии с таким кодом нет
+    ACCESS_DENIED,      // Лицензия принадлежит другому пользователю
+    DEVICE_EXISTS,      // Устройство с таким MAC-адресом и именем уже зарегистрировано
+    NO_SEATS            // Свободных мест на лицензии нет
+}
@@ -0,0 +1,18 @@
+package org.example.kurs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LicenseBulkActivationRequest {
+
+    private String code;                        // Код лицензии, на которую активируются устройства
+    private List<LicenseCheckRequest> devices;  // MAC-адреса и имена устройств
+}
@@ -0,0 +1,23 @@
+package org.example.kurs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Результат массовой активации: итог и результат по каждому устройству в порядке запроса.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LicenseBulkActivationResponse {
+
+    private Long licenseId;
+    private int activated;
+    private int rejected;
+    private List<LicenseActivationResult> results;
+}
@@ -0,0 +1,27 @@
+package org.example.kurs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Изменение лицензии для записи в license_history.
+ * Публикуется в транзакции изменения и хранится в event_publication до записи в историю.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LicenseChangedEvent {
+
+    // Присваивается при публикации и сохраняется в event_publication: повторная доставка несет тот же идентификатор
+    private String eventId;
+    private Long licenseId;
+    private Long userId;
+    private String status;
+    private Date changeDate;
+    private String description;
+}
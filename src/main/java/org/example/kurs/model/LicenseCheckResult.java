@@ -0,0 +1,37 @@
+package org.example.kurs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Результат проверки лицензии устройства (вердикт), который можно кешировать.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LicenseCheckResult {
+
+    private String macAddress;   // MAC-адрес устройства из запроса
+    private String deviceName;   // Имя устройства из запроса
+    private LicenseCheckStatus status;
+    private Long deviceId;
+    private Long licenseId;
+    private Long userId;         // Пользователь, на которого активирована лицензия
+    private Date endingDate;     // Дата окончания срока действия лицензии
+    private Boolean blocked;
+    private Long revision;       // Счетчик изменений лицензии
+    private LicenseStatus licenseStatus;  // Материализованный статус лицензии (ACTIVE/EXPIRED/BLOCKED)
+
+    public static LicenseCheckResult of(String macAddress, String deviceName, LicenseCheckStatus status) {
+        LicenseCheckResult result = new LicenseCheckResult();
+        result.setMacAddress(macAddress);
+        result.setDeviceName(deviceName);
+        result.setStatus(status);
+        return result;
+    }
+}
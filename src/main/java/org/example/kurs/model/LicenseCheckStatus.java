@@ -0,0 +1,8 @@
+package org.example.kurs.model;
+
+public enum LicenseCheckStatus {
+    FOUND,              // Устройство найдено, лицензия привязана и существует
+    DEVICE_NOT_FOUND,   // Устройство с таким MAC-адресом и именем не зарегистрировано
+    NOT_ACTIVATED,      // Устройство есть, но лицензия на нем не активирована
+    LICENSE_MISSING     // Привязка есть, но сама лицензия удалена
+}
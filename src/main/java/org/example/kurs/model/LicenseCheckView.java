@@ -0,0 +1,30 @@
+package org.example.kurs.model;
+
+import java.util.Date;
+
+/**
+ * Проекция для проверки лицензии: только поля, нужные для вердикта, одним запросом
+ * devices → device_license → licenses.
+ */
+public interface LicenseCheckView {
+
+    String getMacAddress();
+
+    String getDeviceName();
+
+    Long getDeviceId();
+
+    Long getBoundLicenseId();   // license_id из device_license, null если лицензия не активирована
+
+    Long getLicenseId();        // id из licenses, null если лицензия удалена
+
+    Long getUserId();
+
+    Date getEndingDate();
+
+    Boolean getBlocked();
+
+    Long getRevision();
+
+    LicenseStatus getLicenseStatus();
+}
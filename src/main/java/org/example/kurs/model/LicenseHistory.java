@@ -1,15 +1,23 @@
 package org.example.kurs.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.kurs.configuration.PooledId;
 
 import java.util.Date;
 
 @Entity
-@Table(name = "license_history")
+@Table(name = "license_history", indexes = {
+        @Index(name = "idx_license_history_license_id", columnList = "license_id, change_date"),
+        @Index(name = "idx_license_history_user_id", columnList = "user_id, change_date"),
+        @Index(name = "idx_license_history_status", columnList = "status, change_date"),
+        @Index(name = "idx_license_history_change_date", columnList = "change_date"),
+        @Index(name = "uk_license_history_event_id", columnList = "event_id", unique = true)
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -17,7 +25,7 @@ import java.util.Date;
 public class LicenseHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("license_history")
     @Column(name = "id")
     private Long id;
 
@@ -35,4 +43,9 @@ public class LicenseHistory {
 
     @Column(name = "description")
     private String description;
+
+    // Идентификатор LicenseChangedEvent, по которому отсекается повторная доставка; в ответы и архив не попадает
+    @JsonIgnore
+    @Column(name = "event_id", length = 36)
+    private String eventId;
 }
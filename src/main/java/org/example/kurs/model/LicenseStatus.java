@@ -0,0 +1,8 @@
+package org.example.kurs.model;
+
+// Материализованный статус лицензии (колонка licenses.status), вычисляется при сохранении и планировщиком истечения
+public enum LicenseStatus {
+    ACTIVE,     // Не заблокирована, срок не истек
+    EXPIRED,    // Срок действия истек
+    BLOCKED     // Заблокирована (независимо от срока)
+}
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.kurs.configuration.PooledId;
 
 @Entity
 @Table(name = "license_types")
@@ -15,7 +16,7 @@ import lombok.Setter;
 public class LicenseType {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("license_types")
     @Column(name = "id")
     private Long id;
 
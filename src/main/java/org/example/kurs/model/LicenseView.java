@@ -0,0 +1,42 @@
+package org.example.kurs.model;
+
+import java.util.Date;
+
+/**
+ * Проекция лицензии для чтения (список, карточка, ответ на изменение): поля лицензии,
+ * идентификаторы связей и названия продукта и типа одним запросом, без загрузки связанных сущностей.
+ */
+public interface LicenseView {
+
+    Long getId();
+
+    String getCode();
+
+    Long getUserId();
+
+    Long getOwnerId();
+
+    Long getProductId();
+
+    String getProductName();
+
+    Long getLicenseTypeId();
+
+    String getLicenseTypeName();
+
+    Date getFirstActivationDate();
+
+    Date getEndingDate();
+
+    Boolean getBlocked();
+
+    Integer getDeviceCount();
+
+    Integer getDuration();
+
+    String getDescription();
+
+    Long getRevision();
+
+    LicenseStatus getStatus();
+}
@@ -5,13 +5,13 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.kurs.configuration.PooledId;
 
 
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.UUID;
 import java.util.Date;
 
 @Getter
@@ -23,7 +23,7 @@ import java.util.Date;
 public class Ticket {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("tickets")
     @Column(name = "id") // Идентификатор тикета
     private Long id;
 
@@ -61,7 +61,7 @@ public class Ticket {
         ticket.setUserId(userId);                    // Устанавливаем ID пользователя, для которого создается тикет
                                         // Не указываем устройство (если нужно, можно передать)
         ticket.setBlocked(isBlocked);              // Устанавливаем, заблокирован ли тикет
-        ticket.setDigitalSignature(UUID.randomUUID().toString());  // Генерация уникальной цифровой подписи для тикета
+        // Цифровая подпись устанавливается при выдаче тикета (TicketSigner)
 
         return ticket;  // Возвращаем созданный тикет
     }
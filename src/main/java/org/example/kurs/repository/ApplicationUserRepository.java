@@ -1,13 +1,27 @@
 package org.example.kurs.repository;
 
+import org.example.kurs.model.ApplicationRole;
 import org.example.kurs.model.ApplicationUser;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ApplicationUserRepository extends JpaRepository<ApplicationUser, Long> {
     Optional<ApplicationUser> findByEmail(String email);
 
+    // Какие из переданных email уже заняты (проверка порции при массовом импорте)
+    @Query("select u.email from ApplicationUser u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // Страница пользователей после afterId по возрастанию ID
+    @Query("select u from ApplicationUser u where u.id > :afterId and (:role is null or u.role = :role) order by u.id")
+    List<ApplicationUser> findPageAfter(@Param("afterId") Long afterId, @Param("role") ApplicationRole role, Pageable pageable);
+
 }
@@ -1,21 +1,55 @@
 package org.example.kurs.repository;
 
+import jakarta.persistence.QueryHint;
 import org.example.kurs.model.DeviceLicense;
+import org.example.kurs.model.LicenseCheckView;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface DeviceLicenseRepository extends JpaRepository<DeviceLicense, Long> {
 
+    String CHECK_VIEW_SELECT = "select d.macAddress as macAddress, d.name as deviceName, d.id as deviceId, "
+            + "dl.licenseId as boundLicenseId, l.id as licenseId, l.user.id as userId, "
+            + "l.endingDate as endingDate, l.blocked as blocked, l.revision as revision, l.status as licenseStatus "
+            + "from Device d "
+            + "left join DeviceLicense dl on dl.deviceId = d.id "
+            + "left join License l on l.id = dl.licenseId ";
+
     // Метод для поиска по license_id
     Optional<DeviceLicense> findByLicenseId(Long licenseId);
 
     Optional<DeviceLicense> findByDeviceId(Long deviceId);
 
+    List<DeviceLicense> findByDeviceIdIn(Collection<Long> deviceIds);
+
     // Метод для поиска записи по deviceId и licenseId
     Optional<DeviceLicense> findByDeviceIdAndLicenseId(Long deviceId, Long licenseId);
 
+    // Проверка лицензии одним запросом: устройство, привязка и лицензия без загрузки сущностей
+    @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL")
+    })
+    @Query(CHECK_VIEW_SELECT + "where d.macAddress = :macAddress and d.name = :deviceName order by dl.id")
+    List<LicenseCheckView> findCheckView(@Param("macAddress") String macAddress,
+                                         @Param("deviceName") String deviceName);
+
+    // То же для набора MAC-адресов (пакетная проверка), совпадение имени проверяется в памяти
+    @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL")
+    })
+    @Query(CHECK_VIEW_SELECT + "where d.macAddress in :macAddresses order by dl.id")
+    List<LicenseCheckView> findCheckViews(@Param("macAddresses") Collection<String> macAddresses);
+
 }
@@ -1,7 +1,15 @@
 package org.example.kurs.repository;
 
 import org.example.kurs.model.Device;
+import org.example.kurs.model.DeviceKeyView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 public interface DeviceRepository extends JpaRepository<Device, Long> {
@@ -10,5 +18,21 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
     Device findByMacAddress(String macAddress);
     // Поиск устройства по MAC-адресу и имени
     Optional<Device> findByMacAddressAndName(String macAddress, String deviceName);
+
+    // Устройства по набору MAC-адресов (имя сверяется на стороне приложения)
+    List<Device> findByMacAddressIn(Collection<String> macAddresses);
+
+    // Постраничная выборка ключей устройств по возрастанию ID (для фильтра известных устройств)
+    @Query("select d.id as id, d.macAddress as macAddress, d.name as name from Device d where d.id > :afterId order by d.id")
+    List<DeviceKeyView> findKeysAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Ключи устройств, активированных начиная с since (догрузка фильтра устройств между перестройками)
+    @Query("select d.id as id, d.macAddress as macAddress, d.name as name from Device d, DeviceLicense dl"
+            + " where dl.deviceId = d.id and dl.activationDate >= :since")
+    List<DeviceKeyView> findKeysActivatedSince(@Param("since") Date since);
+
+    // Страница устройств после afterId по возрастанию ID
+    @Query("select d from Device d where d.id > :afterId and (:userId is null or d.userId = :userId) order by d.id")
+    List<Device> findPageAfter(@Param("afterId") Long afterId, @Param("userId") Long userId, Pageable pageable);
 }
 
@@ -0,0 +1,47 @@
+package org.example.kurs.repository;
+
+import org.example.kurs.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Захват ключа вставкой строки: при повторе вставка падает на первичном ключе
+    @Transactional
+    @Modifying
+    @Query(value = "insert into idempotency_keys (id, endpoint, request_hash, created_at, expires_at) "
+            + "values (:id, :endpoint, :requestHash, :now, :expiresAt)", nativeQuery = true)
+    int claim(@Param("id") String id, @Param("endpoint") String endpoint, @Param("requestHash") String requestHash,
+              @Param("now") Date now, @Param("expiresAt") Date expiresAt);
+
+    // Повторный захват истекшей записи (ответ устарел или выполнявший запрос узел не завершил его)
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyRecord r set r.requestHash = :requestHash, r.statusCode = null, r.responseBody = null, r.contentType = null, "
+            + "r.createdAt = :now, r.expiresAt = :expiresAt where r.id = :id and r.expiresAt < :now")
+    int takeOver(@Param("id") String id, @Param("requestHash") String requestHash,
+                 @Param("now") Date now, @Param("expiresAt") Date expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyRecord r set r.statusCode = :statusCode, r.responseBody = :responseBody, "
+            + "r.contentType = :contentType, r.expiresAt = :expiresAt where r.id = :id")
+    int complete(@Param("id") String id, @Param("statusCode") int statusCode,
+                 @Param("responseBody") String responseBody, @Param("contentType") String contentType,
+                 @Param("expiresAt") Date expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.id = :id")
+    int release(@Param("id") String id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Date now);
+}
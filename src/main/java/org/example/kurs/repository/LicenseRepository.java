@@ -1,13 +1,95 @@
 package org.example.kurs.repository;
 
+import org.example.kurs.model.ApplicationUser;
 import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseStatus;
+import org.example.kurs.model.LicenseView;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface LicenseRepository extends JpaRepository<License, Long> {
+
+    // Идентификаторы пользователя и владельца берутся из внешних ключей, соединяются только продукт и тип
+    String VIEW_SELECT = "select l.id as id, l.code as code, l.user.id as userId, l.owner.id as ownerId, "
+            + "p.id as productId, p.name as productName, t.id as licenseTypeId, t.name as licenseTypeName, "
+            + "l.firstActivationDate as firstActivationDate, l.endingDate as endingDate, l.blocked as blocked, "
+            + "l.deviceCount as deviceCount, l.duration as duration, l.description as description, l.revision as revision, "
+            + "l.status as status "
+            + "from License l join l.product p join l.licenseType t ";
+
     Optional<License> findByCode(String code);
 
+    // Список лицензий для чтения, одним запросом
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL")
+    })
+    @Query(VIEW_SELECT + "order by l.id")
+    List<LicenseView> findAllViews();
 
-}
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL")
+    })
+    @Query(VIEW_SELECT + "where l.id = :id")
+    Optional<LicenseView> findViewById(@Param("id") Long id);
+
+    // Страница лицензий после afterId по возрастанию ID
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL")
+    })
+    @Query(VIEW_SELECT + "where l.id > :afterId "
+            + "and (:ownerId is null or l.owner.id = :ownerId) "
+            + "and (:userId is null or l.user.id = :userId) "
+            + "and (:productId is null or l.product.id = :productId) "
+            + "and (:blocked is null or l.blocked = :blocked) "
+            + "and (:status is null or l.status = :status) "
+            + "order by l.id")
+    List<LicenseView> findViewPageAfter(@Param("afterId") Long afterId, @Param("ownerId") Long ownerId, @Param("userId") Long userId,
+                                        @Param("productId") Long productId, @Param("blocked") Boolean blocked,
+                                        @Param("status") LicenseStatus status, Pageable pageable);
+
+    // Лицензия с блокировкой строки до конца транзакции (массовая активация)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from License l where l.code = :code")
+    Optional<License> findByCodeForUpdate(@Param("code") String code);
 
+    // Атомарное резервирование места: 0 - свободных мест нет.
+    // Число мест в вердикт проверки не входит, поэтому revision (и ETag устройств лицензии) не меняется
+    @Modifying(flushAutomatically = true)
+    @Query("update License l set l.deviceCount = l.deviceCount - 1 "
+            + "where l.id = :id and l.deviceCount > 0")
+    int reserveSeat(@Param("id") Long id);
+
+    // Резервирование нескольких мест одним UPDATE
+    @Modifying(flushAutomatically = true)
+    @Query("update License l set l.deviceCount = l.deviceCount - :count "
+            + "where l.id = :id and l.deviceCount >= :count")
+    int reserveSeats(@Param("id") Long id, @Param("count") int count);
+
+    // Возврат места при отвязке устройства
+    @Modifying(flushAutomatically = true)
+    @Query("update License l set l.deviceCount = l.deviceCount + 1 "
+            + "where l.id = :id")
+    int releaseSeat(@Param("id") Long id);
+
+    // Назначение пользователя при первой активации. Условие проверяется по текущему состоянию строки,
+    // поэтому 0 означает, что лицензию параллельно получил другой пользователь.
+    // ID пользователя сам входит в ETag проверки, revision не меняется
+    @Modifying(flushAutomatically = true)
+    @Query("update License l set l.user = :user "
+            + "where l.id = :id and (l.user is null or l.user = :user)")
+    int assignUser(@Param("id") Long id, @Param("user") ApplicationUser user);
+}
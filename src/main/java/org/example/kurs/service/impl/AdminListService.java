@@ -0,0 +1,89 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.Device;
+import org.example.kurs.model.KeysetCursor;
+import org.example.kurs.model.KeysetPage;
+import org.example.kurs.model.LicenseStatus;
+import org.example.kurs.model.LicenseView;
+import org.example.kurs.repository.ApplicationUserRepository;
+import org.example.kurs.repository.DeviceRepository;
+import org.example.kurs.repository.LicenseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Списки лицензий, пользователей и устройств для администрирования с keyset-пагинацией по ID.
+ * <p>
+ * Страница - "id > последний id курсора order by id limit n+1" без OFFSET и без подсчета общего количества:
+ * лишняя строка только показывает, есть ли следующая страница.
+ */
+@Service
+public class AdminListService {
+
+    private final LicenseRepository licenseRepository;
+    private final ApplicationUserRepository userRepository;
+    private final DeviceRepository deviceRepository;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public AdminListService(LicenseRepository licenseRepository,
+                            ApplicationUserRepository userRepository,
+                            DeviceRepository deviceRepository,
+                            @Value("${pagination.page-size:50}") int defaultPageSize,
+                            @Value("${pagination.max-page-size:500}") int maxPageSize) {
+        this.licenseRepository = licenseRepository;
+        this.userRepository = userRepository;
+        this.deviceRepository = deviceRepository;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetPage<LicenseView> licenses(String cursor, Integer limit, Long ownerId, Long userId, Long productId, Boolean blocked,
+                                            LicenseStatus status) {
+        return page(cursor, limit, LicenseView::getId,
+                pageable -> licenseRepository.findViewPageAfter(afterId(cursor), ownerId, userId, productId, blocked, status, pageable));
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetPage<ApplicationUser> users(String cursor, Integer limit, ApplicationRole role) {
+        return page(cursor, limit, ApplicationUser::getId,
+                pageable -> userRepository.findPageAfter(afterId(cursor), role, pageable));
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetPage<Device> devices(String cursor, Integer limit, Long userId) {
+        return page(cursor, limit, Device::getId,
+                pageable -> deviceRepository.findPageAfter(afterId(cursor), userId, pageable));
+    }
+
+    private <T> KeysetPage<T> page(String cursor, Integer limit, Function<T, Long> id, Function<Pageable, List<T>> query) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        List<T> items = query.apply(PageRequest.of(0, pageSize + 1));
+        if (items.size() <= pageSize) {
+            return new KeysetPage<>(items, null);
+        }
+        items = items.subList(0, pageSize);
+        return new KeysetPage<>(items, KeysetCursor.encode(id.apply(items.get(pageSize - 1))));
+    }
+
+    // IllegalArgumentException - некорректный курсор
+    private static long afterId(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(KeysetCursor.decode(cursor, 1)[0]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный курсор", e);
+        }
+    }
+}
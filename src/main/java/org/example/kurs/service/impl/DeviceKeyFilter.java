@@ -0,0 +1,268 @@
+package org.example.kurs.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.model.DeviceKeyView;
+import org.example.kurs.repository.DeviceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума по ключам известных устройств (MAC-адрес, имя).
+ * Отрицательный ответ по умолчанию не подтверждается запросом к базе: неизвестные устройства - основной
+ * поток, который фильтр должен отсекать без запросов.
+ * <p>
+ * Фильтр локален для узла. Устройства, сохраненные или активированные на этом узле, добавляются сразу;
+ * активированные на других узлах догружаются каждые refresh-interval по индексу device_license.activation_date
+ * (окно refresh-overlap покрывает расхождение часов узлов и долгие транзакции), остальное - при полной
+ * перестройке раз в rebuild-interval. Цена: до refresh-interval после активации на другом узле этот узел
+ * отвечает DEVICE_NOT_FOUND, а устройство без активации, созданное на другом узле, до перестройки
+ * получает DEVICE_NOT_FOUND вместо NOT_ACTIVATED. Если это недопустимо, confirm-misses=true подтверждает
+ * каждый отрицательный ответ индексным запросом, и найденное устройство сразу добавляется в фильтр.
+ * Удаленные устройства из фильтра не убираются, это лишь увеличивает долю ложных срабатываний.
+ */
+@Component
+@RequiredArgsConstructor
+public class DeviceKeyFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceKeyFilter.class);
+
+    private final DeviceRepository deviceRepository;
+
+    @Value("${licensing.device-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${licensing.device-filter.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${licensing.device-filter.fpp:0.01}")
+    private double targetFpp;
+
+    @Value("${licensing.device-filter.load-page-size:5000}")
+    private int loadPageSize;
+
+    @Value("${licensing.device-filter.confirm-misses:false}")
+    private boolean confirmMisses;
+
+    @Value("${licensing.device-filter.refresh-overlap:60000}")
+    private long refreshOverlap;
+
+    // Начало последней загрузки: следующая догрузка читает активации начиная с него минус refresh-overlap
+    private long loadedSince;
+
+    // Текущий фильтр; null, пока не загружен (в этом случае все устройства считаются возможными)
+    private volatile Bits current;
+    // Фильтр, который строится в данный момент: новые ключи пишутся в оба
+    private volatile Bits building;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong staleMisses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshedKeys = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // Периодическая перестройка: подхватывает устройства, добавленные другими узлами, и сбрасывает удаленные
+    @Scheduled(initialDelayString = "${licensing.device-filter.rebuild-interval:3600000}",
+            fixedDelayString = "${licensing.device-filter.rebuild-interval:3600000}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // Догрузка устройств, активированных на других узлах после предыдущей загрузки
+    @Scheduled(initialDelayString = "${licensing.device-filter.refresh-interval:10000}",
+            fixedDelayString = "${licensing.device-filter.refresh-interval:10000}")
+    public synchronized void refreshRecent() {
+        if (!enabled || current == null) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        List<DeviceKeyView> keys = deviceRepository.findKeysActivatedSince(new Date(loadedSince - refreshOverlap));
+        for (DeviceKeyView key : keys) {
+            put(key.getMacAddress(), key.getName());
+        }
+        loadedSince = startedAt;
+        refreshes.incrementAndGet();
+        refreshedKeys.addAndGet(keys.size());
+    }
+
+    // Полная перестройка фильтра по таблице devices, размер выбирается с запасом от текущего числа устройств
+    public synchronized void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        long capacity = Math.max(expectedInsertions, deviceRepository.count() * 2);
+        Bits bits = new Bits(capacity, targetFpp);
+        building = bits;
+
+        long afterId = 0;
+        List<DeviceKeyView> page;
+        do {
+            page = deviceRepository.findKeysAfter(afterId, PageRequest.of(0, loadPageSize));
+            for (DeviceKeyView key : page) {
+                bits.put(key.getMacAddress(), key.getName());
+                afterId = key.getId();
+            }
+        } while (page.size() == loadPageSize);
+
+        current = bits;
+        building = null;
+        loadedSince = startedAt;
+        logger.info("Фильтр устройств построен: {} ключей, {} бит, {} хеш-функций за {} мс",
+                bits.insertions.get(), bits.numBits, bits.numHashes, System.currentTimeMillis() - startedAt);
+    }
+
+    // Добавление ключа при сохранении или активации устройства
+    public void put(String macAddress, String deviceName) {
+        Bits bits = current;
+        if (bits != null) {
+            bits.put(macAddress, deviceName);
+        }
+        Bits next = building;
+        if (next != null) {
+            next.put(macAddress, deviceName);
+        }
+    }
+
+    // false - устройство точно неизвестно; true - устройство может существовать
+    public boolean mightContain(String macAddress, String deviceName) {
+        Bits bits = current;
+        if (!enabled || bits == null) {
+            return true;
+        }
+        if (bits.mightContain(macAddress, deviceName)) {
+            passed.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    // true - отрицательный ответ фильтра нужно подтвердить запросом к базе
+    public boolean isConfirmMisses() {
+        return confirmMisses;
+    }
+
+    // Фильтр пропустил устройство, которого в базе нет
+    public void recordFalsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    // Фильтр не знал устройство, которое есть в базе (добавлено другим узлом): ключ добавляется до перестройки
+    public void recordStaleMiss(String macAddress, String deviceName) {
+        staleMisses.incrementAndGet();
+        put(macAddress, deviceName);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Bits bits = current;
+        stats.put("enabled", enabled);
+        stats.put("confirmMisses", confirmMisses);
+        stats.put("loaded", bits != null);
+        if (bits != null) {
+            stats.put("bits", bits.numBits);
+            stats.put("sizeBytes", bits.numBits / 8);
+            stats.put("hashFunctions", bits.numHashes);
+            stats.put("capacity", bits.capacity);
+            stats.put("insertions", bits.insertions.get());
+            stats.put("expectedFpp", bits.expectedFpp());
+        }
+        long passedCount = passed.get();
+        long falsePositiveCount = falsePositives.get();
+        stats.put("rejected", rejected.get());
+        stats.put("passed", passedCount);
+        stats.put("falsePositives", falsePositiveCount);
+        stats.put("staleMisses", staleMisses.get());
+        stats.put("refreshes", refreshes.get());
+        stats.put("refreshedKeys", refreshedKeys.get());
+        stats.put("observedFpp", passedCount == 0 ? 0.0 : (double) falsePositiveCount / passedCount);
+        return stats;
+    }
+
+    private static final class Bits {
+
+        private final long capacity;
+        private final long numBits;
+        private final int numHashes;
+        private final AtomicLongArray words;
+        private final AtomicLong insertions = new AtomicLong();
+
+        private Bits(long capacity, double fpp) {
+            this.capacity = capacity;
+            // m = -n ln p / (ln 2)^2, k = m / n ln 2
+            long bits = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+            this.numBits = wordCount * 64L;
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+            this.words = new AtomicLongArray(wordCount);
+        }
+
+        private void put(String macAddress, String deviceName) {
+            long hash = hash(macAddress, deviceName);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= numHashes; i++) {
+                long index = Integer.toUnsignedLong(h1 + i * h2) % numBits;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long value;
+                do {
+                    value = words.get(word);
+                } while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask));
+            }
+            insertions.incrementAndGet();
+        }
+
+        private boolean mightContain(String macAddress, String deviceName) {
+            long hash = hash(macAddress, deviceName);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= numHashes; i++) {
+                long index = Integer.toUnsignedLong(h1 + i * h2) % numBits;
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Ожидаемая вероятность ложного срабатывания при текущем заполнении: (1 - e^(-kn/m))^k
+        private double expectedFpp() {
+            return Math.pow(1 - Math.exp(-(double) numHashes * insertions.get() / numBits), numHashes);
+        }
+
+        // FNV-1a по байтам ключа с перемешиванием splitmix64
+        private static long hash(String macAddress, String deviceName) {
+            long hash = 0xcbf29ce484222325L;
+            byte[] bytes = (macAddress + '\u0000' + deviceName).getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+            hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+            return hash ^ (hash >>> 31);
+        }
+    }
+}
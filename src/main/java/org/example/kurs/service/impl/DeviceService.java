@@ -2,12 +2,12 @@ package org.example.kurs.service.impl;
 
 import org.example.kurs.model.Device;
 import org.example.kurs.model.DeviceLicense;
-import org.example.kurs.model.License;
 import org.example.kurs.repository.DeviceLicenseRepository;
 import org.example.kurs.repository.DeviceRepository;
 import org.example.kurs.repository.LicenseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,19 +18,32 @@ public class DeviceService {
     private final DeviceRepository deviceRepository;
     private final DeviceLicenseRepository deviceLicenseRepository;
     private final LicenseRepository licenseRepository;
+    private final LicenseCheckCache licenseCheckCache;
+    private final DeviceKeyFilter deviceKeyFilter;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public DeviceService(DeviceRepository deviceRepository,
                          DeviceLicenseRepository deviceLicenseRepository,
-                         LicenseRepository licenseRepository) {
+                         LicenseRepository licenseRepository,
+                         LicenseCheckCache licenseCheckCache,
+                         DeviceKeyFilter deviceKeyFilter,
+                         TransactionTemplate transactionTemplate) {
         this.deviceRepository = deviceRepository;
         this.deviceLicenseRepository = deviceLicenseRepository;
         this.licenseRepository = licenseRepository;
+        this.licenseCheckCache = licenseCheckCache;
+        this.deviceKeyFilter = deviceKeyFilter;
+        this.transactionTemplate = transactionTemplate;
     }
 
     // Создание или обновление устройства
     public Device saveDevice(Device device) {
-        return deviceRepository.save(device);
+        Device savedDevice = deviceRepository.save(device);
+        deviceKeyFilter.put(savedDevice.getMacAddress(), savedDevice.getName());
+        // При обновлении MAC-адрес или имя могли измениться, сбрасываем кеш проверок
+        licenseCheckCache.evictDevice(savedDevice.getId());
+        return savedDevice;
     }
 
     // Получение устройства по ID
@@ -50,31 +63,33 @@ public class DeviceService {
 
     // Удаление устройства по ID с дополнительной логикой
     public void deleteDevice(Long id) {
-        Optional<Device> deviceOpt = deviceRepository.findById(id);
-
-        if (deviceOpt.isPresent()) {
-            Device device = deviceOpt.get();
+        // Отвязка, возврат места и удаление устройства - одной транзакцией
+        Device device = transactionTemplate.execute(status -> {
+            Optional<Device> deviceOpt = deviceRepository.findById(id);
+            if (deviceOpt.isEmpty()) {
+                return null;
+            }
 
             // 1. Удаляем запись из DeviceLicense
             Optional<DeviceLicense> deviceLicenseOpt = deviceLicenseRepository.findByDeviceId(id);
             if (deviceLicenseOpt.isPresent()) {
                 DeviceLicense deviceLicense = deviceLicenseOpt.get();
 
-                Optional<License> licenseOpt = licenseRepository.findById(deviceLicense.getLicenseId());
-
-                // 2. Получаем лицензию, которая привязана к устройству
-                License license = licenseOpt.get();
-
-                // 3. Увеличиваем количество устройств в лицензии
-                license.setDeviceCount(license.getDeviceCount() + 1);
-                licenseRepository.save(license);
+                // 2. Возвращаем место на лицензию атомарным увеличением счетчика
+                licenseRepository.releaseSeat(deviceLicense.getLicenseId());
 
                 // Удаляем запись о привязке устройства к лицензии
                 deviceLicenseRepository.delete(deviceLicense);
             }
 
-            // 4. Удаляем само устройство
-            deviceRepository.delete(device);
+            // 3. Удаляем само устройство
+            deviceRepository.delete(deviceOpt.get());
+            return deviceOpt.get();
+        });
+
+        // Кеш сбрасывается после коммита, чтобы параллельная проверка не закешировала старое состояние
+        if (device != null) {
+            licenseCheckCache.evict(device.getMacAddress(), device.getName());
         }
     }
 }
@@ -0,0 +1,253 @@
+package org.example.kurs.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Выгрузка таблиц целиком в NDJSON или CSV с постоянным расходом памяти.
+ * <p>
+ * Строки читаются однонаправленным курсором JDBC порциями по export.fetch-size и сразу пишутся в ответ:
+ * сущности и контекст персистентности не создаются, в памяти находится только текущая порция.
+ * Выгрузки идут через отдельный небольшой пул (для MySQL - с useCursorFetch, без которого драйвер
+ * читает весь результат в память), поэтому долгие выгрузки не занимают соединения основного пула.
+ * Одновременно выполняется не больше export.pool-size выгрузок: слот занимается tryAcquire и освобождается
+ * release в том же месте, где выполняется выгрузка.
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    // Выгружаемые наборы и их запросы; имя набора из запроса клиента в SQL не подставляется
+    private static final Map<String, String> DATASETS = new LinkedHashMap<>();
+
+    static {
+        DATASETS.put("licenses", "select id, code, user_id, owner_id, product_id, type_id, first_activation_date, ending_date,"
+                + " blocked, device_count, duration, description, revision, status from licenses order by id");
+        DATASETS.put("devices", "select id, name, mac_address, user_id from devices order by id");
+        DATASETS.put("device_license", "select id, license_id, device_id, activation_date from device_license order by id");
+        DATASETS.put("license_history", "select id, license_id, user_id, status, change_date, description from license_history order by id");
+    }
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+
+    private long exports;
+    private long exportedRows;
+    private long rejected;
+
+    public ExportService(DataSourceProperties dataSourceProperties,
+                         ObjectMapper objectMapper,
+                         @Value("${export.pool-size:2}") int poolSize,
+                         @Value("${export.fetch-size:1000}") int fetchSize) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("export");
+        this.dataSource.setMaximumPoolSize(poolSize);
+        this.dataSource.setMinimumIdle(0);
+        this.dataSource.setReadOnly(true);
+        if (dataSource.getJdbcUrl().startsWith("jdbc:mysql:")) {
+            this.dataSource.addDataSourceProperty("useCursorFetch", "true");
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(poolSize);
+    }
+
+    public Set<String> datasets() {
+        return DATASETS.keySet();
+    }
+
+    public boolean isDataset(String dataset) {
+        return DATASETS.containsKey(dataset);
+    }
+
+    // false - все слоты выгрузки заняты; при true вызывающий освобождает слот через release в finally
+    public synchronized boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    // Пишет набор в output; слот должен быть получен через tryAcquire
+    public void export(String dataset, Format format, OutputStream output) throws IOException {
+        String sql = DATASETS.get(dataset);
+        if (sql == null) {
+            throw new IllegalArgumentException("Неизвестный набор: " + dataset);
+        }
+        RowWriter writer = format == Format.CSV ? new CsvWriter(output) : new NdjsonWriter(output);
+        Long rows;
+        try {
+            rows = jdbcTemplate.query(sql, (ResultSetExtractor<Long>) rs -> {
+                long count = 0;
+                try {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    writer.start(meta);
+                    while (rs.next()) {
+                        writer.write(rs, meta);
+                        count++;
+                    }
+                    writer.finish();
+                } catch (IOException e) {
+                    // Клиент закрыл соединение - курсор закрывается вместе с запросом
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        synchronized (this) {
+            exports++;
+            exportedRows += rows == null ? 0 : rows;
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("exports", exports);
+        stats.put("exportedRows", exportedRows);
+        stats.put("running", dataSource.getMaximumPoolSize() - permits.availablePermits());
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+
+    // Время - ISO-8601 в UTC, одинаково для MySQL (LocalDateTime) и H2 (Timestamp)
+    private static Object value(ResultSet rs, ResultSetMetaData meta, int column) throws SQLException {
+        int type = meta.getColumnType(column);
+        if (type == Types.TIMESTAMP || type == Types.TIMESTAMP_WITH_TIMEZONE) {
+            Timestamp timestamp = rs.getTimestamp(column);
+            return timestamp == null ? null : timestamp.toInstant().toString();
+        }
+        if (type == Types.BIT || type == Types.BOOLEAN) {
+            boolean value = rs.getBoolean(column);
+            return rs.wasNull() ? null : value;
+        }
+        return rs.getObject(column);
+    }
+
+    private interface RowWriter {
+
+        void start(ResultSetMetaData meta) throws SQLException, IOException;
+
+        void write(ResultSet rs, ResultSetMetaData meta) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    private final class NdjsonWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        private NdjsonWriter(OutputStream output) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(output);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void start(ResultSetMetaData meta) {
+        }
+
+        @Override
+        public void write(ResultSet rs, ResultSetMetaData meta) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int column = 1; column <= meta.getColumnCount(); column++) {
+                generator.writeFieldName(meta.getColumnLabel(column).toLowerCase());
+                generator.writeObject(value(rs, meta, column));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+
+        private CsvWriter(OutputStream output) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 65536);
+        }
+
+        @Override
+        public void start(ResultSetMetaData meta) throws SQLException, IOException {
+            for (int column = 1; column <= meta.getColumnCount(); column++) {
+                if (column > 1) {
+                    writer.write(',');
+                }
+                writer.write(meta.getColumnLabel(column).toLowerCase());
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(ResultSet rs, ResultSetMetaData meta) throws SQLException, IOException {
+            for (int column = 1; column <= meta.getColumnCount(); column++) {
+                if (column > 1) {
+                    writer.write(',');
+                }
+                Object value = value(rs, meta, column);
+                if (value != null) {
+                    writer.write(escape(value.toString()));
+                }
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
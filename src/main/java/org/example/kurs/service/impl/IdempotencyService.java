@@ -0,0 +1,261 @@
+package org.example.kurs.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.kurs.model.IdempotencyRecord;
+import org.example.kurs.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Идемпотентное выполнение запросов с заголовком Idempotency-Key.
+ * <p>
+ * Ключ действует в пределах эндпоинта и пользователя. Первый запрос захватывает ключ строкой в таблице
+ * idempotency_keys и после выполнения сохраняет ответ; повтор получает сохраненный ответ без повторного выполнения.
+ * Пока первый запрос выполняется, повтор получает 409. Ответы 5xx не сохраняются - такой запрос можно повторить.
+ * Вместе с телом сохраняется тип содержимого: повтор объекта, сохраненного как JSON-строка, тоже отдается как JSON.
+ * Завершенные ответы дополнительно держатся в ограниченном LRU-кеше в памяти.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+    private final long ttl;
+    private final long inFlightTimeout;
+
+    private final LinkedHashMap<String, StoredResponse> responses = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long memoryHits;
+    private long databaseHits;
+    private long executed;
+    private long conflicts;
+
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.cache.max-size:10000}") int maxSize,
+                              @Value("${idempotency.ttl:86400000}") long ttl,
+                              @Value("${idempotency.in-flight-timeout:60000}") long inFlightTimeout) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.inFlightTimeout = inFlightTimeout;
+    }
+
+    public ResponseEntity<?> execute(String endpoint, String principal, String key, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body("Некорректный заголовок " + HEADER);
+        }
+
+        String id = sha256(endpoint + '\u0000' + principal + '\u0000' + key);
+        String requestHash = hashRequest(request);
+
+        StoredResponse stored = getStored(id);
+        if (stored != null) {
+            return replay(stored, requestHash, true);
+        }
+
+        ResponseEntity<?> rejected = claim(id, endpoint, requestHash);
+        if (rejected != null) {
+            return rejected;
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            repository.release(id);
+            throw e;
+        }
+
+        if (response.getStatusCode().is5xxServerError()) {
+            repository.release(id);
+            return response;
+        }
+        String body = serializeBody(response.getBody());
+        String contentType = contentType(response);
+        long expiresAt = System.currentTimeMillis() + ttl;
+        repository.complete(id, response.getStatusCode().value(), body, contentType, new Date(expiresAt));
+        putStored(id, new StoredResponse(requestHash, response.getStatusCode().value(), body, contentType, expiresAt));
+        synchronized (this) {
+            executed++;
+        }
+        return response;
+    }
+
+    // null - ключ захвачен текущим запросом; иначе ответ, который нужно вернуть клиенту
+    private ResponseEntity<?> claim(String id, String endpoint, String requestHash) {
+        Date now = new Date();
+        Date claimExpiresAt = new Date(now.getTime() + inFlightTimeout);
+        try {
+            repository.claim(id, endpoint, requestHash, now, claimExpiresAt);
+            return null;
+        } catch (DataIntegrityViolationException e) {
+            // Ключ уже использовался
+        }
+
+        if (repository.takeOver(id, requestHash, now, claimExpiresAt) == 1) {
+            return null;
+        }
+        IdempotencyRecord record = repository.findById(id).orElse(null);
+        if (record == null) {
+            // Запись удалили между вставкой и чтением (ответ 5xx) - клиент может повторить
+            return conflict();
+        }
+        if (record.getStatusCode() == null) {
+            return conflict();
+        }
+        StoredResponse stored = new StoredResponse(record.getRequestHash(), record.getStatusCode(),
+                record.getResponseBody(), record.getContentType(), record.getExpiresAt().getTime());
+        putStored(id, stored);
+        return replay(stored, requestHash, false);
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash, boolean fromMemory) {
+        if (!stored.requestHash.equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Ключ " + HEADER + " уже использован с другим телом запроса");
+        }
+        synchronized (this) {
+            if (fromMemory) {
+                memoryHits++;
+            } else {
+                databaseHits++;
+            }
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.statusCode)
+                .header(REPLAYED_HEADER, "true");
+        if (stored.contentType != null) {
+            builder.contentType(MediaType.parseMediaType(stored.contentType));
+        }
+        return builder.body(stored.body);
+    }
+
+    private synchronized ResponseEntity<?> conflict() {
+        conflicts++;
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body("Запрос с этим ключом " + HEADER + " еще выполняется");
+    }
+
+    private synchronized StoredResponse getStored(String id) {
+        StoredResponse stored = responses.get(id);
+        if (stored != null && stored.expiresAt <= System.currentTimeMillis()) {
+            responses.remove(id);
+            return null;
+        }
+        return stored;
+    }
+
+    private synchronized void putStored(String id, StoredResponse stored) {
+        responses.put(id, stored);
+        if (responses.size() > maxSize) {
+            var eldest = responses.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    // Удаление истекших ключей из таблицы
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval:600000}")
+    public void cleanup() {
+        int deleted = repository.deleteExpired(new Date());
+        if (deleted > 0) {
+            logger.info("Удалено истекших ключей идемпотентности: {}", deleted);
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cached", responses.size());
+        stats.put("maxSize", maxSize);
+        stats.put("executed", executed);
+        stats.put("memoryReplays", memoryHits);
+        stats.put("databaseReplays", databaseHits);
+        stats.put("conflicts", conflicts);
+        return stats;
+    }
+
+    // Объект сохраняется как JSON-строка, а строку конвертер отдал бы как text/plain - поэтому тип запоминается.
+    // Явно заданный ответом тип сохраняется как есть, строковое тело без типа повторяется так же, как в первый раз
+    private static String contentType(ResponseEntity<?> response) {
+        MediaType contentType = response.getHeaders().getContentType();
+        if (contentType != null) {
+            return contentType.toString();
+        }
+        Object body = response.getBody();
+        return body == null || body instanceof String ? null : MediaType.APPLICATION_JSON_VALUE;
+    }
+
+    private String serializeBody(Object body) {
+        if (body == null || body instanceof String) {
+            return (String) body;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить ответ", e);
+        }
+    }
+
+    private String hashRequest(Object request) {
+        try {
+            return sha256(objectMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать запрос", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class StoredResponse {
+
+        private final String requestHash;
+        private final int statusCode;
+        private final String body;
+        private final String contentType;
+        private final long expiresAt;
+
+        private StoredResponse(String requestHash, int statusCode, String body, String contentType, long expiresAt) {
+            this.requestHash = requestHash;
+            this.statusCode = statusCode;
+            this.body = body;
+            this.contentType = contentType;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
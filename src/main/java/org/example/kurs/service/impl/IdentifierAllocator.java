@@ -0,0 +1,113 @@
+package org.example.kurs.service.impl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Выделение идентификаторов блоками из таблицы id_generators (next_val - первый свободный идентификатор).
+ * <p>
+ * Сущности получают идентификаторы через @PooledId по одному из блока в памяти, пакетные вставки JdbcTemplate
+ * берут непрерывный блок нужного размера через allocate, поэтому значения не пересекаются.
+ * Строка блокируется в короткой транзакции на отдельном маленьком пуле соединений: транзакция,
+ * которой нужен новый блок, не ждет свободного соединения из основного пула, занятого такими же транзакциями.
+ * Блоки в памяти блокируются по имени генератора, а запрос нового блока идет вне блокировки выдачи значений.
+ * Генератор Hibernate получает распределитель из контейнера бинов своей SessionFactory (см. PooledIdGenerator).
+ */
+@Component
+public class IdentifierAllocator {
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    private long allocations;
+    private long allocatedIds;
+
+    public IdentifierAllocator(DataSourceProperties dataSourceProperties,
+                               @Value("${ids.allocator.pool-size:2}") int poolSize) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("id-allocator");
+        this.dataSource.setMaximumPoolSize(poolSize);
+        this.dataSource.setMinimumIdle(1);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    // Первый идентификатор непрерывного блока [first, first + count) для таблицы name
+    public long allocate(String name, int count) {
+        Long first = transactionTemplate.execute(status -> {
+            Long next = jdbcTemplate.queryForObject("select next_val from id_generators where name = ? for update",
+                    Long.class, name);
+            jdbcTemplate.update("update id_generators set next_val = ? where name = ?", next + count, name);
+            return next;
+        });
+        synchronized (this) {
+            allocations++;
+            allocatedIds += count;
+        }
+        return first;
+    }
+
+    // Следующий идентификатор из блока в памяти; новый блок из allocationSize значений - когда текущий исчерпан
+    public long next(String name, int allocationSize) {
+        return blocks.computeIfAbsent(name, key -> new Block()).next(name, allocationSize);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("allocations", allocations);
+        stats.put("allocatedIds", allocatedIds);
+        stats.put("poolSize", dataSource.getMaximumPoolSize());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+
+    // Текущий блок одного генератора: значения выдаются под монитором блока, новый блок запрашивается
+    // под отдельной блокировкой refill, чтобы за ним к базе ходил один поток
+    private final class Block {
+
+        private final Object refill = new Object();
+        private long next;
+        private long limit;
+
+        private long next(String name, int allocationSize) {
+            while (true) {
+                synchronized (this) {
+                    if (next < limit) {
+                        return next++;
+                    }
+                }
+                synchronized (refill) {
+                    boolean exhausted;
+                    synchronized (this) {
+                        exhausted = next >= limit;
+                    }
+                    // Пока поток ждал refill, блок мог получить другой поток
+                    if (exhausted) {
+                        long first = allocate(name, allocationSize);
+                        synchronized (this) {
+                            next = first;
+                            limit = first + allocationSize;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.example.kurs.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.Device;
+import org.example.kurs.model.DeviceLicense;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseActivationResult;
+import org.example.kurs.model.LicenseActivationStatus;
+import org.example.kurs.model.LicenseCheckRequest;
+import org.example.kurs.repository.ApplicationUserRepository;
+import org.example.kurs.repository.DeviceLicenseRepository;
+import org.example.kurs.repository.DeviceRepository;
+import org.example.kurs.repository.LicenseRepository;
+import org.example.kurs.service.LicenseHistoryService;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Активация лицензии на новом устройстве в одной транзакции.
+ * <p>
+ * Назначение пользователя и резервирование места (device_count > 0) - условные UPDATE последними шагами,
+ * чтобы блокировка строки лицензии держалась только до коммита и не пересекалась с выделением идентификаторов
+ * (генератор берет блок в отдельном соединении). Если места нет, транзакция откатывается вместе с устройством
+ * и привязкой, поэтому параллельные активации одного ключа не превышают число мест.
+ * <p>
+ * Массовая активация выделяет идентификаторы, затем блокирует строку лицензии, загружает устройства и привязки
+ * наборами, вставляет устройства, привязки и историю пакетами JDBC и резервирует все места одним UPDATE.
+ */
+@Service
+@RequiredArgsConstructor
+public class LicenseActivationService {
+
+    // Ограничение на число параметров в IN (...)
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private static final String INSERT_DEVICE_SQL = "insert into devices (id, name, mac_address, user_id) values (?, ?, ?, ?)";
+    private static final String ASSIGN_DEVICE_SQL = "update devices set user_id = ? where id = ? and user_id is null";
+    private static final String INSERT_BINDING_SQL = "insert into device_license (id, license_id, device_id, activation_date) values (?, ?, ?, ?)";
+    private static final String INSERT_HISTORY_SQL = "insert into license_history (id, license_id, user_id, status, change_date, description) values (?, ?, ?, ?, ?, ?)";
+
+    private final LicenseRepository licenseRepository;
+    private final ApplicationUserRepository applicationUserRepository;
+    private final DeviceRepository deviceRepository;
+    private final DeviceLicenseRepository deviceLicenseRepository;
+    private final LicenseHistoryService licenseHistoryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdentifierAllocator identifierAllocator;
+
+    @Transactional
+    public LicenseActivationResult activate(String code, String email, String macAddress, String deviceName) {
+        License license = licenseRepository.findByCode(code).orElse(null);
+        if (license == null) {
+            return LicenseActivationResult.of(macAddress, deviceName, LicenseActivationStatus.LICENSE_NOT_FOUND);
+        }
+
+        ApplicationUser user = applicationUserRepository.findByEmail(email).orElse(null);
+        if (user == null || ownedByOther(license, user)) {
+            return LicenseActivationResult.of(macAddress, deviceName, LicenseActivationStatus.ACCESS_DENIED);
+        }
+
+        if (deviceRepository.findByMacAddressAndName(macAddress, deviceName).isPresent()) {
+            return LicenseActivationResult.of(macAddress, deviceName, LicenseActivationStatus.DEVICE_EXISTS);
+        }
+
+        Device device = new Device();
+        device.setMacAddress(macAddress);
+        device.setName(deviceName);
+        device.setUserId(user.getId());
+        deviceRepository.save(device);
+
+        Date activationDate = new Date();
+        DeviceLicense deviceLicense = new DeviceLicense();
+        deviceLicense.setLicenseId(license.getId());
+        deviceLicense.setDeviceId(device.getId());
+        deviceLicense.setActivationDate(activationDate);
+        deviceLicenseRepository.save(deviceLicense);
+
+        licenseHistoryService.recordLicenseChange(license.getId(), user.getId(), "Активирована", activationDate,
+                "Лицензия активирована на устройстве");
+
+        if (license.getUser() == null && licenseRepository.assignUser(license.getId(), user) == 0) {
+            // Лицензию параллельно назначили другому пользователю
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return LicenseActivationResult.of(macAddress, deviceName, LicenseActivationStatus.ACCESS_DENIED);
+        }
+        if (licenseRepository.reserveSeat(license.getId()) == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return LicenseActivationResult.of(macAddress, deviceName, LicenseActivationStatus.NO_SEATS);
+        }
+
+        LicenseActivationResult result = LicenseActivationResult.of(macAddress, deviceName, LicenseActivationStatus.ACTIVATED);
+        result.setLicenseId(license.getId());
+        result.setUserId(user.getId());
+        result.setDeviceId(device.getId());
+        result.setEndingDate(license.getEndingDate());
+        return result;
+    }
+
+    // Результаты в порядке запроса; повтор пары (MAC, имя) внутри запроса получает DEVICE_EXISTS
+    @Transactional
+    public List<LicenseActivationResult> activateBulk(String code, String email, List<LicenseCheckRequest> devices) {
+        List<LicenseActivationResult> results = new ArrayList<>(devices.size());
+        for (LicenseCheckRequest device : devices) {
+            results.add(LicenseActivationResult.of(device.getMacAddress(), device.getDeviceName(), null));
+        }
+
+        // 1. Идентификаторы с запасом на все устройства запроса - до блокировки лицензии
+        int distinct = (int) devices.stream().map(device -> key(device.getMacAddress(), device.getDeviceName())).distinct().count();
+        long firstDeviceId = identifierAllocator.allocate("devices", distinct);
+        long firstBindingId = identifierAllocator.allocate("device_license", distinct);
+        long firstHistoryId = identifierAllocator.allocate("license_history", distinct);
+
+        // 2. Лицензия блокируется до коммита: число свободных мест не меняется до резервирования
+        License license = licenseRepository.findByCodeForUpdate(code).orElse(null);
+        if (license == null) {
+            return withStatus(results, LicenseActivationStatus.LICENSE_NOT_FOUND);
+        }
+        ApplicationUser user = applicationUserRepository.findByEmail(email).orElse(null);
+        if (user == null || !claimLicense(license, user)) {
+            return withStatus(results, LicenseActivationStatus.ACCESS_DENIED);
+        }
+
+        // 3. Существующие устройства и их привязки - запросами по наборам MAC-адресов
+        Set<String> macAddresses = new HashSet<>();
+        for (LicenseCheckRequest device : devices) {
+            macAddresses.add(device.getMacAddress());
+        }
+        Map<String, Device> existing = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(macAddresses))) {
+            for (Device device : deviceRepository.findByMacAddressIn(chunk)) {
+                existing.putIfAbsent(key(device.getMacAddress(), device.getName()), device);
+            }
+        }
+        Set<Long> boundDeviceIds = new HashSet<>();
+        for (List<Long> chunk : chunks(existing.values().stream().map(Device::getId).toList())) {
+            for (DeviceLicense binding : deviceLicenseRepository.findByDeviceIdIn(chunk)) {
+                boundDeviceIds.add(binding.getDeviceId());
+            }
+        }
+
+        // 4. Разбор пар: уже активированные, чужие и кандидаты на активацию в пределах свободных мест
+        Set<String> seen = new HashSet<>();
+        List<LicenseActivationResult> granted = new ArrayList<>();
+        List<LicenseActivationResult> created = new ArrayList<>();
+        List<Long> reused = new ArrayList<>();
+        int seats = license.getDeviceCount() != null ? license.getDeviceCount() : 0;
+        for (LicenseActivationResult result : results) {
+            String key = key(result.getMacAddress(), result.getDeviceName());
+            Device device = existing.get(key);
+            if (!seen.add(key) || (device != null && boundDeviceIds.contains(device.getId()))) {
+                result.setStatus(LicenseActivationStatus.DEVICE_EXISTS);
+            } else if (device != null && device.getUserId() != null && !device.getUserId().equals(user.getId())) {
+                result.setStatus(LicenseActivationStatus.ACCESS_DENIED);
+            } else if (granted.size() >= seats) {
+                result.setStatus(LicenseActivationStatus.NO_SEATS);
+            } else {
+                granted.add(result);
+                if (device == null) {
+                    created.add(result);
+                } else {
+                    result.setDeviceId(device.getId());
+                    if (device.getUserId() == null) {
+                        reused.add(device.getId());
+                    }
+                }
+            }
+        }
+        if (granted.isEmpty()) {
+            return results;
+        }
+
+        // 5. Новые устройства, привязки и история - пакетными вставками
+        insertDevices(created, user.getId(), firstDeviceId);
+        if (!reused.isEmpty()) {
+            jdbcTemplate.batchUpdate(ASSIGN_DEVICE_SQL, reused, reused.size(), (statement, deviceId) -> {
+                statement.setLong(1, user.getId());
+                statement.setLong(2, deviceId);
+            });
+        }
+        Timestamp activationDate = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_BINDING_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, firstBindingId + i);
+                statement.setLong(2, license.getId());
+                statement.setLong(3, granted.get(i).getDeviceId());
+                statement.setTimestamp(4, activationDate);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return granted.size();
+            }
+        });
+        jdbcTemplate.batchUpdate(INSERT_HISTORY_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, firstHistoryId + i);
+                statement.setLong(2, license.getId());
+                statement.setLong(3, user.getId());
+                statement.setString(4, "Активирована");
+                statement.setTimestamp(5, activationDate);
+                statement.setString(6, "Лицензия активирована на устройстве " + granted.get(i).getMacAddress());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return granted.size();
+            }
+        });
+
+        // 6. Все места одним условным UPDATE
+        if (licenseRepository.reserveSeats(license.getId(), granted.size()) == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            for (LicenseActivationResult result : granted) {
+                result.setDeviceId(null);
+                result.setStatus(LicenseActivationStatus.NO_SEATS);
+            }
+            return results;
+        }
+        for (LicenseActivationResult result : granted) {
+            result.setStatus(LicenseActivationStatus.ACTIVATED);
+            result.setLicenseId(license.getId());
+            result.setUserId(user.getId());
+            result.setEndingDate(license.getEndingDate());
+        }
+        return results;
+    }
+
+    // Пакетная вставка устройств с идентификаторами из общего генератора
+    private void insertDevices(List<LicenseActivationResult> created, Long userId, long firstId) {
+        if (created.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < created.size(); i++) {
+            created.get(i).setDeviceId(firstId + i);
+        }
+        jdbcTemplate.batchUpdate(INSERT_DEVICE_SQL, created, created.size(), (statement, result) -> {
+            statement.setLong(1, result.getDeviceId());
+            statement.setString(2, result.getDeviceName());
+            statement.setString(3, result.getMacAddress());
+            statement.setLong(4, userId);
+        });
+    }
+
+    private static List<LicenseActivationResult> withStatus(List<LicenseActivationResult> results,
+                                                            LicenseActivationStatus status) {
+        results.forEach(result -> result.setStatus(status));
+        return results;
+    }
+
+    private static String key(String macAddress, String deviceName) {
+        return Objects.toString(macAddress) + '\u0000' + Objects.toString(deviceName);
+    }
+
+    private static <T> List<List<T>> chunks(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += IN_CHUNK_SIZE) {
+            chunks.add(values.subList(from, Math.min(from + IN_CHUNK_SIZE, values.size())));
+        }
+        return chunks;
+    }
+
+    private static boolean ownedByOther(License license, ApplicationUser user) {
+        return license.getUser() != null && !license.getUser().getId().equals(user.getId());
+    }
+
+    // Лицензия уже принадлежит пользователю или назначается ему условным UPDATE (без сохранения всей лицензии)
+    private boolean claimLicense(License license, ApplicationUser user) {
+        if (license.getUser() != null) {
+            return license.getUser().getId().equals(user.getId());
+        }
+        return licenseRepository.assignUser(license.getId(), user) == 1;
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.LicenseCheckResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный по размеру кеш результатов проверки лицензии по ключу (MAC-адрес, имя устройства).
+ * Срок жизни записи не превышает дату окончания лицензии.
+ * <p>
+ * Чтение из базы обрамляется startLoad/finishLoad: если за время чтения ключ, устройство или лицензия
+ * были инвалидированы (изменение зафиксировано после начала чтения), put прочитанный вердикт не сохраняет.
+ */
+@Component
+public class LicenseCheckCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    // LRU: порядок доступа, самая старая запись вытесняется при переполнении
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Обратные индексы для точечной инвалидации
+    private final Map<Long, Set<String>> keysByLicense = new HashMap<>();
+    private final Map<Long, String> keyByDevice = new HashMap<>();
+
+    // Чтения из базы в процессе: штамп начала -> число чтений
+    private final TreeMap<Long, Integer> loading = new TreeMap<>();
+    // Штампы инвалидаций, случившихся во время чтений, по возрастанию штампа; старше самого раннего чтения - удаляются
+    private final LinkedHashMap<String, Long> invalidatedAt = new LinkedHashMap<>();
+    private long sequence;
+    private long clearedAt;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong staleLoads = new AtomicLong();
+
+    @Autowired
+    public LicenseCheckCache(@Value("${licensing.check-cache.max-size:10000}") int maxSize,
+                             @Value("${licensing.check-cache.ttl:300000}") long ttlMillis) {
+        this(maxSize, ttlMillis, Clock.systemUTC());
+    }
+
+    // Часы подменяются в тестах
+    LicenseCheckCache(int maxSize, long ttlMillis, Clock clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > LicenseCheckCache.this.maxSize) {
+                    unindex(eldest.getKey(), eldest.getValue().result);
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Получение результата из кеша, null если записи нет или она устарела
+    public synchronized LicenseCheckResult get(String macAddress, String deviceName) {
+        String key = key(macAddress, deviceName);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expiresAt <= clock.millis()) {
+            entries.remove(key);
+            unindex(key, entry.result);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.result;
+    }
+
+    // Начало чтения вердикта из базы; возвращает штамп для put и finishLoad
+    public synchronized long startLoad() {
+        loading.merge(sequence, 1, Integer::sum);
+        return sequence;
+    }
+
+    // Конец чтения (в finally): штампы инвалидаций, которые больше не нужны ни одному чтению, удаляются
+    public synchronized void finishLoad(long loadStamp) {
+        loading.computeIfPresent(loadStamp, (stamp, count) -> count == 1 ? null : count - 1);
+        long oldest = loading.isEmpty() ? sequence : loading.firstKey();
+        Iterator<Long> stamps = invalidatedAt.values().iterator();
+        while (stamps.hasNext() && stamps.next() <= oldest) {
+            stamps.remove();
+        }
+    }
+
+    // Сохранение результата чтения, начатого в loadStamp; срок жизни ограничен датой окончания лицензии
+    public synchronized void put(LicenseCheckResult result, long loadStamp) {
+        if (maxSize <= 0) {
+            return;
+        }
+        String key = key(result.getMacAddress(), result.getDeviceName());
+        if (clearedAt > loadStamp
+                || invalidatedSince(loadStamp, "key:" + key)
+                || (result.getLicenseId() != null && invalidatedSince(loadStamp, "license:" + result.getLicenseId()))
+                || (result.getDeviceId() != null && invalidatedSince(loadStamp, "device:" + result.getDeviceId()))) {
+            // Изменение зафиксировано после начала чтения: вердикт мог устареть
+            staleLoads.incrementAndGet();
+            return;
+        }
+        long now = clock.millis();
+        long expiresAt = now + ttlMillis;
+        if (result.getEndingDate() != null) {
+            expiresAt = Math.min(expiresAt, result.getEndingDate().getTime());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(result, expiresAt));
+        if (previous != null) {
+            unindex(key, previous.result);
+        }
+        if (result.getLicenseId() != null) {
+            keysByLicense.computeIfAbsent(result.getLicenseId(), id -> new HashSet<>()).add(key);
+        }
+        if (result.getDeviceId() != null) {
+            keyByDevice.put(result.getDeviceId(), key);
+        }
+    }
+
+    // Инвалидация по ключу устройства
+    public synchronized void evict(String macAddress, String deviceName) {
+        String key = key(macAddress, deviceName);
+        markInvalidated("key:" + key);
+        remove(key);
+    }
+
+    // Инвалидация по ID устройства
+    public synchronized void evictDevice(Long deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        markInvalidated("device:" + deviceId);
+        String key = keyByDevice.get(deviceId);
+        if (key != null) {
+            remove(key);
+        }
+    }
+
+    // Инвалидация всех устройств, на которых активирована лицензия
+    public synchronized void evictLicense(Long licenseId) {
+        if (licenseId == null) {
+            return;
+        }
+        markInvalidated("license:" + licenseId);
+        Set<String> keys = keysByLicense.get(licenseId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : new ArrayList<>(keys)) {
+            remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        if (!loading.isEmpty()) {
+            clearedAt = ++sequence;
+        }
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        keysByLicense.clear();
+        keyByDevice.clear();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("staleLoads", staleLoads.get());
+        return stats;
+    }
+
+    // Инвалидация без идущих чтений штампа не требует: следующие чтения начнутся после нее
+    private void markInvalidated(String marker) {
+        if (loading.isEmpty()) {
+            return;
+        }
+        invalidatedAt.remove(marker);
+        invalidatedAt.put(marker, ++sequence);
+    }
+
+    private boolean invalidatedSince(long loadStamp, String marker) {
+        Long stamp = invalidatedAt.get(marker);
+        return stamp != null && stamp > loadStamp;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unindex(key, entry.result);
+            invalidations.incrementAndGet();
+        }
+    }
+
+    private void unindex(String key, LicenseCheckResult result) {
+        if (result.getLicenseId() != null) {
+            Set<String> keys = keysByLicense.get(result.getLicenseId());
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByLicense.remove(result.getLicenseId());
+                }
+            }
+        }
+        if (result.getDeviceId() != null) {
+            keyByDevice.remove(result.getDeviceId(), key);
+        }
+    }
+
+    private static String key(String macAddress, String deviceName) {
+        return macAddress + '\u0000' + deviceName;
+    }
+
+    private static final class Entry {
+        private final LicenseCheckResult result;
+        private final long expiresAt;
+
+        private Entry(LicenseCheckResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
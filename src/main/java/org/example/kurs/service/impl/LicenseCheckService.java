@@ -0,0 +1,177 @@
+package org.example.kurs.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.model.LicenseCheckRequest;
+import org.example.kurs.model.LicenseCheckResult;
+import org.example.kurs.model.LicenseCheckStatus;
+import org.example.kurs.model.LicenseCheckView;
+import org.example.kurs.repository.DeviceLicenseRepository;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+public class LicenseCheckService {
+
+    private final DeviceLicenseRepository deviceLicenseRepository;
+    private final LicenseCheckCache licenseCheckCache;
+    private final DeviceKeyFilter deviceKeyFilter;
+
+    // Проверка лицензии устройства: сначала кеш, затем один запрос к базе данных
+    public LicenseCheckResult check(String macAddress, String deviceName) {
+        LicenseCheckResult cached = licenseCheckCache.get(macAddress, deviceName);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Фильтр не знает устройство: без подтверждения отвечаем без запроса к базе
+        boolean filtered = !deviceKeyFilter.mightContain(macAddress, deviceName);
+        if (filtered && !deviceKeyFilter.isConfirmMisses()) {
+            return LicenseCheckResult.of(macAddress, deviceName, LicenseCheckStatus.DEVICE_NOT_FOUND);
+        }
+
+        // Штамп берется до запроса: инвалидация, зафиксированная во время чтения, отменит сохранение в кеш
+        long loadStamp = licenseCheckCache.startLoad();
+        try {
+            List<LicenseCheckView> views = deviceLicenseRepository.findCheckView(macAddress, deviceName);
+            LicenseCheckResult result = toResult(macAddress, deviceName, views.isEmpty() ? null : views.get(0));
+            recordFilterOutcome(result, filtered);
+            if (result.getStatus() == LicenseCheckStatus.FOUND) {
+                licenseCheckCache.put(result, loadStamp);
+            }
+            return result;
+        } finally {
+            licenseCheckCache.finishLoad(loadStamp);
+        }
+    }
+
+    // Пакетная проверка: результаты в порядке запросов, промахи кеша разрешаются одним запросом IN
+    public List<LicenseCheckResult> checkAll(List<LicenseCheckRequest> requests) {
+        List<LicenseCheckResult> results = new ArrayList<>(requests.size());
+        Set<String> missingMacAddresses = new LinkedHashSet<>();
+        BitSet filtered = new BitSet(requests.size());
+
+        for (LicenseCheckRequest request : requests) {
+            LicenseCheckResult cached = licenseCheckCache.get(request.getMacAddress(), request.getDeviceName());
+            if (cached == null && !deviceKeyFilter.mightContain(request.getMacAddress(), request.getDeviceName())) {
+                if (deviceKeyFilter.isConfirmMisses()) {
+                    filtered.set(results.size());
+                } else {
+                    cached = LicenseCheckResult.of(request.getMacAddress(), request.getDeviceName(), LicenseCheckStatus.DEVICE_NOT_FOUND);
+                }
+            }
+            results.add(cached);
+            if (cached == null && request.getMacAddress() != null) {
+                missingMacAddresses.add(request.getMacAddress());
+            }
+        }
+        if (!results.contains(null)) {
+            return results;
+        }
+
+        long loadStamp = licenseCheckCache.startLoad();
+        try {
+            Map<String, LicenseCheckView> views = new HashMap<>();
+            if (!missingMacAddresses.isEmpty()) {
+                for (LicenseCheckView view : deviceLicenseRepository.findCheckViews(missingMacAddresses)) {
+                    views.putIfAbsent(key(view.getMacAddress(), view.getDeviceName()), view);
+                }
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) != null) {
+                    continue;
+                }
+                LicenseCheckRequest request = requests.get(i);
+                LicenseCheckView view = views.get(key(request.getMacAddress(), request.getDeviceName()));
+
+                LicenseCheckResult result = toResult(request.getMacAddress(), request.getDeviceName(), view);
+                if (result.getStatus() == LicenseCheckStatus.FOUND) {
+                    licenseCheckCache.put(result, loadStamp);
+                }
+                recordFilterOutcome(result, filtered.get(i));
+                results.set(i, result);
+            }
+            return results;
+        } finally {
+            licenseCheckCache.finishLoad(loadStamp);
+        }
+    }
+
+    // Учет ошибок фильтра: пропущенное неизвестное устройство или отвергнутое известное
+    private void recordFilterOutcome(LicenseCheckResult result, boolean filtered) {
+        boolean found = result.getStatus() != LicenseCheckStatus.DEVICE_NOT_FOUND;
+        if (filtered && found) {
+            deviceKeyFilter.recordStaleMiss(result.getMacAddress(), result.getDeviceName());
+        } else if (!filtered && !found) {
+            deviceKeyFilter.recordFalsePositive();
+        }
+    }
+
+    private static LicenseCheckResult toResult(String macAddress, String deviceName, LicenseCheckView view) {
+        if (view == null) {
+            return LicenseCheckResult.of(macAddress, deviceName, LicenseCheckStatus.DEVICE_NOT_FOUND);
+        }
+        if (view.getBoundLicenseId() == null) {
+            LicenseCheckResult result = LicenseCheckResult.of(macAddress, deviceName, LicenseCheckStatus.NOT_ACTIVATED);
+            result.setDeviceId(view.getDeviceId());
+            return result;
+        }
+
+        LicenseCheckResult result = LicenseCheckResult.of(macAddress, deviceName,
+                view.getLicenseId() != null ? LicenseCheckStatus.FOUND : LicenseCheckStatus.LICENSE_MISSING);
+        result.setDeviceId(view.getDeviceId());
+        result.setLicenseId(view.getBoundLicenseId());
+        result.setUserId(view.getUserId());
+        result.setEndingDate(view.getEndingDate());
+        result.setBlocked(view.getBlocked());
+        result.setRevision(view.getRevision());
+        result.setLicenseStatus(view.getLicenseStatus());
+        return result;
+    }
+
+    // Сильный ETag вердикта: лицензия, срок, блокировка, ревизия и привязка к устройству
+    public static String etag(LicenseCheckResult result) {
+        String state = result.getLicenseId() + "|" + result.getRevision() + "|"
+                + (result.getEndingDate() != null ? result.getEndingDate().getTime() : null) + "|"
+                + result.getBlocked() + "|" + result.getDeviceId() + "|" + result.getUserId();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(state.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Проверка заголовка If-None-Match (список тегов или "*")
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String key(String macAddress, String deviceName) {
+        return macAddress + '\u0000' + deviceName;
+    }
+}
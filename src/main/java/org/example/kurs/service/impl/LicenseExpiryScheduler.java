@@ -0,0 +1,228 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.LicenseStatus;
+import org.example.kurs.service.LicenseHistoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Истечение лицензий по расписанию: колонка licenses.status переводится из ACTIVE в EXPIRED
+ * в момент наступления ending_date, с записью в историю.
+ * <p>
+ * Активные лицензии, истекающие в пределах horizon, загружаются порциями по индексу (status, ending_date)
+ * в min-heap по ending_date. Каждый тик снимает с вершины наступившие истечения и переводит их пакетами
+ * условным UPDATE (только ACTIVE с ending_date не позже текущего момента), поэтому продленные
+ * после загрузки лицензии не истекают, а планировщики нескольких узлов не дублируют истечение и историю.
+ * Heap перестраивается из базы раз в reload-interval и при приближении к границе загруженного окна;
+ * лицензии, созданные или продленные на этом узле, добавляются в heap сразу через schedule.
+ */
+@Component
+public class LicenseExpiryScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LicenseExpiryScheduler.class);
+
+    private static final String LOAD_SQL = "select id, ending_date from licenses where status = 'ACTIVE' and ending_date <= ?"
+            + " and (ending_date > ? or (ending_date = ? and id > ?)) order by ending_date, id limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LicenseHistoryService licenseHistoryService;
+    private final LicenseCheckCache licenseCheckCache;
+
+    @Value("${licensing.expiry.horizon:3600000}")
+    private long horizon;
+
+    @Value("${licensing.expiry.reload-interval:300000}")
+    private long reloadInterval;
+
+    @Value("${licensing.expiry.max-heap:100000}")
+    private int maxHeap;
+
+    @Value("${licensing.expiry.batch-size:500}")
+    private int batchSize;
+
+    private final PriorityQueue<Pending> heap = new PriorityQueue<>(
+            Comparator.comparingLong((Pending pending) -> pending.endingAt).thenComparingLong(pending -> pending.id));
+
+    // Все активные лицензии с ending_date не позже loadedUntil находятся в heap
+    private long loadedUntil = Long.MIN_VALUE;
+    private long nextReloadAt;
+
+    private long reloads;
+    private long expired;
+    private long skipped;
+    private long batches;
+    private long maxLag;
+
+    public LicenseExpiryScheduler(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  LicenseHistoryService licenseHistoryService,
+                                  LicenseCheckCache licenseCheckCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.licenseHistoryService = licenseHistoryService;
+        this.licenseCheckCache = licenseCheckCache;
+    }
+
+    // Лицензия создана или изменена на этом узле: истечение в пределах загруженного окна планируется сразу
+    public void schedule(Long licenseId, Date endingDate) {
+        if (licenseId == null || endingDate == null) {
+            return;
+        }
+        synchronized (heap) {
+            if (endingDate.getTime() <= loadedUntil) {
+                heap.add(new Pending(licenseId, endingDate.getTime()));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${licensing.expiry.tick:1000}")
+    public void tick() {
+        expireDue(System.currentTimeMillis());
+    }
+
+    // Переводит в EXPIRED все лицензии с ending_date не позже now; возвращает число истекших
+    public int expireDue(long now) {
+        synchronized (heap) {
+            if (now >= nextReloadAt || now + horizon / 2 >= loadedUntil) {
+                reload(now);
+            }
+        }
+        int total = 0;
+        while (true) {
+            List<Pending> due = new ArrayList<>(batchSize);
+            synchronized (heap) {
+                while (due.size() < batchSize && !heap.isEmpty() && heap.peek().endingAt <= now) {
+                    due.add(heap.poll());
+                }
+            }
+            if (due.isEmpty()) {
+                return total;
+            }
+            try {
+                total += expire(due, now);
+            } catch (RuntimeException e) {
+                // Лицензии остаются ACTIVE и попадут в heap при следующей перезагрузке
+                logger.error("Не удалось отметить истечение {} лицензий: {}", due.size(), e.getMessage(), e);
+                return total;
+            }
+        }
+    }
+
+    private void reload(long now) {
+        heap.clear();
+        long until = now + horizon;
+        Timestamp untilTimestamp = new Timestamp(until);
+        Timestamp lastDate = new Timestamp(0);
+        long lastId = 0;
+        while (heap.size() < maxHeap) {
+            int limit = Math.min(batchSize * 10, maxHeap - heap.size());
+            List<Pending> chunk = jdbcTemplate.query(LOAD_SQL, (rs, rowNum) ->
+                            new Pending(rs.getLong("id"), rs.getTimestamp("ending_date").getTime()),
+                    untilTimestamp, lastDate, lastDate, lastId, limit);
+            heap.addAll(chunk);
+            if (chunk.size() < limit) {
+                break;
+            }
+            Pending last = chunk.get(chunk.size() - 1);
+            lastDate = new Timestamp(last.endingAt);
+            lastId = last.id;
+            if (heap.size() >= maxHeap) {
+                // Окно не поместилось: граница - перед последней загруженной датой, остальное при следующей загрузке
+                until = last.endingAt - 1;
+            }
+        }
+        loadedUntil = until;
+        nextReloadAt = now + reloadInterval;
+        synchronized (this) {
+            reloads++;
+        }
+    }
+
+    private int expire(List<Pending> due, long now) {
+        List<Long> ids = new ArrayList<>(due.size());
+        for (Pending pending : due) {
+            ids.add(pending.id);
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Date changeDate = new Date(now);
+
+        List<Long> expiredIds = transactionTemplate.execute(status -> {
+            List<Object> args = new ArrayList<>(ids);
+            args.add(new Timestamp(now));
+            // Строки блокируются: параллельный планировщик или продление не изменят их до коммита
+            List<long[]> rows = jdbcTemplate.query("select id, coalesce(user_id, owner_id) as user_id from licenses"
+                            + " where id in (" + placeholders + ") and status = 'ACTIVE' and ending_date <= ? for update",
+                    (rs, rowNum) -> new long[]{rs.getLong("id"), rs.getLong("user_id")}, args.toArray());
+            if (rows.isEmpty()) {
+                return List.<Long>of();
+            }
+            List<Long> locked = new ArrayList<>(rows.size());
+            rows.forEach(row -> locked.add(row[0]));
+            List<Object> updateArgs = new ArrayList<>();
+            updateArgs.add(LicenseStatus.EXPIRED.name());
+            updateArgs.addAll(locked);
+            jdbcTemplate.update("update licenses set status = ?, revision = coalesce(revision, 0) + 1 where id in ("
+                    + String.join(",", Collections.nCopies(locked.size(), "?")) + ")", updateArgs.toArray());
+            for (long[] row : rows) {
+                licenseHistoryService.recordLicenseChange(row[0], row[1], "Истекла", changeDate, "Срок действия лицензии истек");
+            }
+            return locked;
+        });
+
+        // Кешированные вердикты проверки истекших лицензий сбрасываются после коммита
+        expiredIds.forEach(licenseCheckCache::evictLicense);
+        synchronized (this) {
+            batches++;
+            expired += expiredIds.size();
+            skipped += due.size() - expiredIds.size();
+            maxLag = Math.max(maxLag, now - due.get(0).endingAt);
+        }
+        if (!expiredIds.isEmpty()) {
+            logger.info("Истек срок действия лицензий: {}", expiredIds.size());
+        }
+        return expiredIds.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (heap) {
+            stats.put("scheduled", heap.size());
+            stats.put("loadedUntil", loadedUntil == Long.MIN_VALUE ? null : new Date(loadedUntil));
+        }
+        synchronized (this) {
+            stats.put("reloads", reloads);
+            stats.put("expired", expired);
+            stats.put("skipped", skipped);
+            stats.put("batches", batches);
+            stats.put("maxLagMs", maxLag);
+        }
+        return stats;
+    }
+
+    private static final class Pending {
+
+        private final long id;
+        private final long endingAt;
+
+        private Pending(long id, long endingAt) {
+            this.id = id;
+            this.endingAt = endingAt;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.example.kurs.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.example.kurs.model.LicenseHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранение истории лицензий по месяцам: горячая таблица и архив на локальном диске.
+ * <p>
+ * Каждый календарный месяц - логическая секция таблицы license_history (диапазон по индексу change_date).
+ * Задача хранения переносит месяцы старше retention-months в сжатые файлы NDJSON
+ * license-history-YYYY-MM.&lt;метка&gt;.ndjson.gz и затем удаляет их строки из таблицы пакетами.
+ * Файл фиксируется (fsync и атомарное переименование) до удаления строк, а удаление идет порциями
+ * по идентификаторам, прочитанным из самого файла, поэтому память не растет с размером месяца.
+ * Если удаление прервалось, следующий запуск заархивирует оставшиеся строки в новый файл того же месяца.
+ * Каждый файл упорядочен по (change_date, id): чтение сливает файлы месяца по этому ключу
+ * и пропускает строку, повторяющую предыдущую (повторы возможны только между файлами).
+ */
+@Component
+public class LicenseHistoryArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(LicenseHistoryArchive.class);
+
+    private static final String FILE_PREFIX = "license-history-";
+    private static final String FILE_SUFFIX = ".ndjson.gz";
+    private static final Pattern FILE_NAME = Pattern.compile("license-history-(\\d{4}-\\d{2})\\.(\\d+)\\.ndjson\\.gz");
+
+    private static final String SELECT_SQL = "select id, license_id, user_id, status, change_date, description from license_history"
+            + " where change_date >= ? and change_date < ? and (change_date > ? or (change_date = ? and id > ?))"
+            + " order by change_date, id limit ?";
+
+    // Порядок строк в файле архива
+    private static final Comparator<LicenseHistory> ARCHIVE_ORDER = Comparator
+            .comparing(LicenseHistory::getChangeDate)
+            .thenComparing(LicenseHistory::getId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${licensing.history.archive.directory:data/license-history-archive}")
+    private String directoryName;
+
+    @Value("${licensing.history.retention-months:12}")
+    private int retentionMonths;
+
+    @Value("${licensing.history.archive.chunk-size:5000}")
+    private int chunkSize;
+
+    private final Object runLock = new Object();
+
+    private Path directory;
+
+    private long archivedMonths;
+    private long archivedRows;
+    private long deletedRows;
+    private String lastArchivedMonth;
+
+    public LicenseHistoryArchive(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = Path.of(directoryName);
+        Files.createDirectories(directory);
+    }
+
+    // Ежедневный перенос истекших месяцев в архив
+    @Scheduled(cron = "${licensing.history.archive.cron:0 30 3 * * *}")
+    public void archiveExpired() {
+        archiveBefore(YearMonth.now().minusMonths(retentionMonths));
+    }
+
+    // Архивирует все месяцы раньше cutoff; возвращает число перенесенных строк
+    public long archiveBefore(YearMonth cutoff) {
+        synchronized (runLock) {
+            return archiveMonthsBefore(cutoff);
+        }
+    }
+
+    private long archiveMonthsBefore(YearMonth cutoff) {
+        Timestamp oldest = jdbcTemplate.queryForObject("select min(change_date) from license_history", Timestamp.class);
+        if (oldest == null) {
+            return 0;
+        }
+        long total = 0;
+        for (YearMonth month = YearMonth.from(oldest.toLocalDateTime()); month.isBefore(cutoff); month = month.plusMonths(1)) {
+            try {
+                total += archiveMonth(month);
+            } catch (IOException e) {
+                // Строки месяца остаются в таблице до следующего запуска
+                logger.error("Не удалось заархивировать историю за {}: {}", month, e.getMessage(), e);
+                break;
+            }
+        }
+        return total;
+    }
+
+    private long archiveMonth(YearMonth month) throws IOException {
+        Timestamp from = start(month);
+        Timestamp to = start(month.plusMonths(1));
+
+        Path target = directory.resolve(FILE_PREFIX + month + "." + System.currentTimeMillis() + FILE_SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try (OutputStream file = Files.newOutputStream(temp);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(file, 65536), StandardCharsets.UTF_8))) {
+            // Месяц читается порциями по (change_date, id), чтобы не держать его в памяти целиком
+            Timestamp lastDate = from;
+            long lastId = 0;
+            while (true) {
+                List<LicenseHistory> chunk = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new LicenseHistory(
+                                rs.getLong("id"), rs.getLong("license_id"), rs.getLong("user_id"), rs.getString("status"),
+                                rs.getTimestamp("change_date"), rs.getString("description"), null),
+                        from, to, lastDate, lastDate, lastId, chunkSize);
+                for (LicenseHistory history : chunk) {
+                    writer.write(objectMapper.writeValueAsString(history));
+                    writer.newLine();
+                    count++;
+                }
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+                LicenseHistory last = chunk.get(chunk.size() - 1);
+                lastDate = (Timestamp) last.getChangeDate();
+                lastId = last.getId();
+            }
+        }
+        if (count == 0) {
+            Files.delete(temp);
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        // Удаляются только строки, попавшие в зафиксированный файл: идентификаторы читаются из него порциями
+        long deleted = 0;
+        List<Object> batch = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = reader(target)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(objectMapper.readValue(line, LicenseHistory.class).getId());
+                if (batch.size() == chunkSize) {
+                    deleted += delete(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += delete(batch);
+        }
+
+        logger.info("История за {} перенесена в архив {}: {} записей", month, target.getFileName(), count);
+        synchronized (this) {
+            archivedMonths++;
+            archivedRows += count;
+            deletedRows += deleted;
+            lastArchivedMonth = month.toString();
+        }
+        return count;
+    }
+
+    // Каждая порция - отдельная короткая транзакция
+    private int delete(List<Object> ids) {
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        Integer rows = transactionTemplate.execute(status ->
+                jdbcTemplate.update("delete from license_history where id in (" + placeholders + ")", args));
+        return rows == null ? 0 : rows;
+    }
+
+    // Месяцы, по которым есть архивные файлы
+    public List<String> months() throws IOException {
+        Set<String> months = new TreeSet<>();
+        for (Path file : files()) {
+            Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+                months.add(matcher.group(1));
+            }
+        }
+        return new ArrayList<>(months);
+    }
+
+    // Чтение архива месяца с фильтром в порядке (change_date, id): файлы сливаются потоком, в памяти
+    // по одной строке на файл; повтор строки из другого файла (после прерванного удаления) пропускается
+    public void read(YearMonth month, Predicate<LicenseHistory> filter, Consumer<LicenseHistory> consumer) throws IOException {
+        List<ArchiveCursor> cursors = new ArrayList<>();
+        PriorityQueue<ArchiveCursor> queue = new PriorityQueue<>(Comparator.comparing(cursor -> cursor.current, ARCHIVE_ORDER));
+        try {
+            for (Path file : files()) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches() || !matcher.group(1).equals(month.toString())) {
+                    continue;
+                }
+                ArchiveCursor cursor = new ArchiveCursor(reader(file));
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            LicenseHistory previous = null;
+            while (!queue.isEmpty()) {
+                ArchiveCursor cursor = queue.poll();
+                LicenseHistory history = cursor.current;
+                if ((previous == null || ARCHIVE_ORDER.compare(previous, history) != 0) && filter.test(history)) {
+                    consumer.accept(history);
+                }
+                previous = history;
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (ArchiveCursor cursor : cursors) {
+                cursor.reader.close();
+            }
+        }
+    }
+
+    private BufferedReader reader(Path file) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 65536), StandardCharsets.UTF_8));
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Timestamp start(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+
+    // Текущая строка одного файла архива
+    private final class ArchiveCursor {
+
+        private final BufferedReader reader;
+        private LicenseHistory current;
+
+        private ArchiveCursor(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        private boolean advance() throws IOException {
+            String line = reader.readLine();
+            current = line != null ? objectMapper.readValue(line, LicenseHistory.class) : null;
+            return current != null;
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retentionMonths", retentionMonths);
+        stats.put("archivedMonths", archivedMonths);
+        stats.put("archivedRows", archivedRows);
+        stats.put("deletedRows", deletedRows);
+        stats.put("lastArchivedMonth", lastArchivedMonth);
+        return stats;
+    }
+}
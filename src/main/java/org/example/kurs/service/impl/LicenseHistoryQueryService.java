@@ -0,0 +1,108 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.KeysetCursor;
+import org.example.kurs.model.KeysetPage;
+import org.example.kurs.model.LicenseHistory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Чтение истории лицензий с фильтрами и keyset-пагинацией по (change_date desc, id desc).
+ * <p>
+ * Следующая страница начинается условием "строго после последней строки" вместо OFFSET, поэтому при
+ * фильтре по лицензии, пользователю или статусу поиск идет по составному индексу (фильтр, change_date, id)
+ * и читает только строки страницы - любая страница стоит как первая.
+ */
+@Service
+public class LicenseHistoryQueryService {
+
+    private static final String SELECT_SQL = "select id, license_id, user_id, status, change_date, description from license_history";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public LicenseHistoryQueryService(JdbcTemplate jdbcTemplate,
+                                      @Value("${licensing.history.page-size:50}") int defaultPageSize,
+                                      @Value("${licensing.history.max-page-size:500}") int maxPageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // from - включительно, to - не включительно; IllegalArgumentException - некорректный курсор
+    public KeysetPage<LicenseHistory> find(Long licenseId, Long userId, String status, Date from, Date to,
+                                           String cursor, Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> args = new ArrayList<>();
+        where(sql, args, "license_id = ?", licenseId);
+        where(sql, args, "user_id = ?", userId);
+        where(sql, args, "status = ?", status);
+        where(sql, args, "change_date >= ?", from == null ? null : new Timestamp(from.getTime()));
+        where(sql, args, "change_date < ?", to == null ? null : new Timestamp(to.getTime()));
+        if (cursor != null) {
+            String[] values = KeysetCursor.decode(cursor, 2);
+            Timestamp changeDate;
+            long id;
+            try {
+                changeDate = Timestamp.from(Instant.parse(values[0]));
+                id = Long.parseLong(values[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректный курсор", e);
+            }
+            sql.append(args.isEmpty() ? " where " : " and ")
+                    .append("(change_date < ? or (change_date = ? and id < ?))");
+            args.add(changeDate);
+            args.add(changeDate);
+            args.add(id);
+        }
+        // Лишняя строка показывает, есть ли следующая страница, без подсчета общего количества
+        sql.append(" order by change_date desc, id desc limit ?");
+        args.add(pageSize + 1);
+
+        List<Row> rows = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new Row(
+                new LicenseHistory(rs.getLong("id"), rs.getLong("license_id"), rs.getLong("user_id"),
+                        rs.getString("status"), rs.getTimestamp("change_date"), rs.getString("description"), null),
+                rs.getTimestamp("change_date").toInstant()), args.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            Row last = rows.get(pageSize - 1);
+            nextCursor = KeysetCursor.encode(last.changeDate, last.history.getId());
+        }
+        List<LicenseHistory> items = new ArrayList<>(rows.size());
+        rows.forEach(row -> items.add(row.history));
+        return new KeysetPage<>(items, nextCursor);
+    }
+
+    private static void where(StringBuilder sql, List<Object> args, String condition, Object value) {
+        if (value == null) {
+            return;
+        }
+        sql.append(args.isEmpty() ? " where " : " and ").append(condition);
+        args.add(value);
+    }
+
+    // Курсор хранит время с микросекундами (datetime(6)), а не миллисекунды Date
+    private static final class Row {
+
+        private final LicenseHistory history;
+        private final Instant changeDate;
+
+        private Row(LicenseHistory history, Instant changeDate) {
+            this.history = history;
+            this.changeDate = changeDate;
+        }
+    }
+}
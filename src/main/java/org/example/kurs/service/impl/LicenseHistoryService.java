@@ -1,28 +1,67 @@
 package org.example.kurs.service;
 
 import lombok.RequiredArgsConstructor;
-import org.example.kurs.model.LicenseHistory;
-import org.example.kurs.repository.LicenseHistoryRepository;
+import org.example.kurs.model.LicenseChangedEvent;
+import org.example.kurs.service.impl.LicenseHistoryWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.modulith.events.CompletedEventPublications;
+import org.springframework.modulith.events.IncompleteEventPublications;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
 import java.util.Date;
+import java.util.UUID;
 
+/**
+ * История лицензий через реестр событий Spring Modulith (transactional outbox).
+ * <p>
+ * Изменение публикует LicenseChangedEvent, который сохраняется в event_publication той же транзакцией.
+ * После коммита обработчик в отдельном потоке передает запись LicenseHistoryWriter и ждет коммита пакета;
+ * незавершенные публикации (сбой записи, перезапуск) отправляются повторно - доставка не реже одного раза.
+ * Повтор уже записанного события LicenseHistoryWriter пропускает по event_id.
+ */
 @Service
 @RequiredArgsConstructor
 public class LicenseHistoryService {
 
-    private final LicenseHistoryRepository licenseHistoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LicenseHistoryWriter licenseHistoryWriter;
+    private final IncompleteEventPublications incompleteEventPublications;
+    private final CompletedEventPublications completedEventPublications;
 
-    // Метод для записи изменений в истории лицензий
+    // Больше licensing.history.write-timeout, чтобы не отправлять повторно ожидающие записи
+    @Value("${licensing.history.resubmit-after:300000}")
+    private long resubmitAfter;
+
+    @Value("${licensing.history.completed-retention:86400000}")
+    private long completedRetention;
+
+    // Метод для записи изменений в истории лицензий: вызывается в транзакции изменения лицензии
+    @Transactional(propagation = Propagation.MANDATORY)
     public void recordLicenseChange(Long licenseId, Long userId, String status, Date changeDate, String description) {
-        LicenseHistory history = new LicenseHistory();
-        history.setLicenseId(licenseId);
-        history.setUserId(userId);
-        history.setStatus(status);
-        history.setChangeDate(changeDate);
-        history.setDescription(description);
-
-        // Сохраняем запись в базу данных
-        licenseHistoryRepository.save(history);
+        eventPublisher.publishEvent(new LicenseChangedEvent(UUID.randomUUID().toString(), licenseId, userId, status, changeDate, description));
+    }
+
+    // Публикация отмечается выполненной после возврата, то есть после коммита пакета с этой записью
+    @Async
+    @TransactionalEventListener
+    public void onLicenseChanged(LicenseChangedEvent event) {
+        licenseHistoryWriter.write(event);
+    }
+
+    @Scheduled(fixedDelayString = "${licensing.history.resubmit-interval:60000}")
+    public void resubmitIncomplete() {
+        incompleteEventPublications.resubmitIncompletePublicationsOlderThan(Duration.ofMillis(resubmitAfter));
+    }
+
+    @Scheduled(fixedDelayString = "${licensing.history.cleanup-interval:3600000}")
+    public void deleteCompleted() {
+        completedEventPublications.deletePublicationsOlderThan(Duration.ofMillis(completedRetention));
     }
 }
@@ -0,0 +1,229 @@
+package org.example.kurs.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.example.kurs.model.LicenseChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Групповая запись истории лицензий.
+ * <p>
+ * Обработчики событий ставят запись в очередь и ждут ее фиксации; поток записи собирает пакет
+ * (до batch-size записей или max-delay мс ожидания) и вставляет его одной транзакцией JDBC.
+ * Обработчик возвращается только после коммита пакета, поэтому публикация события отмечается выполненной
+ * лишь для записанной истории, а при сбое остается в event_publication и будет отправлена повторно.
+ * Повторно доставленное событие с уже записанным event_id не вставляется: уникальный ключ
+ * uk_license_history_event_id не дает доставке не реже одного раза дублировать историю.
+ */
+@Component
+public class LicenseHistoryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LicenseHistoryWriter.class);
+
+    private static final String INSERT_SQL = "insert into license_history (id, license_id, user_id, status, change_date, description, event_id) values (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdentifierAllocator identifierAllocator;
+    private final int batchSize;
+    private final long maxDelay;
+    private final long writeTimeout;
+
+    private final BlockingQueue<Pending> queue;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private long batches;
+    private long written;
+    private long failed;
+    private long skipped;
+    private int maxBatch;
+
+    public LicenseHistoryWriter(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                IdentifierAllocator identifierAllocator,
+                                @Value("${licensing.history.batch-size:200}") int batchSize,
+                                @Value("${licensing.history.max-delay:20}") long maxDelay,
+                                @Value("${licensing.history.queue-capacity:10000}") int queueCapacity,
+                                @Value("${licensing.history.write-timeout:30000}") long writeTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.identifierAllocator = identifierAllocator;
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+        this.writeTimeout = writeTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::run, "license-history-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    // Блокирует до коммита пакета с этой записью; исключение - запись не сохранена
+    public void write(LicenseChangedEvent event) {
+        Pending pending = new Pending(event);
+        try {
+            if (!queue.offer(pending, writeTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Очередь записи истории переполнена");
+            }
+            pending.future.get(writeTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запись истории прервана", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось записать историю лицензии", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Превышено время ожидания записи истории", e);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Окно группового коммита: ждем попутные записи не дольше maxDelay
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        try {
+            List<LicenseChangedEvent> rows = withoutWritten(batch);
+            if (!rows.isEmpty()) {
+                long firstId = identifierAllocator.allocate("license_history", rows.size());
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                            @Override
+                            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                                LicenseChangedEvent event = rows.get(i);
+                                statement.setLong(1, firstId + i);
+                                statement.setLong(2, event.getLicenseId());
+                                statement.setLong(3, event.getUserId());
+                                statement.setString(4, event.getStatus());
+                                statement.setTimestamp(5, new Timestamp(event.getChangeDate().getTime()));
+                                statement.setString(6, event.getDescription());
+                                statement.setString(7, event.getEventId());
+                            }
+
+                            @Override
+                            public int getBatchSize() {
+                                return rows.size();
+                            }
+                        }));
+            }
+            synchronized (this) {
+                batches++;
+                written += rows.size();
+                skipped += batch.size() - rows.size();
+                maxBatch = Math.max(maxBatch, batch.size());
+            }
+            batch.forEach(pending -> pending.future.complete(null));
+        } catch (RuntimeException e) {
+            logger.error("Не удалось записать пакет истории из {} записей: {}", batch.size(), e.getMessage(), e);
+            synchronized (this) {
+                failed += batch.size();
+            }
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    // Повторная доставка уже записанного события (и повтор внутри пакета) пропускается и считается выполненной.
+    // Если другой узел запишет то же событие между проверкой и вставкой, пакет упадет на уникальном ключе,
+    // публикации останутся незавершенными и при повторной отправке будут пропущены здесь
+    private List<LicenseChangedEvent> withoutWritten(List<Pending> batch) {
+        List<String> eventIds = batch.stream()
+                .map(pending -> pending.event.getEventId())
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Set<String> seen = new HashSet<>();
+        if (!eventIds.isEmpty()) {
+            String placeholders = String.join(",", Collections.nCopies(eventIds.size(), "?"));
+            seen.addAll(jdbcTemplate.queryForList("select event_id from license_history where event_id in (" + placeholders + ")",
+                    String.class, eventIds.toArray()));
+        }
+        List<LicenseChangedEvent> rows = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            // События, опубликованные до появления event_id, записываются как раньше
+            String eventId = pending.event.getEventId();
+            if (eventId == null || seen.add(eventId)) {
+                rows.add(pending.event);
+            }
+        }
+        return rows;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("batches", batches);
+        stats.put("written", written);
+        stats.put("failed", failed);
+        stats.put("skipped", skipped);
+        stats.put("avgBatch", batches == 0 ? 0.0 : (double) written / batches);
+        stats.put("maxBatch", maxBatch);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writerThread.interrupt();
+    }
+
+    private static final class Pending {
+
+        private final LicenseChangedEvent event;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(LicenseChangedEvent event) {
+            this.event = event;
+        }
+    }
+}
@@ -1,31 +1,61 @@
 package org.example.kurs.service.impl;
 
+import jakarta.annotation.PreDestroy;
 import org.example.kurs.model.LicenseType;
 import org.example.kurs.repository.LicenseTypeRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class LicenseTypeService {
 
     private final LicenseTypeRepository licenseTypeRepository;
+    private final NearCache<Long, LicenseType> licenseTypeCache;
+    private final int cacheMaxSize;
+
+    @Value("${reference-cache.warm-on-startup:true}")
+    private boolean warmOnStartup;
 
     @Autowired
-    public LicenseTypeService(LicenseTypeRepository licenseTypeRepository) {
+    public LicenseTypeService(LicenseTypeRepository licenseTypeRepository,
+                          @Value("${reference-cache.max-size:10000}") int cacheMaxSize,
+                          @Value("${reference-cache.ttl:300000}") long cacheTtl,
+                          @Value("${reference-cache.refresh-ahead:0.8}") double refreshAhead) {
         this.licenseTypeRepository = licenseTypeRepository;
+        this.cacheMaxSize = cacheMaxSize;
+        this.licenseTypeCache = new NearCache<>("license-type-cache", licenseTypeRepository::findById, cacheMaxSize, cacheTtl, refreshAhead);
+    }
+
+    // Прогрев кеша при старте: первые запросы на создание лицензий не идут в базу
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmCache() {
+        if (!warmOnStartup) {
+            return;
+        }
+        Map<Long, LicenseType> licenseTypes = new LinkedHashMap<>();
+        licenseTypeRepository.findAll(PageRequest.of(0, cacheMaxSize)).forEach(licenseType -> licenseTypes.put(licenseType.getId(), licenseType));
+        licenseTypeCache.putAll(licenseTypes);
     }
 
     // Создание или обновление типа лицензии
     public LicenseType saveLicenseType(LicenseType licenseType) {
-        return licenseTypeRepository.save(licenseType);
+        LicenseType saved = licenseTypeRepository.save(licenseType);
+        licenseTypeCache.invalidate(saved.getId());
+        return saved;
     }
 
-    // Получение типа лицензии по ID
+    // Получение типа лицензии по ID (через кеш; возвращаемый объект не изменяется)
     public Optional<LicenseType> getLicenseTypeById(Long id) {
-        return licenseTypeRepository.findById(id);
+        return licenseTypeCache.get(id);
     }
 
     // Получение всех типов лицензий
@@ -36,5 +66,15 @@ public class LicenseTypeService {
     // Удаление типа лицензии по ID
     public void deleteLicenseType(Long id) {
         licenseTypeRepository.deleteById(id);
+        licenseTypeCache.invalidate(id);
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return licenseTypeCache.getStats();
+    }
+
+    @PreDestroy
+    public void close() {
+        licenseTypeCache.close();
     }
 }
@@ -0,0 +1,150 @@
+package org.example.kurs.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ограничение попыток входа (token bucket).
+ * По IP-адресу расходуется каждая попытка, по паре учетная запись + IP - только неудачные попытки входа
+ * в существующую учетную запись. Подбор пароля с одного адреса не блокирует вход владельцу с другого,
+ * а несуществующие email не создают записей. Неудачные попытки со всех адресов дополнительно считаются
+ * в общем лимите учетной записи с большей емкостью: распределенный подбор с множества IP упирается в него.
+ * Общий лимит успешным входом не сбрасывается - иначе владелец, входя по расписанию, снимал бы его
+ * для подбирающего; цена - при массовом подборе владелец тоже ждет пополнения.
+ * Запрос сверх лимита отклоняется до проверки пароля и не занимает пул хеширования.
+ */
+@Component
+public class LoginThrottle {
+
+    private final Limit ipLimit;
+    private final Limit accountLimit;
+    private final Limit accountTotalLimit;
+    private final int maxKeys;
+
+    private final LinkedHashMap<String, Bucket> ipBuckets = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Bucket> accountBuckets = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Bucket> accountTotalBuckets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long throttledByIp;
+    private long throttledByAccount;
+    private long throttledByAccountTotal;
+
+    public LoginThrottle(@Value("${auth.throttle.ip.capacity:20}") int ipCapacity,
+                         @Value("${auth.throttle.ip.per-minute:20}") double ipPerMinute,
+                         @Value("${auth.throttle.account.capacity:5}") int accountCapacity,
+                         @Value("${auth.throttle.account.per-minute:1}") double accountPerMinute,
+                         @Value("${auth.throttle.account-total.capacity:50}") int accountTotalCapacity,
+                         @Value("${auth.throttle.account-total.per-minute:10}") double accountTotalPerMinute,
+                         @Value("${auth.throttle.max-keys:100000}") int maxKeys) {
+        this.ipLimit = new Limit(ipCapacity, ipPerMinute);
+        this.accountLimit = new Limit(accountCapacity, accountPerMinute);
+        this.accountTotalLimit = new Limit(accountTotalCapacity, accountTotalPerMinute);
+        this.maxKeys = maxKeys;
+    }
+
+    // 0 - попытка разрешена (и учтена для IP), иначе через сколько секунд можно повторить
+    public synchronized long tryAcquire(String email, String ip) {
+        long now = System.nanoTime();
+        Bucket account = email != null ? accountBuckets.get(accountKey(email, ip)) : null;
+        if (account != null) {
+            account.refill(accountLimit, now);
+            if (account.tokens < 1) {
+                throttledByAccount++;
+                return account.retryAfterSeconds(accountLimit);
+            }
+        }
+        Bucket accountTotal = email != null ? accountTotalBuckets.get(email) : null;
+        if (accountTotal != null) {
+            accountTotal.refill(accountTotalLimit, now);
+            if (accountTotal.tokens < 1) {
+                throttledByAccountTotal++;
+                return accountTotal.retryAfterSeconds(accountTotalLimit);
+            }
+        }
+        Bucket address = bucket(ipBuckets, ip, ipLimit, now);
+        if (address.tokens < 1) {
+            throttledByIp++;
+            return address.retryAfterSeconds(ipLimit);
+        }
+        address.tokens--;
+        return 0;
+    }
+
+    // Только для найденной учетной записи: неизвестный email расходует лишь лимит IP
+    public synchronized void recordFailure(String email, String ip) {
+        long now = System.nanoTime();
+        Bucket account = bucket(accountBuckets, accountKey(email, ip), accountLimit, now);
+        account.tokens = Math.max(0, account.tokens - 1);
+        Bucket accountTotal = bucket(accountTotalBuckets, email, accountTotalLimit, now);
+        accountTotal.tokens = Math.max(0, accountTotal.tokens - 1);
+    }
+
+    // Успешный вход снимает ограничение с учетной записи для этого адреса; общий лимит учетной записи остается
+    public synchronized void recordSuccess(String email, String ip) {
+        accountBuckets.remove(accountKey(email, ip));
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedIps", ipBuckets.size());
+        stats.put("trackedAccounts", accountBuckets.size());
+        stats.put("throttledByIp", throttledByIp);
+        stats.put("throttledByAccount", throttledByAccount);
+        stats.put("throttledByAccountTotal", throttledByAccountTotal);
+        return stats;
+    }
+
+    private static String accountKey(String email, String ip) {
+        return email + '|' + ip;
+    }
+
+    private Bucket bucket(LinkedHashMap<String, Bucket> buckets, String key, Limit limit, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket(limit.capacity, now);
+            buckets.put(key, bucket);
+            if (buckets.size() > maxKeys) {
+                var eldest = buckets.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        } else {
+            bucket.refill(limit, now);
+        }
+        return bucket;
+    }
+
+    private static final class Limit {
+
+        private final int capacity;
+        private final double tokensPerNano;
+
+        private Limit(int capacity, double perMinute) {
+            this.capacity = capacity;
+            this.tokensPerNano = perMinute / 60_000_000_000.0;
+        }
+    }
+
+    private static final class Bucket {
+
+        private double tokens;
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        private void refill(Limit limit, long now) {
+            tokens = Math.min(limit.capacity, tokens + (now - updatedAt) * limit.tokensPerNano);
+            updatedAt = now;
+        }
+
+        private long retryAfterSeconds(Limit limit) {
+            return Math.max(1, (long) Math.ceil((1 - tokens) / limit.tokensPerNano / 1_000_000_000.0));
+        }
+    }
+}
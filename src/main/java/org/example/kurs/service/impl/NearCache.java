@@ -0,0 +1,227 @@
+package org.example.kurs.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру кеш справочных данных в памяти узла (read-through, LRU, TTL).
+ * <p>
+ * Промах загружает значение через loader. Запись старше ttl загружается заново, а при включенном
+ * refresh-ahead запись старше refreshAhead * ttl возвращается сразу и обновляется в фоне одним потоком.
+ * Изменения на этом узле сбрасывают запись через invalidate, изменения на других узлах видны не позже ttl.
+ * Загрузка, начатая до invalidate того же ключа (или invalidateAll), свое значение в кеш не кладет;
+ * сброс других ключей на нее не влияет. Значения общие для всех потоков -
+ * вызывающий код их не изменяет.
+ */
+public class NearCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCache.class);
+
+    private final String name;
+    private final Function<K, Optional<V>> loader;
+    private final int maxSize;
+    private final long ttl;
+    private final long refreshAfter;
+    private final Clock clock;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ExecutorService refresher;
+
+    // Загрузки в процессе по ключам: invalidate ключа увеличивает его поколение, и загрузка,
+    // начатая раньше, результат не сохраняет. Запись живет, пока идет хотя бы одна загрузка ключа
+    private final Map<K, Loading> loading = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long loads;
+    private long refreshes;
+    private long evictions;
+    private long invalidations;
+
+    // refreshAhead - доля ttl, после которой запись обновляется в фоне; 0 - без фонового обновления
+    public NearCache(String name, Function<K, Optional<V>> loader, int maxSize, long ttl, double refreshAhead) {
+        this(name, loader, maxSize, ttl, refreshAhead, Clock.systemUTC());
+    }
+
+    // Часы подменяются в тестах
+    NearCache(String name, Function<K, Optional<V>> loader, int maxSize, long ttl, double refreshAhead, Clock clock) {
+        this.name = name;
+        this.clock = clock;
+        this.loader = loader;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.refreshAfter = refreshAhead > 0 && refreshAhead < 1 ? (long) (ttl * refreshAhead) : Long.MAX_VALUE;
+        this.refresher = refreshAfter == Long.MAX_VALUE ? null : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Optional<V> get(K key) {
+        long now = clock.millis();
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && now - entry.loadedAt < ttl) {
+                hits++;
+                if (now - entry.loadedAt >= refreshAfter && !entry.refreshing) {
+                    entry.refreshing = true;
+                    scheduleRefresh(key);
+                }
+                return Optional.of(entry.value);
+            }
+            misses++;
+            loadGeneration = startLoad(key);
+        }
+        Optional<V> value = Optional.empty();
+        try {
+            value = loader.apply(key);
+        } finally {
+            synchronized (this) {
+                loads++;
+                if (finishLoad(key, loadGeneration) && value.isPresent()) {
+                    put(key, value.get(), now);
+                }
+            }
+        }
+        return value;
+    }
+
+    // Начальное заполнение (прогрев при старте)
+    public synchronized void putAll(Map<K, V> values) {
+        long now = clock.millis();
+        values.forEach((key, value) -> put(key, value, now));
+    }
+
+    public synchronized void invalidate(K key) {
+        Loading current = loading.get(key);
+        if (current != null) {
+            current.generation++;
+        }
+        invalidations++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        loading.values().forEach(current -> current.generation++);
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("loads", loads);
+        stats.put("refreshes", refreshes);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private void put(K key, V value, long loadedAt) {
+        entries.put(key, new Entry<>(value, loadedAt));
+        if (entries.size() > maxSize) {
+            var eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // Регистрирует загрузку ключа и возвращает его текущее поколение
+    private long startLoad(K key) {
+        Loading current = loading.computeIfAbsent(key, k -> new Loading());
+        current.count++;
+        return current.generation;
+    }
+
+    // Завершает загрузку ключа; true - ключ с ее начала не сбрасывался и результат можно сохранить
+    private boolean finishLoad(K key, long loadGeneration) {
+        Loading current = loading.get(key);
+        boolean valid = current.generation == loadGeneration;
+        if (--current.count == 0) {
+            loading.remove(key);
+        }
+        return valid;
+    }
+
+    private void scheduleRefresh(K key) {
+        try {
+            refresher.execute(() -> refresh(key));
+        } catch (RejectedExecutionException e) {
+            // Кеш закрыт - запись истечет по ttl
+        }
+    }
+
+    private void refresh(K key) {
+        long startedAt = clock.millis();
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = startLoad(key);
+        }
+        Optional<V> value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось обновить запись {} кеша {}: {}", key, name, e.getMessage());
+            synchronized (this) {
+                finishLoad(key, loadGeneration);
+                Entry<V> entry = entries.get(key);
+                if (entry != null) {
+                    entry.refreshing = false;
+                }
+            }
+            return;
+        }
+        synchronized (this) {
+            refreshes++;
+            if (!finishLoad(key, loadGeneration)) {
+                return;
+            }
+            if (value.isPresent()) {
+                put(key, value.get(), startedAt);
+            } else {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private static final class Loading {
+
+        private int count;
+        private long generation;
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long loadedAt;
+        private boolean refreshing;
+
+        private Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
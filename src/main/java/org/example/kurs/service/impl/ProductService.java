@@ -1,31 +1,62 @@
 package org.example.kurs.service;
 
+import jakarta.annotation.PreDestroy;
 import org.example.kurs.model.Product;
 import org.example.kurs.repository.ProductRepository;
+import org.example.kurs.service.impl.NearCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final NearCache<Long, Product> productCache;
+    private final int cacheMaxSize;
+
+    @Value("${reference-cache.warm-on-startup:true}")
+    private boolean warmOnStartup;
 
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository,
+                          @Value("${reference-cache.max-size:10000}") int cacheMaxSize,
+                          @Value("${reference-cache.ttl:300000}") long cacheTtl,
+                          @Value("${reference-cache.refresh-ahead:0.8}") double refreshAhead) {
         this.productRepository = productRepository;
+        this.cacheMaxSize = cacheMaxSize;
+        this.productCache = new NearCache<>("product-cache", productRepository::findById, cacheMaxSize, cacheTtl, refreshAhead);
+    }
+
+    // Прогрев кеша при старте: первые запросы на создание лицензий не идут в базу
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmCache() {
+        if (!warmOnStartup) {
+            return;
+        }
+        Map<Long, Product> products = new LinkedHashMap<>();
+        productRepository.findAll(PageRequest.of(0, cacheMaxSize)).forEach(product -> products.put(product.getId(), product));
+        productCache.putAll(products);
     }
 
     // Создание или обновление продукта
     public Product saveProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productCache.invalidate(saved.getId());
+        return saved;
     }
 
-    // Получение продукта по ID
+    // Получение продукта по ID (через кеш; возвращаемый объект не изменяется)
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return productCache.get(id);
     }
 
     // Получение всех продуктов
@@ -36,5 +67,15 @@ public class ProductService {
     // Удаление продукта по ID
     public void deleteProduct(Long id) {
         productRepository.deleteById(id);
+        productCache.invalidate(id);
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return productCache.getStats();
+    }
+
+    @PreDestroy
+    public void close() {
+        productCache.close();
     }
 }
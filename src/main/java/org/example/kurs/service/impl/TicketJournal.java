@@ -0,0 +1,232 @@
+package org.example.kurs.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.kurs.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Журнал выданных тикетов: сегментированный append-only файл, отображенный в память.
+ * Запись тикета - копирование в MappedByteBuffer без обращения к базе данных.
+ * fsync (MappedByteBuffer.force) выполняется вне блокировки записи: запись в память отображения
+ * продолжается, пока сбрасывается уже записанное. Сбросы между собой упорядочены отдельной блокировкой.
+ * Формат записей описан в {@link TicketJournalFormat}, чтение - {@link TicketJournalReader}.
+ */
+@Component
+public class TicketJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketJournal.class);
+
+    public enum FsyncPolicy {
+        NONE,       // Сброс на диск выполняет ОС
+        ALWAYS,     // Сброс после каждой записи
+        INTERVAL    // Периодический сброс (ticket.journal.fsync-interval)
+    }
+
+    @Value("${ticket.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ticket.journal.directory:data/ticket-journal}")
+    private String directoryName;
+
+    @Value("${ticket.journal.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${ticket.journal.fsync:INTERVAL}")
+    private FsyncPolicy fsyncPolicy;
+
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(TicketJournalFormat.HEADER_LENGTH + TicketJournalFormat.MAX_PAYLOAD_LENGTH);
+
+    private Path directory;
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private boolean dirty;
+
+    // Закрытые сегменты, еще не сброшенные на диск (INTERVAL)
+    private final List<MappedByteBuffer> retired = new ArrayList<>();
+    // Порядок сбросов; запись тикетов этой блокировкой не ограничивается
+    private final Object flushLock = new Object();
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong appendNanos = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        directory = Path.of(directoryName);
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        List<Path> segments = new TicketJournalReader(directory).segments();
+        if (segments.isEmpty()) {
+            openSegment(1);
+            return;
+        }
+
+        // Продолжаем последний сегмент с позиции после последней целой записи
+        Path last = segments.get(segments.size() - 1);
+        segmentIndex = TicketJournalFormat.segmentIndex(last.getFileName().toString());
+        segment = map(last, Math.max(segmentSize, (int) Files.size(last)));
+        while (TicketJournalFormat.decode(segment) != null) {
+            // пропуск существующих записей
+        }
+        clearTail();
+        logger.info("Журнал тикетов открыт: сегмент {}, позиция {}", last.getFileName(), segment.position());
+    }
+
+    // Добавление тикета в журнал; ошибки записи не прерывают выдачу тикета
+    public void append(Ticket ticket) {
+        if (!enabled) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        MappedByteBuffer written;
+        int position;
+        int length;
+        try {
+            synchronized (this) {
+                if (segment == null) {
+                    return;
+                }
+                TicketJournalFormat.encode(ticket, recordBuffer);
+                // В конце сегмента всегда остается нулевой заголовок-терминатор
+                if (segment.remaining() < recordBuffer.remaining() + TicketJournalFormat.HEADER_LENGTH) {
+                    rollover();
+                }
+                written = segment;
+                position = segment.position();
+                segment.put(recordBuffer);
+                length = segment.position() - position;
+                dirty = fsyncPolicy == FsyncPolicy.INTERVAL;
+            }
+            // ALWAYS: тикет на диске до возврата, но другие потоки в это время уже пишут следующие записи
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                written.force(position, length);
+            }
+            appended.incrementAndGet();
+            appendNanos.addAndGet(System.nanoTime() - startedAt);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            logger.error("Не удалось записать тикет в журнал: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ticket.journal.fsync-interval:1000}")
+    public void flush() {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL) {
+            return;
+        }
+        synchronized (flushLock) {
+            List<MappedByteBuffer> pending;
+            synchronized (this) {
+                if (!dirty && retired.isEmpty()) {
+                    return;
+                }
+                pending = new ArrayList<>(retired);
+                retired.clear();
+                if (dirty && segment != null) {
+                    pending.add(segment);
+                }
+                dirty = false;
+            }
+            // force сбрасывает отображение целиком и не использует позицию буфера, поэтому append не блокируется
+            long startedAt = System.nanoTime();
+            for (MappedByteBuffer buffer : pending) {
+                buffer.force();
+            }
+            flushes.incrementAndGet();
+            flushNanos.addAndGet(System.nanoTime() - startedAt);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (flushLock) {
+            List<MappedByteBuffer> pending;
+            synchronized (this) {
+                pending = new ArrayList<>(retired);
+                retired.clear();
+                if (segment != null) {
+                    pending.add(segment);
+                    segment = null;
+                }
+            }
+            for (MappedByteBuffer buffer : pending) {
+                buffer.force();
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("fsync", fsyncPolicy);
+        stats.put("segment", segmentIndex);
+        stats.put("segmentPosition", segment != null ? segment.position() : 0);
+        long appendedCount = appended.get();
+        long flushCount = flushes.get();
+        stats.put("appended", appendedCount);
+        stats.put("failed", failed.get());
+        stats.put("avgAppendMicros", appendedCount == 0 ? 0.0 : appendNanos.get() / 1000.0 / appendedCount);
+        stats.put("flushes", flushCount);
+        stats.put("avgFlushMicros", flushCount == 0 ? 0.0 : flushNanos.get() / 1000.0 / flushCount);
+        return stats;
+    }
+
+    // Закрытый сегмент сбрасывается на диск при следующем flush, а не под блокировкой записи
+    private void rollover() throws IOException {
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            retired.add(segment);
+            dirty = true;
+        }
+        openSegment(segmentIndex + 1);
+        logger.info("Журнал тикетов: переход на сегмент {}", segmentIndex);
+    }
+
+    private void openSegment(long index) throws IOException {
+        segmentIndex = index;
+        segment = map(directory.resolve(TicketJournalFormat.segmentName(index)), segmentSize);
+    }
+
+    // Обнуление оборванной записи в конце сегмента, чтобы ее байты не читались как заголовок
+    private void clearTail() {
+        int position = segment.position();
+        if (segment.remaining() < 4 || segment.getInt(position) == 0) {
+            return;
+        }
+        int end = Math.min(segment.limit(), position + TicketJournalFormat.HEADER_LENGTH + TicketJournalFormat.MAX_PAYLOAD_LENGTH);
+        while (segment.position() < end) {
+            segment.put((byte) 0);
+        }
+        segment.position(position);
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
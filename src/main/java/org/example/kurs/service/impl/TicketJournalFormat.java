@@ -0,0 +1,118 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.Ticket;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+/**
+ * Бинарный формат записей журнала тикетов.
+ * <p>
+ * Запись: length(4) | crc32(4) | payload(length). Нулевая длина означает конец данных в сегменте
+ * (файл сегмента заранее заполнен нулями). Payload: serverDate(8) | ticketLifetime(4) | activationDate(8) |
+ * expirationDate(8) | userId(8) | deviceId(8) | blocked(1) | signatureLength(2) | signature.
+ * Отсутствующие значения кодируются как Long.MIN_VALUE.
+ */
+final class TicketJournalFormat {
+
+    static final int HEADER_LENGTH = 8;
+    static final int MAX_PAYLOAD_LENGTH = 8 + 4 + 8 + 8 + 8 + 8 + 1 + 2 + 0xFFFF;
+    static final String SEGMENT_PREFIX = "tickets-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final long NULL = Long.MIN_VALUE;
+
+    private TicketJournalFormat() {
+    }
+
+    static String segmentName(long index) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    static long segmentIndex(String fileName) {
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    static boolean isSegment(String fileName) {
+        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+    }
+
+    // Кодирует тикет в буфер (заголовок + payload); буфер после вызова готов к чтению
+    static void encode(Ticket ticket, ByteBuffer buffer) {
+        byte[] signature = ticket.getDigitalSignature() != null
+                ? ticket.getDigitalSignature().getBytes(StandardCharsets.US_ASCII)
+                : new byte[0];
+        if (signature.length > 0xFFFF) {
+            throw new IllegalArgumentException("Слишком длинная подпись тикета");
+        }
+
+        buffer.clear();
+        buffer.position(HEADER_LENGTH);
+        buffer.putLong(ticket.getServerDate() != null
+                ? ticket.getServerDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : NULL);
+        buffer.putInt(ticket.getTicketLifetime());
+        buffer.putLong(ticket.getActivationDate() != null ? ticket.getActivationDate().getTime() : NULL);
+        buffer.putLong(ticket.getExpirationDate() != null ? ticket.getExpirationDate().getTime() : NULL);
+        buffer.putLong(ticket.getUserId() != null ? ticket.getUserId() : NULL);
+        buffer.putLong(ticket.getDeviceId() != null ? ticket.getDeviceId() : NULL);
+        buffer.put((byte) (ticket.isBlocked() ? 1 : 0));
+        buffer.putShort((short) signature.length);
+        buffer.put(signature);
+
+        int payloadLength = buffer.position() - HEADER_LENGTH;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_LENGTH, payloadLength);
+        buffer.putInt(0, payloadLength);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+    }
+
+    // Читает запись с текущей позиции; null, если данных больше нет или запись повреждена
+    static Ticket decode(ByteBuffer segment) {
+        if (segment.remaining() < HEADER_LENGTH) {
+            return null;
+        }
+        int start = segment.position();
+        int length = segment.getInt(start);
+        if (length <= 0 || length > MAX_PAYLOAD_LENGTH || length > segment.remaining() - HEADER_LENGTH) {
+            return null;
+        }
+
+        byte[] payload = new byte[length];
+        segment.get(start + HEADER_LENGTH, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != segment.getInt(start + 4)) {
+            return null;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(payload);
+        Ticket ticket = new Ticket();
+        long serverDate = data.getLong();
+        ticket.setServerDate(serverDate != NULL
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(serverDate), ZoneId.systemDefault())
+                : null);
+        ticket.setTicketLifetime(data.getInt());
+        long activationDate = data.getLong();
+        ticket.setActivationDate(activationDate != NULL ? new Date(activationDate) : null);
+        long expirationDate = data.getLong();
+        ticket.setExpirationDate(expirationDate != NULL ? new Date(expirationDate) : null);
+        long userId = data.getLong();
+        ticket.setUserId(userId != NULL ? userId : null);
+        long deviceId = data.getLong();
+        ticket.setDeviceId(deviceId != NULL ? deviceId : null);
+        ticket.setBlocked(data.get() == 1);
+        byte[] signature = new byte[Short.toUnsignedInt(data.getShort())];
+        data.get(signature);
+        ticket.setDigitalSignature(signature.length > 0 ? new String(signature, StandardCharsets.US_ASCII) : null);
+
+        segment.position(start + HEADER_LENGTH + length);
+        return ticket;
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.Ticket;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Офлайн-чтение журнала тикетов: последовательный обход всех сегментов каталога в порядке записи.
+ * Работает без контекста Spring, например из утилиты аудита:
+ * <pre>
+ * for (Ticket ticket : new TicketJournalReader(Path.of("data/ticket-journal"))) { ... }
+ * </pre>
+ */
+public class TicketJournalReader implements Iterable<Ticket> {
+
+    private final Path directory;
+
+    public TicketJournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    // Сегменты журнала по возрастанию номера
+    public List<Path> segments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> TicketJournalFormat.isSegment(file.getFileName().toString()))
+                    .sorted(Comparator.comparingLong(file -> TicketJournalFormat.segmentIndex(file.getFileName().toString())))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Iterator<Ticket> iterator() {
+        return new SegmentIterator(segments().iterator());
+    }
+
+    // Чтение одного сегмента целиком (для небольших выборок и тестов)
+    public static List<Ticket> readSegment(Path segment) {
+        List<Ticket> tickets = new ArrayList<>();
+        new SegmentIterator(List.of(segment).iterator()).forEachRemaining(tickets::add);
+        return tickets;
+    }
+
+    private static final class SegmentIterator implements Iterator<Ticket> {
+
+        private final Iterator<Path> segments;
+        private MappedByteBuffer buffer;
+        private Ticket next;
+
+        private SegmentIterator(Iterator<Path> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (buffer != null) {
+                    next = TicketJournalFormat.decode(buffer);
+                    if (next != null) {
+                        break;
+                    }
+                    buffer = null;
+                }
+                if (!segments.hasNext()) {
+                    return false;
+                }
+                buffer = map(segments.next());
+            }
+            return true;
+        }
+
+        @Override
+        public Ticket next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Ticket ticket = next;
+            next = null;
+            return ticket;
+        }
+
+        private static MappedByteBuffer map(Path segment) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.kurs.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import org.example.kurs.client.TicketVerifier;
+import org.example.kurs.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * Подпись тикетов ключом Ed25519. Клиенты проверяют тикет открытым ключом через {@link TicketVerifier}.
+ */
+@Service
+public class TicketSigner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketSigner.class);
+
+    @Value("${ticket.signing.private-key:}")
+    private String privateKeyBase64;
+
+    @Value("${ticket.signing.public-key:}")
+    private String publicKeyBase64;
+
+    private PrivateKey privateKey;
+    private PublicKey publicKey;
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        KeyFactory keyFactory = KeyFactory.getInstance(TicketVerifier.ALGORITHM);
+        if (privateKeyBase64.isBlank() || publicKeyBase64.isBlank()) {
+            // Ключи не заданы: временная пара, тикеты станут недействительными после перезапуска
+            logger.warn("Ключи подписи тикетов не заданы (ticket.signing.*), сгенерирована временная пара Ed25519");
+            KeyPair keyPair = KeyPairGenerator.getInstance(TicketVerifier.ALGORITHM).generateKeyPair();
+            privateKey = keyPair.getPrivate();
+            publicKey = keyPair.getPublic();
+        } else {
+            privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKeyBase64)));
+            publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeyBase64)));
+        }
+    }
+
+    // Подписывает тикет и записывает компактное представление в digitalSignature
+    public Ticket sign(Ticket ticket) {
+        long serverDate = ticket.getServerDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        byte[] payload = TicketVerifier.encodePayload(serverDate, ticket.getTicketLifetime(), ticket.getUserId(),
+                ticket.getDeviceId(), ticket.getExpirationDate(), ticket.isBlocked());
+
+        try {
+            Signature signature = Signature.getInstance(TicketVerifier.ALGORITHM);
+            signature.initSign(privateKey);
+            signature.update(payload);
+
+            Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+            ticket.setDigitalSignature(encoder.encodeToString(payload) + "." + encoder.encodeToString(signature.sign()));
+            return ticket;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось подписать тикет", e);
+        }
+    }
+
+    // Открытый ключ (X.509, base64) для клиентов
+    public String getPublicKey() {
+        return Base64.getEncoder().encodeToString(publicKey.getEncoded());
+    }
+}
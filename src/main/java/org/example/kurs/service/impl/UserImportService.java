@@ -0,0 +1,357 @@
+package org.example.kurs.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.repository.ApplicationUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Массовое создание пользователей из CSV или NDJSON.
+ * <p>
+ * Вход читается потоком и обрабатывается порциями: занятые email проверяются одним запросом на порцию,
+ * пароли хешируются параллельно в отдельном пуле (не в пуле входа PasswordHashingService),
+ * строки вставляются пакетом JDBC. Результат по каждой строке пишется в выходной поток как NDJSON.
+ * <p>
+ * Колонки (CSV с заголовком) или поля (NDJSON): username, email, password, role (USER по умолчанию),
+ * password_hash - готовый хеш BCrypt при переносе пользователей из другой системы, хеширование для него пропускается.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final String INSERT_SQL = "insert into users (id, username, password, email, role) values (?, ?, ?, ?, ?)";
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$");
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    public enum RowStatus {
+        CREATED,
+        CONFLICT,   // Email уже зарегистрирован
+        DUPLICATE,  // Email повторяется во входных данных
+        INVALID
+    }
+
+    private final ApplicationUserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdentifierAllocator identifierAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService hashingExecutor;
+    private final int chunkSize;
+
+    public UserImportService(ApplicationUserRepository userRepository,
+                             PasswordEncoder passwordEncoder,
+                             JdbcTemplate jdbcTemplate,
+                             IdentifierAllocator identifierAllocator,
+                             TransactionTemplate transactionTemplate,
+                             ObjectMapper objectMapper,
+                             @Value("${users.import.hashing-threads:0}") int hashingThreads,
+                             @Value("${users.import.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.jdbcTemplate = jdbcTemplate;
+        this.identifierAllocator = identifierAllocator;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        // Половина ядер по умолчанию: импорт не должен вытеснять вход пользователей и проверки лицензий
+        int threads = hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashingExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hashing-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Импорт с записью результата по каждой строке; возвращает итоговые счетчики
+    public Map<RowStatus, Integer> importUsers(InputStream input, Format format, OutputStream output) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        Map<RowStatus, Integer> totals = new HashMap<>();
+        Set<String> seenEmails = new HashSet<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+            generator.setRootValueSeparator(null);
+            List<String> header = format == Format.CSV ? parseCsvHeader(reader.readLine()) : null;
+            int lineNumber = format == Format.CSV ? 1 : 0;
+
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(parse(line, lineNumber, format, header));
+                if (chunk.size() == chunkSize) {
+                    processChunk(chunk, seenEmails, totals, generator);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                processChunk(chunk, seenEmails, totals, generator);
+            }
+
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("summary");
+            for (RowStatus status : RowStatus.values()) {
+                generator.writeNumberField(status.name().toLowerCase(Locale.ROOT), totals.getOrDefault(status, 0));
+            }
+            generator.writeNumberField("millis", System.currentTimeMillis() - startedAt);
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        logger.info("Импорт пользователей завершен: {} за {} мс", totals, System.currentTimeMillis() - startedAt);
+        return totals;
+    }
+
+    private void processChunk(List<Row> chunk, Set<String> seenEmails,
+                              Map<RowStatus, Integer> totals, JsonGenerator generator) throws IOException {
+        // Повторы внутри импорта
+        List<Row> candidates = new ArrayList<>();
+        for (Row row : chunk) {
+            if (row.status == null) {
+                if (seenEmails.add(row.email)) {
+                    candidates.add(row);
+                } else {
+                    row.fail(RowStatus.DUPLICATE, "Email повторяется во входных данных");
+                }
+            }
+        }
+
+        // Занятые email - одним запросом на порцию
+        if (!candidates.isEmpty()) {
+            Set<String> existing = new HashSet<>(userRepository.findExistingEmails(
+                    candidates.stream().map(row -> row.email).toList()));
+            candidates.removeIf(row -> {
+                if (existing.contains(row.email)) {
+                    row.fail(RowStatus.CONFLICT, "Email уже используется");
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        hashPasswords(candidates);
+        insert(candidates);
+
+        for (Row row : chunk) {
+            totals.merge(row.status, 1, Integer::sum);
+            generator.writeStartObject();
+            generator.writeNumberField("line", row.line);
+            generator.writeStringField("email", row.email);
+            generator.writeStringField("status", row.status.name());
+            if (row.error != null) {
+                generator.writeStringField("error", row.error);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    private void hashPasswords(List<Row> rows) {
+        List<Future<String>> hashes = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            String password = row.password;
+            hashes.add(row.passwordHash != null ? null : hashingExecutor.submit(() -> passwordEncoder.encode(password)));
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            row.password = null;
+            if (hashes.get(i) == null) {
+                continue;
+            }
+            try {
+                row.passwordHash = hashes.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Импорт прерван", e);
+            } catch (ExecutionException e) {
+                row.fail(RowStatus.INVALID, "Не удалось захешировать пароль");
+            }
+        }
+        rows.removeIf(row -> row.status != null);
+    }
+
+    private void insert(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long firstId = identifierAllocator.allocate("users", rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).id = firstId + i;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (statement, row) -> {
+                        statement.setLong(1, row.id);
+                        statement.setString(2, row.username);
+                        statement.setString(3, row.passwordHash);
+                        statement.setString(4, row.email);
+                        statement.setString(5, row.role.name());
+                    }));
+            rows.forEach(row -> row.status = RowStatus.CREATED);
+        } catch (DataIntegrityViolationException e) {
+            // Email заняли параллельно с импортом: порция откатилась, вставляем построчно
+            for (Row row : rows) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, row.id, row.username, row.passwordHash, row.email, row.role.name());
+                    row.status = RowStatus.CREATED;
+                } catch (DataIntegrityViolationException rowError) {
+                    row.fail(RowStatus.CONFLICT, "Email уже используется");
+                }
+            }
+        }
+    }
+
+    private Row parse(String line, int lineNumber, Format format, List<String> header) {
+        Map<String, String> fields = new HashMap<>();
+        Row row = new Row(lineNumber);
+        try {
+            if (format == Format.CSV) {
+                List<String> values = parseCsvLine(line);
+                for (int i = 0; i < header.size() && i < values.size(); i++) {
+                    fields.put(header.get(i), values.get(i));
+                }
+            } else {
+                JsonNode node = objectMapper.readTree(line);
+                node.fields().forEachRemaining(field -> fields.put(field.getKey(), field.getValue().asText()));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            row.fail(RowStatus.INVALID, "Некорректная строка");
+            return row;
+        }
+
+        row.username = blankToNull(fields.get("username"));
+        row.email = blankToNull(fields.get("email"));
+        row.password = blankToNull(fields.get("password"));
+        row.passwordHash = blankToNull(fields.get("password_hash"));
+        if (row.email == null) {
+            row.fail(RowStatus.INVALID, "Не указан email");
+        } else if (row.password == null && row.passwordHash == null) {
+            row.fail(RowStatus.INVALID, "Не указан пароль");
+        } else if (row.passwordHash != null && !BCRYPT_HASH.matcher(row.passwordHash).matches()) {
+            row.fail(RowStatus.INVALID, "password_hash должен быть хешем BCrypt");
+        } else {
+            String role = blankToNull(fields.get("role"));
+            try {
+                row.role = role != null ? ApplicationRole.valueOf(role.toUpperCase(Locale.ROOT)) : ApplicationRole.USER;
+            } catch (IllegalArgumentException e) {
+                row.fail(RowStatus.INVALID, "Неизвестная роль: " + role);
+            }
+        }
+        return row;
+    }
+
+    private static List<String> parseCsvHeader(String line) {
+        if (line == null) {
+            return List.of();
+        }
+        List<String> header = new ArrayList<>();
+        for (String column : parseCsvLine(line.replace("\uFEFF", ""))) {
+            header.add(column.trim().toLowerCase(Locale.ROOT));
+        }
+        return header;
+    }
+
+    // Разбор строки CSV (RFC 4180 без переносов строк внутри значений)
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Незакрытая кавычка");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdown();
+    }
+
+    private static final class Row {
+
+        private final int line;
+        private long id;
+        private String username;
+        private String email;
+        private String password;
+        private String passwordHash;
+        private ApplicationRole role;
+        private RowStatus status;
+        private String error;
+
+        private Row(int line) {
+            this.line = line;
+        }
+
+        private void fail(RowStatus status, String error) {
+            this.status = status;
+            this.error = error;
+        }
+    }
+}
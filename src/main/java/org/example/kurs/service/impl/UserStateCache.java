@@ -0,0 +1,75 @@
+package org.example.kurs.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Состояние пользователей для аутентификации по данным токена без запроса к базе.
+ * Хранит момент последнего изменения пользователя (удаление, смена роли или email):
+ * токены, выпущенные до этого момента, проверяются по базе данных.
+ */
+@Component
+public class UserStateCache {
+
+    private final int maxSize;
+    private final long tokenLifetime;
+
+    private final LinkedHashMap<String, Long> revokedAt = new LinkedHashMap<>(16, 0.75f, false);
+
+    // Нижняя граница: токены, выпущенные до нее, считаются отозванными (после вытеснения записей из кеша)
+    private long revokedBefore;
+
+    public UserStateCache(@Value("${jwt.user-state-cache.max-size:10000}") int maxSize,
+                          @Value("${jwt.expiration}") long tokenLifetime) {
+        this.maxSize = maxSize;
+        this.tokenLifetime = tokenLifetime;
+    }
+
+    // Пользователь изменен или удален: ранее выданные ему токены больше не доверяются без проверки
+    public synchronized void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        revokedAt.remove(email);
+        revokedAt.put(email, now);
+        evictStale(now);
+    }
+
+    // true, если токен пользователя выпущен до его последнего изменения
+    public synchronized boolean isRevoked(String email, Date issuedAt) {
+        if (issuedAt == null) {
+            return true;
+        }
+        long issued = issuedAt.getTime();
+        if (issued <= revokedBefore) {
+            return true;
+        }
+        Long revoked = revokedAt.get(email);
+        return revoked != null && issued <= revoked;
+    }
+
+    public synchronized int size() {
+        return revokedAt.size();
+    }
+
+    private void evictStale(long now) {
+        // Записи старше срока жизни токена не нужны: все токены, выпущенные до них, уже истекли
+        var iterator = revokedAt.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            boolean expired = eldest.getValue() < now - tokenLifetime;
+            if (!expired && revokedAt.size() <= maxSize) {
+                break;
+            }
+            if (!expired) {
+                revokedBefore = Math.max(revokedBefore, eldest.getValue());
+            }
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,2 @@
+-- DeviceKeyFilter.refreshRecent: устройства, активированные после предыдущей загрузки фильтра
+create index idx_device_license_activation_date on device_license (activation_date);
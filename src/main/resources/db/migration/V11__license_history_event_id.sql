@@ -0,0 +1,6 @@
+-- Идентификатор события LicenseChangedEvent: публикация доставляется не реже одного раза,
+-- повторная доставка уже записанного события пропускается по уникальному ключу.
+-- У записей, сделанных до перехода на outbox, идентификатора нет (null в уникальном индексе допускается)
+alter table license_history add column event_id varchar(36);
+
+create unique index uk_license_history_event_id on license_history (event_id);
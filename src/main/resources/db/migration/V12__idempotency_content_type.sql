@@ -0,0 +1,2 @@
+-- Тип содержимого сохраненного ответа: повтор возвращает тот же Content-Type, что и первый ответ
+alter table idempotency_keys add column content_type varchar(255);
@@ -0,0 +1,87 @@
+-- Исходная схема: таблицы в том виде, в каком ddl-auto=update создавал их до перехода на Flyway.
+-- Существующая база помечается этой версией (spring.flyway.baseline-on-migrate) без выполнения файла,
+-- поэтому здесь только то, что в ней уже есть; все последующие изменения - отдельными версиями.
+
+create table users (
+    id bigint not null auto_increment,
+    email varchar(255),
+    password varchar(255),
+    username varchar(255),
+    role enum ('ADMIN','USER'),
+    primary key (id)
+) engine=InnoDB;
+
+create table products (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    is_blocked bit not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table license_types (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    default_duration integer not null,
+    description varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table licenses (
+    id bigint not null auto_increment,
+    code varchar(255) not null,
+    user_id bigint,
+    product_id bigint not null,
+    type_id bigint not null,
+    first_activation_date datetime(6) not null,
+    ending_date datetime(6) not null,
+    blocked bit,
+    device_count integer,
+    owner_id bigint not null,
+    duration integer,
+    description varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table devices (
+    id bigint not null auto_increment,
+    name varchar(255),
+    mac_address varchar(255),
+    user_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create table device_license (
+    id bigint not null auto_increment,
+    license_id bigint,
+    device_id bigint,
+    activation_date datetime(6),
+    primary key (id)
+) engine=InnoDB;
+
+create table license_history (
+    id bigint not null auto_increment,
+    license_id bigint not null,
+    user_id bigint not null,
+    status varchar(255) not null,
+    change_date datetime(6) not null,
+    description varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table tickets (
+    id bigint not null auto_increment,
+    server_date datetime(6),
+    ticket_lifetime integer not null,
+    activation_date datetime(6),
+    expiration_date datetime(6),
+    user_id bigint,
+    device_id bigint,
+    is_blocked bit not null,
+    digital_signature varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+alter table licenses add constraint FKs59i5ldu4h0u48qiutfh9odvv foreign key (type_id) references license_types (id);
+alter table licenses add constraint FK2moomlk28k9rp65yr8nbnbunp foreign key (owner_id) references users (id);
+alter table licenses add constraint FKrwbu30er6kfs9bsiu91xa0vre foreign key (product_id) references products (id);
+alter table licenses add constraint FKe5lglta0iih9hpklacova3avm foreign key (user_id) references users (id);
@@ -0,0 +1,31 @@
+-- Индексы под методы поиска репозиториев (проверка и активация лицензий, вход пользователя)
+
+-- Базы, созданные ddl-auto=update, могли накопить дубликаты кодов лицензий и email: уникальный индекс на них
+-- не создастся, а DDL в MySQL не откатывается, и миграция остановится на середине. Поэтому дубликаты
+-- переименовываются до любых изменений схемы: значение остается у строки с меньшим id, остальные получают
+-- суффикс с id (по дубликату findByCode и findByEmail и раньше не находили одну строку).
+-- Вложенная выборка с group by материализуется, поэтому MySQL допускает ее в update той же таблицы.
+update licenses set code = concat(code, '#dup-', id)
+where id not in (select keep_id from (select min(id) as keep_id from licenses group by code) kept);
+
+update users set email = concat(email, '#dup-', id)
+where email is not null
+    and id not in (select keep_id from (select min(id) as keep_id from users group by email) kept);
+
+-- LicenseRepository.findByCode, findByCodeForUpdate
+create unique index uk_licenses_code on licenses (code);
+
+-- ApplicationUserRepository.findByEmail, findExistingEmails
+create unique index uk_users_email on users (email);
+
+-- DeviceRepository.findByMacAddressAndName, findByMacAddress, findByMacAddressIn; DeviceLicenseRepository.findCheckView(s)
+create index idx_devices_mac_address_name on devices (mac_address, name);
+
+-- DeviceLicenseRepository.findByDeviceId, findByDeviceIdIn, findByDeviceIdAndLicenseId
+create index idx_device_license_device_id_license_id on device_license (device_id, license_id);
+
+-- DeviceLicenseRepository.findByLicenseId
+create index idx_device_license_license_id on device_license (license_id);
+
+-- История изменений лицензии
+create index idx_license_history_license_id on license_history (license_id, change_date);
@@ -0,0 +1,18 @@
+-- Блоки идентификаторов (@PooledId, IdentifierAllocator): next_val - первый свободный идентификатор.
+-- Идентификатор известен до INSERT, поэтому Hibernate и JDBC группируют вставки в пакеты.
+-- auto_increment у первичных ключей остается, но приложение всегда передает id явно.
+
+create table id_generators (
+    name varchar(64) not null,
+    next_val bigint not null,
+    primary key (name)
+) engine=InnoDB;
+
+insert into id_generators (name, next_val) select 'users', coalesce(max(id), 0) + 1 from users;
+insert into id_generators (name, next_val) select 'products', coalesce(max(id), 0) + 1 from products;
+insert into id_generators (name, next_val) select 'license_types', coalesce(max(id), 0) + 1 from license_types;
+insert into id_generators (name, next_val) select 'licenses', coalesce(max(id), 0) + 1 from licenses;
+insert into id_generators (name, next_val) select 'devices', coalesce(max(id), 0) + 1 from devices;
+insert into id_generators (name, next_val) select 'device_license', coalesce(max(id), 0) + 1 from device_license;
+insert into id_generators (name, next_val) select 'license_history', coalesce(max(id), 0) + 1 from license_history;
+insert into id_generators (name, next_val) select 'tickets', coalesce(max(id), 0) + 1 from tickets;
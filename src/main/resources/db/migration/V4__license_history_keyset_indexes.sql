@@ -0,0 +1,12 @@
+-- Keyset-пагинация истории лицензий: order by change_date desc, id desc после фильтра.
+-- InnoDB дописывает первичный ключ (id) в конец вторичного индекса, поэтому (фильтр, change_date)
+-- покрывает и условие курсора (change_date, id).
+
+-- Фильтр по лицензии уже покрыт idx_license_history_license_id (license_id, change_date)
+
+create index idx_license_history_user_id on license_history (user_id, change_date);
+
+create index idx_license_history_status on license_history (status, change_date);
+
+-- Без фильтра или только по диапазону дат
+create index idx_license_history_change_date on license_history (change_date);
@@ -0,0 +1,6 @@
+-- Keyset-пагинация списков администрирования: where id > ? [and фильтр] order by id.
+-- Фильтры лицензий (owner_id, user_id, product_id) покрыты индексами внешних ключей;
+-- InnoDB дописывает id в конец вторичного индекса, поэтому (фильтр) работает как (фильтр, id).
+
+-- DeviceRepository.findPageAfter с фильтром по пользователю
+create index idx_devices_user_id on devices (user_id);
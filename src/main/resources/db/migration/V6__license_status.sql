@@ -0,0 +1,15 @@
+-- Материализованный статус лицензии: фильтр по статусу и поиск ближайших истечений идут по индексу,
+-- а не вычисляются по blocked и ending_date для каждой строки
+
+alter table licenses add column status varchar(16);
+
+update licenses set status = case
+    when blocked = true then 'BLOCKED'
+    when ending_date <= current_timestamp then 'EXPIRED'
+    else 'ACTIVE'
+end;
+
+alter table licenses modify column status varchar(16) not null;
+
+-- LicenseExpiryScheduler: активные лицензии по возрастанию ending_date; фильтр списков по статусу
+create index idx_licenses_status_ending_date on licenses (status, ending_date);
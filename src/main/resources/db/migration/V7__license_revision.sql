@@ -0,0 +1,2 @@
+-- Счетчик изменений вердикта проверки лицензии (ETag ответа /check)
+alter table licenses add column revision bigint;
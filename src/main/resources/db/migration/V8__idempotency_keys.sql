@@ -0,0 +1,13 @@
+-- Сохраненные ответы на запросы с заголовком Idempotency-Key
+create table idempotency_keys (
+    id varchar(64) not null,
+    endpoint varchar(255) not null,
+    request_hash varchar(64) not null,
+    status_code integer,
+    response_body longtext,
+    created_at datetime(6) not null,
+    expires_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_idempotency_keys_expires_at on idempotency_keys (expires_at);
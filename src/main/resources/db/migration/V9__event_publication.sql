@@ -0,0 +1,10 @@
+-- Реестр событий Spring Modulith (outbox истории лицензий)
+create table event_publication (
+    id binary(16) not null,
+    listener_id varchar(255),
+    event_type varchar(255),
+    serialized_event varchar(4000),
+    publication_date datetime(6),
+    completion_date datetime(6),
+    primary key (id)
+) engine=InnoDB;
@@ -0,0 +1,74 @@
+package org.example.kurs;
+
+import lombok.RequiredArgsConstructor;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseType;
+import org.example.kurs.model.Product;
+import org.example.kurs.repository.ApplicationUserRepository;
+import org.example.kurs.repository.LicenseRepository;
+import org.example.kurs.repository.LicenseTypeRepository;
+import org.example.kurs.repository.ProductRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * Общие тестовые данные: пользователь, продукт, тип и лицензия.
+ * Компонент лежит в тестовых исходниках и попадает во все тестовые контексты без отдельного @Import.
+ */
+@Component
+@RequiredArgsConstructor
+public class LicenseFixtures {
+
+    private final ApplicationUserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final LicenseTypeRepository licenseTypeRepository;
+    private final LicenseRepository licenseRepository;
+
+    // Пользователь с ролью USER и email <name>@example.org
+    public ApplicationUser user(String name) {
+        ApplicationUser user = new ApplicationUser();
+        user.setUsername(name);
+        user.setEmail(name + "@example.org");
+        user.setPassword("-");
+        user.setRole(ApplicationRole.USER);
+        return userRepository.save(user);
+    }
+
+    public Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        return productRepository.save(product);
+    }
+
+    public LicenseType licenseType(String name) {
+        LicenseType licenseType = new LicenseType();
+        licenseType.setName(name);
+        licenseType.setDefaultDuration(30);
+        return licenseTypeRepository.save(licenseType);
+    }
+
+    // Несохраненная лицензия на продукт и тип; пользователь назначается при первой активации
+    public License newLicense(ApplicationUser owner, Product product, LicenseType licenseType, String code,
+                              Date endingDate, int seats) {
+        License license = new License();
+        license.setCode(code);
+        license.setOwner(owner);
+        license.setProduct(product);
+        license.setLicenseType(licenseType);
+        license.setFirstActivationDate(new Date());
+        license.setEndingDate(endingDate);
+        license.setBlocked(false);
+        license.setDeviceCount(seats);
+        license.setDuration(30);
+        return license;
+    }
+
+    // Сохраненная лицензия с собственными продуктом и типом
+    public License license(ApplicationUser owner, String code, Date endingDate, int seats) {
+        return licenseRepository.save(newLicense(owner, product(code + " product"), licenseType(code + " type"),
+                code, endingDate, seats));
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.kurs.configuration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Ротация ключей: новый ключ публикуется раньше, чем начинает подписывать; чужой kid перечитывает каталог
+class JwtKeyRingTest {
+
+    private static final long ROTATION = 86_400_000;
+    private static final long REFRESH = 60_000;
+    private static final long JWKS_MAX_AGE = 300_000;
+    private static final long TOKEN_LIFETIME = 3_600_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void newKeyIsPublishedBeforeItSigns() {
+        long start = 1_700_000_000_000L;
+        JwtKeyRing ring = ring(start);
+        String first = ring.current().getKid();
+
+        // Следующий ключ создается за activation delay до конца ротации
+        at(ring, start + ROTATION - ring.getActivationDelay());
+        ring.refresh();
+        assertEquals(2, jwks(ring).size());
+        String second = kid(jwks(ring).get(0));
+        assertNotEquals(first, second);
+        assertEquals(first, ring.current().getKid());
+
+        // Подпись новым ключом - только после refresh-interval + jwks-max-age
+        at(ring, start + ROTATION - 1);
+        assertEquals(first, ring.current().getKid());
+        at(ring, start + ROTATION);
+        assertEquals(second, ring.current().getKid());
+
+        // Старый ключ проверяет токены, пока они не истекут
+        at(ring, start + ROTATION + TOKEN_LIFETIME);
+        ring.refresh();
+        assertNotNull(ring.find(first));
+        at(ring, start + ROTATION + TOKEN_LIFETIME + REFRESH + 1);
+        ring.refresh();
+        assertNull(ring.find(first));
+    }
+
+    @Test
+    void unknownKidReloadsDirectory() {
+        long start = 1_700_000_000_000L;
+        JwtKeyRing local = ring(start);
+        JwtKeyRing other = ring(start);
+        assertEquals(local.current().getKid(), other.current().getKid());
+
+        // Другой узел создал ключ после последнего чтения каталога
+        at(other, start + ROTATION - other.getActivationDelay());
+        other.refresh();
+        String created = kid(jwks(other).get(0));
+        at(local, start + 1);
+        assertNull(local.find(created));
+        assertNotNull(local.findOrReload(created));
+
+        // Неизвестные kid перечитывают каталог не чаще раза в секунду
+        at(other, start + 2 * ROTATION - other.getActivationDelay());
+        other.refresh();
+        String next = kid(jwks(other).get(0));
+        at(local, start + 2);
+        assertNull(local.findOrReload(next));
+        at(local, start + 1001);
+        assertNotNull(local.findOrReload(next));
+    }
+
+    private JwtKeyRing ring(long now) {
+        JwtKeyRing ring = new JwtKeyRing();
+        ReflectionTestUtils.setField(ring, "signingMode", JwtTokenProvider.SigningMode.RS256);
+        ReflectionTestUtils.setField(ring, "directoryName", directory.toString());
+        ReflectionTestUtils.setField(ring, "keySize", 1024);
+        ReflectionTestUtils.setField(ring, "rotationInterval", ROTATION);
+        ReflectionTestUtils.setField(ring, "refreshInterval", REFRESH);
+        ReflectionTestUtils.setField(ring, "jwksMaxAge", JWKS_MAX_AGE);
+        ReflectionTestUtils.setField(ring, "tokenLifetime", TOKEN_LIFETIME);
+        at(ring, now);
+        ring.init();
+        return ring;
+    }
+
+    private static void at(JwtKeyRing ring, long millis) {
+        ring.setClock(Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> jwks(JwtKeyRing ring) {
+        return (List<Map<String, Object>>) ring.getJwks().get("keys");
+    }
+
+    private static String kid(Map<String, Object> jwk) {
+        return (String) jwk.get("kid");
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.kurs.configuration;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.service.impl.UserStateCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Права берутся из claims проверенного токена, пока пользователь не изменен; после изменения - из базы
+@SpringBootTest
+@ActiveProfiles("test")
+class JwtTokenProviderTest {
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private UserStateCache userStateCache;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Test
+    void revokedUserFallsBackToDatabase() {
+        // В базе роль USER, в токене - ADMIN: так видно, откуда взяты права
+        ApplicationUser user = fixtures.user("revoked-token");
+        String token = jwtTokenProvider.createToken(user.getEmail(), ApplicationRole.ADMIN.getGrantedAuthorities());
+
+        assertEquals(authorities(ApplicationRole.ADMIN), authorities(jwtTokenProvider.getAuthentication(token)));
+        long hits = (long) verifiedTokenCache.getStats().get("hits");
+
+        userStateCache.invalidate(user.getEmail());
+
+        // Подпись повторно не проверяется, но права загружаются из базы
+        Authentication authentication = jwtTokenProvider.getAuthentication(token);
+        assertEquals(authorities(ApplicationRole.USER), authorities(authentication));
+        assertEquals(hits + 1, verifiedTokenCache.getStats().get("hits"));
+    }
+
+    private static Set<String> authorities(ApplicationRole role) {
+        return role.getGrantedAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet());
+    }
+
+    private static Set<String> authorities(Authentication authentication) {
+        return authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.kurs.configuration;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// Запись живет до exp токена; токен без exp и кеш нулевого размера ничего не сохраняют
+class VerifiedTokenCacheTest {
+
+    @Test
+    void repeatedTokenIsServedFromCache() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        String digest = VerifiedTokenCache.digest("header.payload.signature");
+        Claims claims = claims("cached@example.org", System.currentTimeMillis() + 60_000);
+
+        assertNull(cache.get(digest));
+        cache.put(digest, claims);
+
+        assertSame(claims, cache.get(digest));
+        assertSame(claims, cache.get(digest));
+        assertEquals(2L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+        assertNotEquals(digest, VerifiedTokenCache.digest("header.payload.signaturf"));
+    }
+
+    @Test
+    void entryExpiresWithToken() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        String digest = VerifiedTokenCache.digest("expired");
+        cache.put(digest, claims("expired@example.org", System.currentTimeMillis() - 1));
+
+        assertNull(cache.get(digest));
+        assertEquals(1L, cache.getStats().get("expirations"));
+        assertEquals(0, cache.getStats().get("size"));
+
+        cache.put(digest, Jwts.claims().setSubject("no-exp@example.org"));
+        assertEquals(0, cache.getStats().get("size"));
+    }
+
+    @Test
+    void eldestEntryIsEvicted() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2);
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        cache.put("a", claims("a@example.org", expiresAt));
+        cache.put("b", claims("b@example.org", expiresAt));
+        // Обращение к a делает b самой старой записью
+        cache.get("a");
+        cache.put("c", claims("c@example.org", expiresAt));
+
+        assertNull(cache.get("b"));
+        assertEquals("a@example.org", cache.get("a").getSubject());
+        assertEquals(1L, cache.getStats().get("evictions"));
+
+        VerifiedTokenCache disabled = new VerifiedTokenCache(0);
+        disabled.put("a", claims("a@example.org", expiresAt));
+        assertNull(disabled.get("a"));
+    }
+
+    private static Claims claims(String subject, long expiresAt) {
+        return Jwts.claims().setSubject(subject).setExpiration(new Date(expiresAt));
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.kurs.controller;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.repository.ApplicationUserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Постраничные списки администрирования: только ROLE_ADMIN, хеши паролей в ответ не попадают
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AdminListControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Autowired
+    private ApplicationUserRepository userRepository;
+
+    @Test
+    void pagesRequireAdmin() throws Exception {
+        String user = token("page-user", ApplicationRole.USER);
+        for (String path : new String[]{"/api/users/page", "/api/devices/page", "/api/licenses/page"}) {
+            mockMvc.perform(get(path).header("Authorization", "Bearer " + user))
+                    .andExpect(status().isForbidden());
+            mockMvc.perform(get(path).param("limit", "1").header("Authorization", "Bearer " + token("page-admin", ApplicationRole.ADMIN)))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void userPageOmitsPassword() throws Exception {
+        fixtures.user("page-listed");
+        mockMvc.perform(get("/api/users/page").param("role", "USER")
+                        .header("Authorization", "Bearer " + token("page-admin", ApplicationRole.ADMIN)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].email").exists())
+                .andExpect(jsonPath("$.items[0].password").doesNotExist());
+    }
+
+    // Роль проверяется по аутентификации запроса: после понижения тот же токен теряет доступ сразу
+    @Test
+    void demotedAdminLosesAccessWithSameToken() throws Exception {
+        ApplicationUser admin = fixtures.user("demoted-admin");
+        admin.setRole(ApplicationRole.ADMIN);
+        userRepository.save(admin);
+        String token = token("demoted-admin", ApplicationRole.ADMIN);
+        mockMvc.perform(get("/api/users/page").param("limit", "1").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/api/users/" + admin.getId()).header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"demoted-admin\",\"email\":\"demoted-admin@example.org\","
+                                + "\"password\":\"-\",\"role\":\"USER\"}"))
+                .andExpect(status().isOk());
+
+        for (String path : new String[]{"/api/users/page", "/api/licenses/page", "/api/license-history"}) {
+            mockMvc.perform(get(path).header("Authorization", "Bearer " + token))
+                    .andExpect(status().isForbidden());
+        }
+    }
+
+    private String token(String name, ApplicationRole role) {
+        return jwtTokenProvider.createToken(name + "@example.org", role.getGrantedAuthorities());
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.kurs.controller;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.service.impl.LoginThrottle;
+import org.example.kurs.service.impl.PasswordHashingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Ответы /auth при исчерпании лимитов: 429 с Retry-After от LoginThrottle, 503 при заполненной очереди хеширования
+@SpringBootTest(properties = {
+        "auth.throttle.ip.capacity=3",
+        "auth.throttle.ip.per-minute=0.01",
+        "auth.throttle.account.capacity=2",
+        "auth.throttle.account.per-minute=0.01",
+        "auth.throttle.account-total.capacity=3",
+        "auth.throttle.account-total.per-minute=0.01",
+        "auth.hashing.threads=1",
+        "auth.hashing.queue-capacity=1"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuthenticationThrottleTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Test
+    void loginIsThrottledPerAddress() throws Exception {
+        Object trackedAccounts = loginThrottle.getStats().get("trackedAccounts");
+        for (int i = 0; i < 3; i++) {
+            login("nobody@example.org", "10.0.1.1").andExpect(status().isUnauthorized());
+        }
+        login("nobody@example.org", "10.0.1.1")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+        login("nobody@example.org", "10.0.1.2").andExpect(status().isUnauthorized());
+
+        // Несуществующий email расходует только лимит IP
+        assertEquals(trackedAccounts, loginThrottle.getStats().get("trackedAccounts"));
+    }
+
+    @Test
+    void failedPasswordsThrottleAccountOnlyFromSameAddress() throws Exception {
+        fixtures.user("throttled");
+        login("throttled@example.org", "10.0.2.1").andExpect(status().isUnauthorized());
+        login("throttled@example.org", "10.0.2.1").andExpect(status().isUnauthorized());
+        login("throttled@example.org", "10.0.2.1").andExpect(status().isTooManyRequests());
+
+        // Подбор пароля с одного адреса не блокирует вход с другого
+        login("throttled@example.org", "10.0.2.2").andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void failedPasswordsFromManyAddressesThrottleWholeAccount() throws Exception {
+        fixtures.user("distributed");
+        // По одной неудаче с каждого адреса: лимит пары учетная запись + IP не исчерпан ни для одного
+        for (int i = 1; i <= 3; i++) {
+            login("distributed@example.org", "10.0.4." + i).andExpect(status().isUnauthorized());
+        }
+        login("distributed@example.org", "10.0.4.4")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+
+        // Общий лимит относится только к этой учетной записи
+        fixtures.user("neighbour");
+        login("neighbour@example.org", "10.0.4.4").andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void saturatedHashingPoolAnswers503() throws Exception {
+        fixtures.user("saturated");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        // Один поток занят, одно место в очереди занято - следующая задача отклоняется
+        passwordHashingService.submit(() -> {
+            running.countDown();
+            return await(release);
+        });
+        running.await(10, TimeUnit.SECONDS);
+        passwordHashingService.submit(() -> await(release));
+        try {
+            mockMvc.perform(post("/auth/register")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"queued\",\"email\":\"queued@example.org\",\"password\":\"secret\"}"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+            login("saturated@example.org", "10.0.3.1")
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private ResultActions login(String email, String ip) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .with(request -> {
+                            request.setRemoteAddr(ip);
+                            return request;
+                        })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\",\"password\":\"wrong\"}"))
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    private static Boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
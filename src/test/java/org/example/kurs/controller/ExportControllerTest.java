@@ -0,0 +1,93 @@
+package org.example.kurs.controller;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.service.impl.ExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Date;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Выгрузка идет асинхронно с собственным тайм-аутом и освобождает слот в любом исходе
+@SpringBootTest(properties = "export.timeout=123000")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Test
+    void licensesExportStreamsStatusWithExportTimeout() throws Exception {
+        fixtures.license(fixtures.user("export-owner"), "EXPORT-KEY", new Date(System.currentTimeMillis() + 86_400_000L), 1);
+
+        MvcResult started = mockMvc.perform(get("/api/export/licenses").header("Authorization", "Bearer " + token(ApplicationRole.ADMIN)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(123_000L, started.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"licenses.ndjson\""))
+                .andExpect(content().string(containsString("\"code\":\"EXPORT-KEY\"")))
+                .andExpect(content().string(containsString("\"status\":\"ACTIVE\"")));
+        assertEquals(0, exportService.getStats().get("running"));
+    }
+
+    @Test
+    void rejectedExportsDoNotHoldSlots() throws Exception {
+        export("licenses", token(ApplicationRole.USER)).andExpect(status().isForbidden());
+        export("users", token(ApplicationRole.ADMIN)).andExpect(status().isNotFound());
+
+        assertTrue(exportService.tryAcquire());
+        assertTrue(exportService.tryAcquire());
+        try {
+            export("devices", token(ApplicationRole.ADMIN))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "60"));
+        } finally {
+            exportService.release();
+            exportService.release();
+        }
+        assertEquals(0, exportService.getStats().get("running"));
+        export("devices", token(ApplicationRole.ADMIN)).andExpect(status().isOk());
+    }
+
+    private ResultActions export(String dataset, String token) throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/export/" + dataset).header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+
+    private String token(ApplicationRole role) {
+        return jwtTokenProvider.createToken("export-" + role.name().toLowerCase() + "@example.org", role.getGrantedAuthorities());
+    }
+}
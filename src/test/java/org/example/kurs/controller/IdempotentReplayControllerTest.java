@@ -0,0 +1,62 @@
+package org.example.kurs.controller;
+
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.service.impl.IdempotencyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Повтор запроса с Idempotency-Key: сохраненный JSON-ответ отдается с тем же Content-Type, а не как text/plain
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class IdempotentReplayControllerTest {
+
+    private static final String BULK = """
+            {"code":"NO-SUCH-REPLAY-CODE","devices":[{"macAddress":"00:00:00:0C:00:01","deviceName":"replay-1"}]}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Test
+    void replayedBulkActivationIsJson() throws Exception {
+        String token = jwtTokenProvider.createToken("replay-client@example.org", ApplicationRole.USER.getGrantedAuthorities());
+
+        bulkActivation(token)
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyService.REPLAYED_HEADER))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.results[0].status").value("LICENSE_NOT_FOUND"));
+
+        bulkActivation(token)
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("LICENSE_NOT_FOUND"));
+    }
+
+    private ResultActions bulkActivation(String token) throws Exception {
+        return mockMvc.perform(post("/licensing/activation/bulk")
+                .header("Authorization", "Bearer " + token)
+                .header(IdempotencyService.HEADER, "replay-key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(BULK));
+    }
+}
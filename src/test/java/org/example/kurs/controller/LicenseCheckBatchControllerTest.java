@@ -0,0 +1,85 @@
+package org.example.kurs.controller;
+
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.ApplicationRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"licensing.check-batch.max-size=3", "licensing.check-batch.chunk-size=2"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LicenseCheckBatchControllerTest {
+
+    private static final String BATCH = """
+            [{"macAddress":"00:00:00:0B:00:01","deviceName":"batch-1"},
+             {"macAddress":"00:00:00:0B:00:02","deviceName":"batch-2"},
+             {"macAddress":"00:00:00:0B:00:03","deviceName":"batch-3"}]
+            """;
+
+    private static final String OVERSIZED = """
+            [{"macAddress":"00:00:00:0B:00:01","deviceName":"batch-1"},
+             {"macAddress":"00:00:00:0B:00:02","deviceName":"batch-2"},
+             {"macAddress":"00:00:00:0B:00:03","deviceName":"batch-3"},
+             {"macAddress":"00:00:00:0B:00:04","deviceName":"batch-4"}]
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Test
+    void batchIsStreamedInRequestOrderAcrossChunks() throws Exception {
+        MvcResult started = mockMvc.perform(post("/licensing/check/batch")
+                        .header("Authorization", "Bearer " + token())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BATCH))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Асинхронный dispatch проходит через цепочку безопасности со STATELESS-сессией
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].macAddress").value("00:00:00:0B:00:01"))
+                .andExpect(jsonPath("$[1].deviceName").value("batch-2"))
+                .andExpect(jsonPath("$[2].macAddress").value("00:00:00:0B:00:03"))
+                .andExpect(jsonPath("$[2].status").value("DEVICE_NOT_FOUND"));
+    }
+
+    @Test
+    void oversizedBatchIsRejected() throws Exception {
+        mockMvc.perform(post("/licensing/check/batch")
+                        .header("Authorization", "Bearer " + token())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(OVERSIZED))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(header().string("X-Max-Batch-Size", "3"));
+    }
+
+    @Test
+    void batchRequiresAuthentication() throws Exception {
+        mockMvc.perform(post("/licensing/check/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BATCH))
+                .andExpect(status().isForbidden());
+    }
+
+    private String token() {
+        return jwtTokenProvider.createToken("batch-checker@example.org", ApplicationRole.USER.getGrantedAuthorities());
+    }
+}
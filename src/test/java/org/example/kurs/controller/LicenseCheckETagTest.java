@@ -0,0 +1,102 @@
+package org.example.kurs.controller;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.License;
+import org.example.kurs.repository.LicenseRepository;
+import org.example.kurs.service.impl.LicenseCheckCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LicenseCheckETagTest {
+
+    private static final String MAC_ADDRESS = "00:00:00:05:00:01";
+    private static final String DEVICE_NAME = "etag-device";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private LicenseCheckCache licenseCheckCache;
+
+    @Test
+    void unchangedVerdictIsAnsweredWithNotModified() throws Exception {
+        ApplicationUser user = fixtures.user("etag");
+        License license = fixtures.license(user, "ETAG-KEY",
+                new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(30)), 3);
+        activate(MAC_ADDRESS);
+
+        String etag = check(null).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        check(etag).andExpect(status().isNotModified()).andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        // Активация другого устройства расходует место лицензии, но вердикт этого устройства не меняет
+        // (активация сбрасывает кеш проверок лицензии, ответ строится по базе заново)
+        activate("00:00:00:05:00:02");
+        check(etag).andExpect(status().isNotModified());
+
+        // Блокировка меняет вердикт: новый ETag и тело ответа
+        License blocked = licenseRepository.findById(license.getId()).orElseThrow();
+        blocked.setBlocked(true);
+        licenseRepository.save(blocked);
+        licenseCheckCache.evictLicense(license.getId());
+        String blockedEtag = check(etag).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, blockedEtag);
+        check(blockedEtag).andExpect(status().isNotModified());
+    }
+
+    private void activate(String macAddress) throws Exception {
+        mockMvc.perform(post("/licensing/activation")
+                        .header("Authorization", "Bearer " + token())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"code\":\"ETAG-KEY\",\"macAddress\":\"" + macAddress
+                                + "\",\"deviceName\":\"" + DEVICE_NAME + "\"}"))
+                .andExpect(status().isOk());
+    }
+
+    private ResultActions check(String ifNoneMatch) throws Exception {
+        var request = post("/licensing/check")
+                .header("Authorization", "Bearer " + token())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"macAddress\":\"" + MAC_ADDRESS + "\",\"deviceName\":\"" + DEVICE_NAME + "\"}");
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return mockMvc.perform(request);
+    }
+
+    private String token() {
+        return jwtTokenProvider.createToken("etag@example.org", ApplicationRole.USER.getGrantedAuthorities());
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.kurs.controller;
+
+import org.example.kurs.configuration.JwtTokenProvider;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.LicenseHistory;
+import org.example.kurs.repository.LicenseHistoryRepository;
+import org.example.kurs.service.impl.LicenseHistoryArchive;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// История лицензий содержит данные всех пользователей и доступна только администратору
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LicenseHistoryControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private LicenseHistoryRepository licenseHistoryRepository;
+
+    @Autowired
+    private LicenseHistoryArchive licenseHistoryArchive;
+
+    @Value("${licensing.history.archive.directory}")
+    private String directory;
+
+    @Test
+    void historyRequiresAdmin() throws Exception {
+        mockMvc.perform(get("/api/license-history")
+                        .header("Authorization", "Bearer " + token("history-user", ApplicationRole.USER)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/license-history").param("limit", "1")
+                        .header("Authorization", "Bearer " + token("history-admin", ApplicationRole.ADMIN)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isArray());
+    }
+
+    @Test
+    void archiveRequiresAdminAndStreamsNdjson() throws Exception {
+        YearMonth month = YearMonth.of(2002, 5);
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith("license-history-2002-")).toList()) {
+                Files.delete(file);
+            }
+        }
+        licenseHistoryRepository.saveAll(List.of(
+                new LicenseHistory(null, 2001L, 1L, "Создана", Timestamp.valueOf(month.atDay(3).atStartOfDay()), "first", null),
+                new LicenseHistory(null, 2002L, 1L, "Создана", Timestamp.valueOf(month.atDay(4).atStartOfDay()), "second", null)));
+        licenseHistoryArchive.archiveBefore(month.plusMonths(1));
+
+        String user = token("archive-user", ApplicationRole.USER);
+        mockMvc.perform(get("/api/license-history/archive").header("Authorization", "Bearer " + user))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/license-history/archive/2002-05").header("Authorization", "Bearer " + user))
+                .andExpect(status().isForbidden());
+
+        String admin = token("archive-admin", ApplicationRole.ADMIN);
+        mockMvc.perform(get("/api/license-history/archive").header("Authorization", "Bearer " + admin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@ == '2002-05')]").exists());
+        stream(get("/api/license-history/archive/2002-05").param("licenseId", "2002")
+                .header("Authorization", "Bearer " + admin))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(allOf(
+                        containsString("\"description\":\"second\""),
+                        not(containsString("\"first\"")))));
+        stream(get("/api/license-history/archive/2002-13").header("Authorization", "Bearer " + admin))
+                .andExpect(status().isBadRequest());
+        stream(get("/api/license-history/archive/1990-01").header("Authorization", "Bearer " + admin))
+                .andExpect(status().isNotFound());
+    }
+
+    // Тело StreamingResponseBody пишется после асинхронного dispatch
+    private ResultActions stream(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request).andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+
+    private String token(String name, ApplicationRole role) {
+        return jwtTokenProvider.createToken(name + "@example.org", role.getGrantedAuthorities());
+    }
+}
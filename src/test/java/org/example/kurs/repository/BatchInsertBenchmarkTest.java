@@ -0,0 +1,100 @@
+package org.example.kurs.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseHistory;
+import org.example.kurs.model.LicenseType;
+import org.example.kurs.model.Product;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Скорость массовой вставки лицензий и истории; с пакетной вставкой число запросов в разы меньше числа строк
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class BatchInsertBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchInsertBenchmarkTest.class);
+    private static final int ROWS = 5000;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private LicenseHistoryRepository licenseHistoryRepository;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void bulkLicenseAndHistoryInsertsAreBatched() {
+        ApplicationUser owner = fixtures.user("benchmark");
+        Product product = fixtures.product("Benchmark product");
+        LicenseType licenseType = fixtures.licenseType("Benchmark type");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // Прогрев: первая вставка загружает метаданные и блоки идентификаторов
+        insertLicenses(owner, product, licenseType, 100);
+
+        statistics.clear();
+        long startedAt = System.nanoTime();
+        List<License> licenses = insertLicenses(owner, product, licenseType, ROWS);
+        long licensesNanos = System.nanoTime() - startedAt;
+        long licenseStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        startedAt = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<LicenseHistory> history = new ArrayList<>(ROWS);
+            Date now = new Date();
+            for (License license : licenses) {
+                history.add(new LicenseHistory(null, license.getId(), owner.getId(), "Создана", now, "Лицензия создана", null));
+            }
+            licenseHistoryRepository.saveAll(history);
+        });
+        long historyNanos = System.nanoTime() - startedAt;
+        long historyStatements = statistics.getPrepareStatementCount();
+
+        logger.info("Лицензии: {} строк/с, запросов {}; история: {} строк/с, запросов {}",
+                rate(licensesNanos), licenseStatements, rate(historyNanos), historyStatements);
+        assertTrue(licenseStatements < ROWS / 10, "license statements: " + licenseStatements);
+        assertTrue(historyStatements < ROWS / 10, "history statements: " + historyStatements);
+    }
+
+    private List<License> insertLicenses(ApplicationUser owner, Product product, LicenseType licenseType, int count) {
+        return transactionTemplate.execute(status -> {
+            List<License> licenses = new ArrayList<>(count);
+            Date now = new Date();
+            for (int i = 0; i < count; i++) {
+                licenses.add(fixtures.newLicense(owner, product, licenseType,
+                        UUID.randomUUID().toString().replace("-", "").toUpperCase(), now, 1));
+            }
+            return licenseRepository.saveAll(licenses);
+        });
+    }
+
+    private static long rate(long nanos) {
+        return ROWS * 1_000_000_000L / Math.max(1, nanos);
+    }
+}
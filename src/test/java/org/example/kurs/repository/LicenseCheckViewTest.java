@@ -0,0 +1,124 @@
+package org.example.kurs.repository;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.Device;
+import org.example.kurs.model.DeviceLicense;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseCheckStatus;
+import org.example.kurs.model.LicenseCheckView;
+import org.example.kurs.model.LicenseStatus;
+import org.example.kurs.service.impl.DeviceKeyFilter;
+import org.example.kurs.service.impl.LicenseCheckService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Проекция проверки лицензии по каждому исходу: привязка к существующей лицензии, устройство без привязки,
+// привязка к удаленной лицензии (device_license без внешнего ключа на licenses)
+@SpringBootTest
+@ActiveProfiles("test")
+class LicenseCheckViewTest {
+
+    private static final long MISSING_LICENSE_ID = 9_300_001L;
+
+    @Autowired
+    private DeviceLicenseRepository deviceLicenseRepository;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private LicenseCheckService licenseCheckService;
+
+    @Autowired
+    private DeviceKeyFilter deviceKeyFilter;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Test
+    void projectionMatchesEachCheckStatus() {
+        ApplicationUser owner = fixtures.user("check-view");
+        Date endingDate = new Date(System.currentTimeMillis() + 86_400_000L);
+        License license = fixtures.newLicense(owner, fixtures.product("Check view product"),
+                fixtures.licenseType("Check view type"), "CHECK-VIEW-KEY", endingDate, 3);
+        license.setUser(owner);
+        license = licenseRepository.save(license);
+        Device bound = device("00:00:00:09:00:01", owner);
+        Device unbound = device("00:00:00:09:00:02", owner);
+        Device orphaned = device("00:00:00:09:00:03", owner);
+        deviceLicenseRepository.save(new DeviceLicense(null, license.getId(), bound.getId(), new Date()));
+        deviceLicenseRepository.save(new DeviceLicense(null, MISSING_LICENSE_ID, orphaned.getId(), new Date()));
+
+        LicenseCheckView found = single(bound);
+        assertEquals(bound.getId(), found.getDeviceId());
+        assertEquals(license.getId(), found.getBoundLicenseId());
+        assertEquals(license.getId(), found.getLicenseId());
+        assertEquals(owner.getId(), found.getUserId());
+        assertEquals(endingDate.getTime(), found.getEndingDate().getTime());
+        assertEquals(Boolean.FALSE, found.getBlocked());
+        assertEquals(license.getRevision(), found.getRevision());
+        assertEquals(LicenseStatus.ACTIVE, found.getLicenseStatus());
+
+        LicenseCheckView notActivated = single(unbound);
+        assertEquals(unbound.getId(), notActivated.getDeviceId());
+        assertNull(notActivated.getBoundLicenseId());
+        assertNull(notActivated.getLicenseId());
+
+        LicenseCheckView missing = single(orphaned);
+        assertEquals(MISSING_LICENSE_ID, missing.getBoundLicenseId());
+        assertNull(missing.getLicenseId());
+        assertNull(missing.getLicenseStatus());
+
+        assertTrue(deviceLicenseRepository.findCheckView("00:00:00:09:00:04", "check-view-device").isEmpty());
+        assertTrue(deviceLicenseRepository.findCheckView(bound.getMacAddress(), "other-device").isEmpty());
+
+        // Пакетный вариант возвращает те же строки
+        Map<String, Long> boundIds = deviceLicenseRepository.findCheckViews(
+                        Set.of(bound.getMacAddress(), unbound.getMacAddress(), orphaned.getMacAddress())).stream()
+                .filter(view -> view.getBoundLicenseId() != null)
+                .collect(Collectors.toMap(LicenseCheckView::getMacAddress, LicenseCheckView::getBoundLicenseId));
+        assertEquals(Map.of(bound.getMacAddress(), license.getId(), orphaned.getMacAddress(), MISSING_LICENSE_ID), boundIds);
+
+        // Вердикт по проекции
+        assertEquals(LicenseCheckStatus.FOUND, check(bound));
+        assertEquals(LicenseCheckStatus.NOT_ACTIVATED, check(unbound));
+        assertEquals(LicenseCheckStatus.LICENSE_MISSING, check(orphaned));
+    }
+
+    // Как при активации: устройство попадает в фильтр ключей, иначе проверка ответит без запроса
+    private Device device(String macAddress, ApplicationUser owner) {
+        Device device = deviceRepository.save(new Device(null, "check-view-device", macAddress, owner.getId()));
+        deviceKeyFilter.put(macAddress, device.getName());
+        return device;
+    }
+
+    private LicenseCheckView single(Device device) {
+        List<LicenseCheckView> views = deviceLicenseRepository.findCheckView(device.getMacAddress(), device.getName());
+        assertEquals(1, views.size());
+        assertNotNull(views.get(0));
+        assertEquals(device.getMacAddress(), views.get(0).getMacAddress());
+        assertEquals(device.getName(), views.get(0).getDeviceName());
+        return views.get(0);
+    }
+
+    private LicenseCheckStatus check(Device device) {
+        return licenseCheckService.check(device.getMacAddress(), device.getName()).getStatus();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.kurs.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.controller.LicenseController;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseView;
+import org.example.kurs.service.impl.AdminListService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Число SQL-запросов на чтение и изменение лицензии: связи ленивые, ответы - проекции одним запросом
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class LicenseFetchPlanTest {
+
+    @Autowired
+    private LicenseController licenseController;
+
+    @Autowired
+    private AdminListService adminListService;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private DeviceLicenseRepository deviceLicenseRepository;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void licenseEndpointsUseFixedNumberOfStatements() {
+        License license = createLicense();
+        Long id = license.getId();
+
+        LicenseView view = statements(1, () -> licenseController.getLicenseById(id));
+        assertEquals("FETCH-PLAN-KEY", view.getCode());
+        assertEquals("Fetch plan product", view.getProductName());
+        assertEquals(license.getOwner().getId(), view.getUserId());
+
+        statements(1, () -> licenseController.getAllLicenses());
+        statements(1, () -> adminListService.licenses(null, 50, license.getOwner().getId(), null, null, null, null));
+        statements(1, () -> deviceLicenseRepository.findCheckView("00:00:00:04:00:01", "fetch-plan-device"));
+
+        // Продление: лицензия без связей, идентификаторы владельца и пользователя - из внешних ключей
+        statements(1, () -> {
+            License found = licenseRepository.findByCode("FETCH-PLAN-KEY").orElseThrow();
+            return found.getOwner().getId() + found.getUser().getId();
+        });
+
+        // Ревизия, загрузка при merge, update, ответ
+        License update = new License(null, "FETCH-PLAN-KEY", license.getUser(), license.getOwner(), license.getProduct(),
+                license.getLicenseType(), license.getFirstActivationDate(), license.getEndingDate(), true, 5, 30,
+                "updated", null, null);
+        LicenseView updated = statements(4, () -> licenseController.updateLicense(id, update));
+        assertEquals(Boolean.TRUE, updated.getBlocked());
+        assertEquals(license.getRevision() + 1, updated.getRevision());
+    }
+
+    private <T> T statements(long expected, Supplier<T> action) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        T result = action.get();
+        assertEquals(expected, statistics.getPrepareStatementCount());
+        return result;
+    }
+
+    private License createLicense() {
+        ApplicationUser owner = fixtures.user("fetch-plan");
+        License license = fixtures.newLicense(owner, fixtures.product("Fetch plan product"),
+                fixtures.licenseType("Fetch plan type"), "FETCH-PLAN-KEY", new Date(), 5);
+        license.setUser(owner);
+        return licenseRepository.save(license);
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.kurs.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Схема создается миграциями Flyway; EXPLAIN каждого поиска репозиториев должен использовать индекс
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "org.example.kurs.repository.LookupIndexTest$SqlCapture")
+@ActiveProfiles("test")
+class LookupIndexTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DeviceLicenseRepository deviceLicenseRepository;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private ApplicationUserRepository userRepository;
+
+    // SQL, который Hibernate генерирует для запросов проверки лицензий, а не его ручная копия
+    @Test
+    void generatedCheckQueriesUseIndexes() {
+        assertPlan(capture(() -> deviceLicenseRepository.findCheckView("00:00:00:0E:00:01", "explain")),
+                List.of("00:00:00:0E:00:01", "explain"),
+                "IDX_DEVICES_MAC_ADDRESS_NAME", "IDX_DEVICE_LICENSE_DEVICE_ID_LICENSE_ID");
+        assertPlan(capture(() -> deviceLicenseRepository.findCheckViews(List.of("00:00:00:0E:00:01", "00:00:00:0E:00:02"))),
+                List.of("00:00:00:0E:00:01", "00:00:00:0E:00:02"),
+                "IDX_DEVICES_MAC_ADDRESS_NAME", "IDX_DEVICE_LICENSE_DEVICE_ID_LICENSE_ID");
+        Timestamp since = Timestamp.valueOf("2030-01-01 00:00:00");
+        assertPlan(capture(() -> deviceRepository.findKeysActivatedSince(since)), List.of(since),
+                "IDX_DEVICE_LICENSE_ACTIVATION_DATE");
+        assertPlan(capture(() -> licenseRepository.findByCode("EXPLAIN-KEY")), List.of("EXPLAIN-KEY"),
+                "UK_LICENSES_CODE");
+        assertPlan(capture(() -> userRepository.findByEmail("explain@example.org")), List.of("explain@example.org"),
+                "UK_USERS_EMAIL");
+    }
+
+    @Test
+    void finderQueriesUseIndexes() {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("select * from licenses where code = 'A'", "UK_LICENSES_CODE");
+        queries.put("select id, ending_date from licenses where status = 'ACTIVE' and ending_date <= '2030-01-01' order by ending_date, id", "IDX_LICENSES_STATUS_ENDING_DATE");
+        queries.put("select * from devices where mac_address = 'A' and name = 'B'", "IDX_DEVICES_MAC_ADDRESS_NAME");
+        queries.put("select * from devices where mac_address in ('A', 'B')", "IDX_DEVICES_MAC_ADDRESS_NAME");
+        queries.put("select * from device_license where device_id = 1", "IDX_DEVICE_LICENSE_DEVICE_ID_LICENSE_ID");
+        queries.put("select * from device_license where device_id = 1 and license_id = 2", "IDX_DEVICE_LICENSE_DEVICE_ID_LICENSE_ID");
+        queries.put("select * from device_license where license_id = 1", "IDX_DEVICE_LICENSE_LICENSE_ID");
+        queries.put("select * from devices where user_id = 1 and id > 0 order by id", "IDX_DEVICES_USER_ID");
+        queries.put("select * from users where email = 'a@example.org'", "UK_USERS_EMAIL");
+        queries.put("select * from license_history where license_id = 1", "IDX_LICENSE_HISTORY_LICENSE_ID");
+        queries.put("select * from license_history where user_id = 1 order by change_date desc, id desc", "IDX_LICENSE_HISTORY_USER_ID");
+        queries.put("select * from license_history where status = 'A' order by change_date desc, id desc", "IDX_LICENSE_HISTORY_STATUS");
+        queries.put("select * from license_history where change_date >= '2024-01-01' order by change_date desc, id desc", "IDX_LICENSE_HISTORY_CHANGE_DATE");
+
+        queries.forEach((sql, index) -> {
+            String plan = jdbcTemplate.queryForObject("explain " + sql, String.class);
+            assertTrue(plan.toUpperCase().contains(index), () -> sql + " -> " + plan);
+        });
+    }
+
+    private static String capture(Runnable query) {
+        SqlCapture.STATEMENTS.clear();
+        query.run();
+        assertEquals(1, SqlCapture.STATEMENTS.size(), SqlCapture.STATEMENTS::toString);
+        return SqlCapture.STATEMENTS.get(0);
+    }
+
+    private void assertPlan(String sql, List<Object> parameters, String... indexes) {
+        String plan = jdbcTemplate.queryForObject("explain " + sql, String.class, parameters.toArray());
+        for (String index : indexes) {
+            assertTrue(plan.toUpperCase().contains(index), () -> sql + " -> " + plan);
+        }
+    }
+
+    // Подключается через hibernate.session_factory.statement_inspector и запоминает SQL без изменений
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.kurs.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Переход на миграции базы исходной версии: схема создана ddl-auto=update (без Flyway) и содержит данные.
+// Flyway помечает ее как V1 без выполнения V1__baseline.sql и применяет остальные версии;
+// запуск контекста с ddl-auto=validate проверяет, что результат совпадает с сущностями
+@SpringBootTest
+@ActiveProfiles("test")
+class MigrationTest {
+
+    private static final String URL = "jdbc:h2:mem:kurs-baseline;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @DynamicPropertySource
+    static void baselineDatabase(DynamicPropertyRegistry registry) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/baseline-schema.sql")).execute(dataSource);
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("insert into users (id, email, username, role) values (1, 'dup@example.org', 'a', 'USER'), "
+                + "(2, 'dup@example.org', 'b', 'USER'), (3, null, 'c', 'USER'), (4, null, 'd', 'USER')");
+        jdbc.update("insert into products (id, name, is_blocked) values (1, 'product', false)");
+        jdbc.update("insert into license_types (id, name, default_duration) values (1, 'type', 30)");
+        for (int id = 1; id <= 3; id++) {
+            jdbc.update("insert into licenses (id, code, product_id, type_id, first_activation_date, ending_date, "
+                    + "blocked, owner_id) values (?, 'DUP-KEY', 1, 1, current_timestamp, current_timestamp, false, 1)", id);
+        }
+        registry.add("spring.datasource.url", () -> URL);
+    }
+
+    @Test
+    void baselinedDatabaseMigratesToCurrentSchema() {
+        assertEquals("BASELINE", jdbc.queryForObject(
+                "select \"type\" from \"flyway_schema_history\" where \"version\" = '1'", String.class));
+
+        assertEquals(List.of("DUP-KEY", "DUP-KEY#dup-2", "DUP-KEY#dup-3"),
+                jdbc.queryForList("select code from licenses where id <= 3 order by id", String.class));
+        assertEquals(List.of("dup@example.org", "dup@example.org#dup-2"),
+                jdbc.queryForList("select email from users where id <= 4 and email is not null order by id", String.class));
+        assertEquals(2, jdbc.queryForObject("select count(*) from users where id <= 4 and email is null", Integer.class));
+
+        // Колонки и таблицы, появившиеся после исходной версии, созданы миграциями
+        assertEquals(3, jdbc.queryForObject("select count(*) from licenses where id <= 3 and revision is null", Integer.class));
+        assertEquals(0, jdbc.queryForObject("select count(*) from idempotency_keys", Integer.class));
+        jdbc.queryForObject("select count(*) from event_publication", Integer.class);
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.Device;
+import org.example.kurs.model.KeysetPage;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseStatus;
+import org.example.kurs.model.LicenseView;
+import org.example.kurs.repository.ApplicationUserRepository;
+import org.example.kurs.repository.DeviceRepository;
+import org.example.kurs.repository.LicenseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AdminListServiceTest {
+
+    private static final long USER_ID = 990_021L;
+
+    @Autowired
+    private AdminListService adminListService;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private ApplicationUserRepository userRepository;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Test
+    void devicePagesFollowCursorUntilLastPage() {
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            devices.add(new Device(null, "page-device", String.format("00:00:00:02:00:%02X", i), USER_ID));
+        }
+        deviceRepository.saveAll(devices);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            KeysetPage<Device> page = adminListService.devices(cursor, 3, USER_ID);
+            page.getItems().forEach(device -> seen.add(device.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(devices.stream().map(Device::getId).toList(), seen);
+        assertThrows(IllegalArgumentException.class, () -> adminListService.devices("%%%", 3, USER_ID));
+    }
+
+    @Test
+    void licensePageIncludesRelatedNames() {
+        ApplicationUser owner = fixtures.user("admin-list-owner");
+        Date future = new Date(System.currentTimeMillis() + 86_400_000L);
+        License active = fixtures.license(owner, "ADMIN-LIST-ACTIVE", future, 1);
+        License blocked = fixtures.newLicense(owner, active.getProduct(), active.getLicenseType(), "ADMIN-LIST-BLOCKED", future, 1);
+        blocked.setBlocked(true);
+        licenseRepository.save(blocked);
+
+        KeysetPage<LicenseView> page = adminListService.licenses(null, 5, owner.getId(), null, null, null, null);
+        assertEquals(List.of("ADMIN-LIST-ACTIVE", "ADMIN-LIST-BLOCKED"), page.getItems().stream().map(LicenseView::getCode).toList());
+        LicenseView view = page.getItems().get(0);
+        assertEquals(owner.getId(), view.getOwnerId());
+        assertEquals("ADMIN-LIST-ACTIVE product", view.getProductName());
+        assertEquals("ADMIN-LIST-ACTIVE type", view.getLicenseTypeName());
+
+        // Фильтры сочетаются с владельцем
+        assertEquals(List.of("ADMIN-LIST-BLOCKED"), codes(adminListService.licenses(null, 5, owner.getId(), null, null, true, null)));
+        assertEquals(List.of("ADMIN-LIST-BLOCKED"), codes(adminListService.licenses(null, 5, owner.getId(), null, null, null, LicenseStatus.BLOCKED)));
+        assertEquals(List.of("ADMIN-LIST-ACTIVE", "ADMIN-LIST-BLOCKED"),
+                codes(adminListService.licenses(null, 5, null, null, active.getProduct().getId(), null, null)));
+        assertTrue(adminListService.licenses(null, 5, owner.getId(), owner.getId(), null, null, null).getItems().isEmpty());
+
+        KeysetPage<LicenseView> first = adminListService.licenses(null, 1, owner.getId(), null, null, null, null);
+        assertNotNull(first.getNextCursor());
+        assertEquals(List.of("ADMIN-LIST-BLOCKED"), codes(adminListService.licenses(first.getNextCursor(), 1, owner.getId(), null, null, null, null)));
+    }
+
+    @Test
+    void userPageFiltersByRole() {
+        ApplicationUser admin = fixtures.user("admin-list-admin");
+        admin.setRole(ApplicationRole.ADMIN);
+        userRepository.save(admin);
+        ApplicationUser user = fixtures.user("admin-list-user");
+
+        List<Long> admins = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<ApplicationUser> page = adminListService.users(cursor, 2, ApplicationRole.ADMIN);
+            page.getItems().forEach(item -> {
+                assertEquals(ApplicationRole.ADMIN, item.getRole());
+                admins.add(item.getId());
+            });
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertTrue(admins.contains(admin.getId()));
+        assertFalse(admins.contains(user.getId()));
+    }
+
+    private static List<String> codes(KeysetPage<LicenseView> page) {
+        return page.getItems().stream().map(LicenseView::getCode).toList();
+    }
+}
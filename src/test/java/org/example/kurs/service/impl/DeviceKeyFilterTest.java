@@ -0,0 +1,210 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.DeviceKeyView;
+import org.example.kurs.model.LicenseCheckStatus;
+import org.example.kurs.model.LicenseCheckView;
+import org.example.kurs.repository.DeviceLicenseRepository;
+import org.example.kurs.repository.DeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeviceKeyFilterTest {
+
+    private static final int DEVICES = 2_000;
+    private static final int PAGE_SIZE = 500;
+
+    private final DeviceRepository deviceRepository = mock(DeviceRepository.class);
+    private final List<DeviceKeyView> devices = new ArrayList<>();
+
+    @Test
+    void rebuildLoadsEveryDeviceInPages() {
+        addDevices(0, DEVICES);
+        DeviceKeyFilter filter = filter(true);
+
+        filter.rebuild();
+
+        for (int i = 0; i < DEVICES; i++) {
+            assertTrue(filter.mightContain(mac(i), "pc"));
+        }
+        Map<String, Object> stats = filter.getStats();
+        assertEquals(true, stats.get("loaded"));
+        assertEquals((long) DEVICES, stats.get("insertions"));
+        assertEquals(0L, stats.get("rejected"));
+    }
+
+    @Test
+    void notLoadedFilterLetsEverythingThrough() {
+        DeviceKeyFilter filter = filter(true);
+
+        assertTrue(filter.mightContain(mac(1), "pc"));
+        assertEquals(false, filter.getStats().get("loaded"));
+    }
+
+    @Test
+    void falsePositivesStayNearTargetRate() {
+        addDevices(0, DEVICES);
+        DeviceKeyFilter filter = filter(true);
+        filter.rebuild();
+
+        int passed = 0;
+        int probes = 20_000;
+        for (int i = DEVICES; i < DEVICES + probes; i++) {
+            if (filter.mightContain(mac(i), "pc")) {
+                passed++;
+                filter.recordFalsePositive();
+            }
+        }
+
+        Map<String, Object> stats = filter.getStats();
+        assertEquals((long) passed, stats.get("passed"));
+        assertEquals((long) passed, stats.get("falsePositives"));
+        assertEquals((long) (probes - passed), stats.get("rejected"));
+        // Емкость фильтра много больше числа устройств: доля ложных срабатываний ниже заданной 0.01
+        assertTrue(passed < probes * 0.02, "ложных срабатываний: " + passed);
+    }
+
+    @Test
+    void rebuildPicksUpDevicesAddedElsewhere() {
+        addDevices(0, 10);
+        DeviceKeyFilter filter = filter(true);
+        filter.rebuild();
+        assertFalse(filter.mightContain(mac(10), "pc"));
+
+        // Устройство добавлено на другом узле
+        addDevices(10, 11);
+        filter.rebuild();
+
+        assertTrue(filter.mightContain(mac(10), "pc"));
+    }
+
+    @Test
+    void filterMissIsConfirmedInDatabase() {
+        addDevices(0, 10);
+        DeviceKeyFilter filter = filter(true);
+        filter.rebuild();
+
+        DeviceLicenseRepository deviceLicenseRepository = mock(DeviceLicenseRepository.class);
+        LicenseCheckView view = mock(LicenseCheckView.class);
+        when(view.getMacAddress()).thenReturn(mac(10));
+        when(view.getDeviceName()).thenReturn("pc");
+        when(view.getDeviceId()).thenReturn(10L);
+        when(view.getBoundLicenseId()).thenReturn(null);
+        when(deviceLicenseRepository.findCheckView(mac(10), "pc")).thenReturn(List.of(view));
+        LicenseCheckService service = new LicenseCheckService(deviceLicenseRepository,
+                new LicenseCheckCache(100, 60_000), filter);
+
+        // Устройство есть в базе, но фильтр этого узла о нем не знает
+        assertEquals(LicenseCheckStatus.NOT_ACTIVATED, service.check(mac(10), "pc").getStatus());
+        assertEquals(1L, filter.getStats().get("staleMisses"));
+        assertTrue(filter.mightContain(mac(10), "pc"));
+
+        assertEquals(LicenseCheckStatus.DEVICE_NOT_FOUND, service.check(mac(11), "pc").getStatus());
+        assertEquals(1L, filter.getStats().get("staleMisses"));
+    }
+
+    @Test
+    void unconfirmedMissSkipsDatabase() {
+        addDevices(0, 10);
+        DeviceKeyFilter filter = filter(false);
+        filter.rebuild();
+
+        DeviceLicenseRepository deviceLicenseRepository = mock(DeviceLicenseRepository.class);
+        LicenseCheckService service = new LicenseCheckService(deviceLicenseRepository,
+                new LicenseCheckCache(100, 60_000), filter);
+
+        assertEquals(LicenseCheckStatus.DEVICE_NOT_FOUND, service.check(mac(10), "pc").getStatus());
+        verify(deviceLicenseRepository, never()).findCheckView(any(), any());
+    }
+
+    // Без подтверждения промахов устройство, активированное на другом узле, появляется после догрузки
+    @Test
+    void refreshPicksUpDevicesActivatedElsewhere() {
+        addDevices(0, 10);
+        DeviceKeyFilter filter = filter(false);
+        filter.rebuild();
+        long rebuiltAt = System.currentTimeMillis();
+        assertFalse(filter.mightContain(mac(10), "pc"));
+
+        addDevices(10, 11);
+        when(deviceRepository.findKeysActivatedSince(any(Date.class))).thenReturn(List.of(devices.get(10)));
+        filter.refreshRecent();
+
+        assertTrue(filter.mightContain(mac(10), "pc"));
+        assertFalse(filter.mightContain(mac(11), "pc"));
+        ArgumentCaptor<Date> since = ArgumentCaptor.forClass(Date.class);
+        verify(deviceRepository).findKeysActivatedSince(since.capture());
+        // Окно догрузки начинается с начала перестройки минус refresh-overlap
+        assertTrue(since.getValue().getTime() <= rebuiltAt - 60_000);
+        assertEquals(1L, filter.getStats().get("refreshedKeys"));
+
+        filter.refreshRecent();
+        verify(deviceRepository, times(2)).findKeysActivatedSince(since.capture());
+        assertTrue(since.getValue().getTime() >= rebuiltAt - 60_000);
+    }
+
+    private DeviceKeyFilter filter(boolean confirmMisses) {
+        when(deviceRepository.count()).thenAnswer(invocation -> (long) devices.size());
+        when(deviceRepository.findKeysAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return devices.stream()
+                    .filter(device -> device.getId() > afterId)
+                    .limit(pageable.getPageSize())
+                    .toList();
+        });
+
+        DeviceKeyFilter filter = new DeviceKeyFilter(deviceRepository);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "expectedInsertions", 10_000L);
+        ReflectionTestUtils.setField(filter, "targetFpp", 0.01);
+        ReflectionTestUtils.setField(filter, "loadPageSize", PAGE_SIZE);
+        ReflectionTestUtils.setField(filter, "confirmMisses", confirmMisses);
+        ReflectionTestUtils.setField(filter, "refreshOverlap", 60_000L);
+        return filter;
+    }
+
+    private void addDevices(int from, int to) {
+        for (int i = from; i < to; i++) {
+            long id = i + 1;
+            String macAddress = mac(i);
+            devices.add(new DeviceKeyView() {
+                @Override
+                public Long getId() {
+                    return id;
+                }
+
+                @Override
+                public String getMacAddress() {
+                    return macAddress;
+                }
+
+                @Override
+                public String getName() {
+                    return "pc";
+                }
+            });
+        }
+    }
+
+    private static String mac(int i) {
+        return String.format("00:00:00:06:%02X:%02X", i / 256 % 256, i % 256);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.kurs.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.kurs.model.Device;
+import org.example.kurs.repository.DeviceRepository;
+import org.example.kurs.repository.LicenseHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportServiceTest {
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private LicenseHistoryRepository licenseHistoryRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void exportsEveryRowAsNdjsonAndCsv() throws Exception {
+        deviceRepository.save(new Device(null, "export, \"quoted\"", "00:00:00:03:00:01", null));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exportService.export("devices", ExportService.Format.CSV, csv);
+        List<String> lines = csv.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals("id,name,mac_address,user_id", lines.get(0));
+        assertEquals(deviceRepository.count() + 1, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.contains(",\"export, \"\"quoted\"\"\",00:00:00:03:00:01,")));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exportService.export("license_history", ExportService.Format.NDJSON, ndjson);
+        List<String> rows = ndjson.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(licenseHistoryRepository.count(), rows.size());
+        for (String row : rows) {
+            JsonNode node = objectMapper.readTree(row);
+            assertTrue(node.get("id").isNumber());
+            assertFalse(node.get("change_date").asText().isEmpty());
+        }
+    }
+
+    @Test
+    void limitsConcurrentExports() {
+        assertTrue(exportService.tryAcquire());
+        assertTrue(exportService.tryAcquire());
+        assertFalse(exportService.tryAcquire());
+        exportService.release();
+        exportService.release();
+    }
+}
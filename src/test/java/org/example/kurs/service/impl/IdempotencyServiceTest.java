@@ -0,0 +1,141 @@
+package org.example.kurs.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.kurs.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Захват ключа, сохранение и повтор ответа через таблицу idempotency_keys (H2)
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+
+    private static final String ENDPOINT = "/licensing/test";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void completedResponseIsReplayedWithoutExecuting() {
+        AtomicInteger calls = new AtomicInteger();
+        ResponseEntity<?> first = idempotencyService.execute(ENDPOINT, "replay@example.org", "key-1", Map.of("code", "A"),
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", calls.incrementAndGet())));
+        assertEquals(201, first.getStatusCode().value());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+        ResponseEntity<?> replayed = idempotencyService.execute(ENDPOINT, "replay@example.org", "key-1", Map.of("code", "A"),
+                () -> ResponseEntity.ok(calls.incrementAndGet()));
+        assertEquals(1, calls.get());
+        assertEquals(201, replayed.getStatusCode().value());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("{\"id\":1}", replayed.getBody());
+        // Тело хранится строкой, но повтор остается JSON, а не text/plain
+        assertEquals(MediaType.APPLICATION_JSON, replayed.getHeaders().getContentType());
+
+        // Другой узел (пустой кеш в памяти) берет ответ из таблицы
+        IdempotencyService otherNode = new IdempotencyService(repository, objectMapper, 100, 86_400_000, 60_000);
+        ResponseEntity<?> fromDatabase = otherNode.execute(ENDPOINT, "replay@example.org", "key-1", Map.of("code", "A"),
+                () -> ResponseEntity.ok(calls.incrementAndGet()));
+        assertEquals(1, calls.get());
+        assertEquals(201, fromDatabase.getStatusCode().value());
+        assertEquals("{\"id\":1}", fromDatabase.getBody());
+        assertEquals(MediaType.APPLICATION_JSON, fromDatabase.getHeaders().getContentType());
+        assertEquals(1L, otherNode.getStats().get("databaseReplays"));
+
+        // Ключ действует в пределах пользователя
+        idempotencyService.execute(ENDPOINT, "other@example.org", "key-1", Map.of("code", "A"),
+                () -> ResponseEntity.ok(calls.incrementAndGet()));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void explicitContentTypeIsReplayedAndPlainStringKeepsNone() {
+        MediaType csv = MediaType.parseMediaType("text/csv;charset=UTF-8");
+        idempotencyService.execute(ENDPOINT, "type@example.org", "key-5", Map.of("code", "F"),
+                () -> ResponseEntity.ok().contentType(csv).body("a,b"));
+        idempotencyService.execute(ENDPOINT, "type@example.org", "key-6", Map.of("code", "F"),
+                () -> ResponseEntity.ok("done"));
+
+        IdempotencyService otherNode = new IdempotencyService(repository, objectMapper, 100, 86_400_000, 60_000);
+        ResponseEntity<?> explicit = otherNode.execute(ENDPOINT, "type@example.org", "key-5", Map.of("code", "F"),
+                () -> ResponseEntity.ok("again"));
+        assertEquals(csv, explicit.getHeaders().getContentType());
+        assertEquals("a,b", explicit.getBody());
+
+        // Тип строкового тела снова выберет конвертер, как для первого ответа
+        ResponseEntity<?> plain = otherNode.execute(ENDPOINT, "type@example.org", "key-6", Map.of("code", "F"),
+                () -> ResponseEntity.ok("again"));
+        assertNull(plain.getHeaders().getContentType());
+        assertEquals("done", plain.getBody());
+    }
+
+    @Test
+    void repeatWhileInFlightGets409() {
+        AtomicReference<ResponseEntity<?>> concurrent = new AtomicReference<>();
+        ResponseEntity<?> first = idempotencyService.execute(ENDPOINT, "flight@example.org", "key-2", Map.of("code", "B"),
+                () -> {
+                    concurrent.set(idempotencyService.execute(ENDPOINT, "flight@example.org", "key-2", Map.of("code", "B"),
+                            () -> ResponseEntity.ok("second")));
+                    return ResponseEntity.ok("first");
+                });
+        assertEquals("first", first.getBody());
+        assertEquals(409, concurrent.get().getStatusCode().value());
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyGets422() {
+        idempotencyService.execute(ENDPOINT, "body@example.org", "key-3", Map.of("code", "C"),
+                () -> ResponseEntity.ok("done"));
+        AtomicInteger calls = new AtomicInteger();
+        ResponseEntity<?> rejected = idempotencyService.execute(ENDPOINT, "body@example.org", "key-3", Map.of("code", "D"),
+                () -> ResponseEntity.ok(calls.incrementAndGet()));
+        assertEquals(422, rejected.getStatusCode().value());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void keyIsReleasedAfterServerErrorOrException() {
+        AtomicInteger calls = new AtomicInteger();
+        ResponseEntity<?> failed = idempotencyService.execute(ENDPOINT, "retry@example.org", "key-4", Map.of("code", "E"),
+                () -> {
+                    calls.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("busy");
+                });
+        assertEquals(503, failed.getStatusCode().value());
+
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(ENDPOINT, "retry@example.org", "key-4",
+                Map.of("code", "E"), () -> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException("boom");
+                }));
+
+        ResponseEntity<?> retried = idempotencyService.execute(ENDPOINT, "retry@example.org", "key-4", Map.of("code", "E"),
+                () -> {
+                    calls.incrementAndGet();
+                    return ResponseEntity.ok("done");
+                });
+        assertEquals(3, calls.get());
+        assertEquals(200, retried.getStatusCode().value());
+        assertFalse(retried.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER));
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdentifierAllocatorTest {
+
+    @Autowired
+    private IdentifierAllocator identifierAllocator;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Test
+    void concurrentCallersGetDistinctIds() throws Exception {
+        Set<Long> devices = ConcurrentHashMap.newKeySet();
+        Set<Long> tickets = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        devices.add(identifierAllocator.next("devices", 50));
+                        tickets.add(identifierAllocator.next("tickets", 7));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4000, devices.size());
+        assertEquals(4000, tickets.size());
+    }
+
+    // @PooledId берет распределитель этого контекста: следующий идентификатор продолжает тот же блок
+    @Test
+    void entitiesUseAllocatorOfTheirContext() {
+        Product product = fixtures.product("Allocator product");
+        assertEquals(product.getId() + 1, identifierAllocator.next("products", 50));
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseActivationResult;
+import org.example.kurs.model.LicenseActivationStatus;
+import org.example.kurs.model.LicenseCheckRequest;
+import org.example.kurs.repository.DeviceLicenseRepository;
+import org.example.kurs.repository.DeviceRepository;
+import org.example.kurs.repository.LicenseHistoryRepository;
+import org.example.kurs.repository.LicenseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class LicenseActivationServiceTest {
+
+    private static final int SEATS = 10;
+    private static final int ACTIVATORS = 64;
+
+    @Autowired
+    private LicenseActivationService licenseActivationService;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private DeviceLicenseRepository deviceLicenseRepository;
+
+    @Autowired
+    private LicenseHistoryRepository licenseHistoryRepository;
+
+    @Test
+    void parallelActivationsNeverExceedSeats() throws Exception {
+        ApplicationUser user = fixtures.user("activator");
+        License license = createLicense(user, "STRESS-KEY");
+        long devicesBefore = deviceRepository.count();
+        long historyBefore = licenseHistoryRepository.count();
+
+        ExecutorService executor = Executors.newFixedThreadPool(ACTIVATORS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<LicenseActivationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < ACTIVATORS; i++) {
+            String macAddress = String.format("00:00:00:00:%02X:%02X", i / 256, i % 256);
+            futures.add(executor.submit(() -> {
+                start.await();
+                return licenseActivationService.activate("STRESS-KEY", user.getEmail(), macAddress, "stress-device");
+            }));
+        }
+        start.countDown();
+
+        Map<LicenseActivationStatus, Integer> statuses = new EnumMap<>(LicenseActivationStatus.class);
+        for (Future<LicenseActivationResult> future : futures) {
+            statuses.merge(future.get(60, TimeUnit.SECONDS).getStatus(), 1, Integer::sum);
+        }
+        executor.shutdown();
+
+        assertEquals(SEATS, statuses.getOrDefault(LicenseActivationStatus.ACTIVATED, 0));
+        assertEquals(ACTIVATORS - SEATS, statuses.getOrDefault(LicenseActivationStatus.NO_SEATS, 0));
+
+        License reloaded = licenseRepository.findById(license.getId()).orElseThrow();
+        assertEquals(0, reloaded.getDeviceCount());
+        assertEquals(user.getId(), reloaded.getUser().getId());
+        assertEquals(SEATS, deviceLicenseRepository.findAll().stream()
+                .filter(binding -> binding.getLicenseId().equals(license.getId()))
+                .count());
+        // Неудачные активации откатываются вместе с устройством и событием истории
+        assertEquals(devicesBefore + SEATS, deviceRepository.count());
+        // История пишется асинхронно после коммита
+        assertEquals(historyBefore + SEATS, awaitHistoryCount(historyBefore + SEATS));
+    }
+
+    @Test
+    void bulkActivationGrantsAvailableSeatsAndReportsEachDevice() {
+        ApplicationUser user = fixtures.user("fleet");
+        License license = createLicense(user, "FLEET-KEY");
+        long historyBefore = licenseHistoryRepository.count();
+
+        List<LicenseCheckRequest> devices = new ArrayList<>();
+        for (int i = 0; i < SEATS + 4; i++) {
+            devices.add(new LicenseCheckRequest(String.format("00:00:00:01:00:%02X", i), "fleet-device"));
+        }
+        devices.add(1, new LicenseCheckRequest("00:00:00:01:00:00", "fleet-device"));
+
+        List<LicenseActivationResult> results = licenseActivationService.activateBulk("FLEET-KEY", user.getEmail(), devices);
+
+        assertEquals(devices.size(), results.size());
+        assertEquals(LicenseActivationStatus.DEVICE_EXISTS, results.get(1).getStatus());
+        Map<LicenseActivationStatus, Integer> statuses = new EnumMap<>(LicenseActivationStatus.class);
+        for (LicenseActivationResult result : results) {
+            statuses.merge(result.getStatus(), 1, Integer::sum);
+        }
+        assertEquals(SEATS, statuses.getOrDefault(LicenseActivationStatus.ACTIVATED, 0));
+        assertEquals(4, statuses.getOrDefault(LicenseActivationStatus.NO_SEATS, 0));
+
+        License reloaded = licenseRepository.findById(license.getId()).orElseThrow();
+        assertEquals(0, reloaded.getDeviceCount());
+        for (LicenseActivationResult result : results) {
+            if (result.getStatus() == LicenseActivationStatus.ACTIVATED) {
+                assertEquals(license.getId(), deviceLicenseRepository.findByDeviceId(result.getDeviceId())
+                        .orElseThrow().getLicenseId());
+            }
+        }
+        assertEquals(historyBefore + SEATS, licenseHistoryRepository.count());
+
+        // Повторная активация тех же устройств не расходует места
+        List<LicenseActivationResult> repeated = licenseActivationService.activateBulk("FLEET-KEY", user.getEmail(),
+                devices.subList(0, 1));
+        assertEquals(LicenseActivationStatus.DEVICE_EXISTS, repeated.get(0).getStatus());
+    }
+
+    private License createLicense(ApplicationUser owner, String code) {
+        return fixtures.license(owner, code, new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(30)), SEATS);
+    }
+
+    private long awaitHistoryCount(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        long count = licenseHistoryRepository.count();
+        while (count < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            count = licenseHistoryRepository.count();
+        }
+        // Лишние записи (повторная доставка) тоже должны проявиться
+        Thread.sleep(100);
+        return licenseHistoryRepository.count();
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.LicenseCheckRequest;
+import org.example.kurs.model.LicenseCheckResult;
+import org.example.kurs.model.LicenseCheckStatus;
+import org.example.kurs.model.LicenseCheckView;
+import org.example.kurs.repository.DeviceLicenseRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LicenseCheckCacheTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long TTL = 60_000;
+
+    private final MutableClock clock = new MutableClock(NOW);
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        LicenseCheckCache cache = new LicenseCheckCache(2, TTL, clock);
+        put(cache, found("A", 1L, 10L, null));
+        put(cache, found("B", 2L, 20L, null));
+        // Обращение к A делает B самой старой записью
+        assertNotNull(cache.get("A", "pc"));
+
+        put(cache, found("C", 3L, 30L, null));
+
+        assertNotNull(cache.get("A", "pc"));
+        assertNull(cache.get("B", "pc"));
+        assertNotNull(cache.get("C", "pc"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+        assertEquals(2, cache.getStats().get("size"));
+        // Вытесненная запись убрана и из обратных индексов
+        cache.evictLicense(20L);
+        cache.evictDevice(2L);
+        assertEquals(0L, cache.getStats().get("invalidations"));
+    }
+
+    @Test
+    void entryExpiresAfterTtl() {
+        LicenseCheckCache cache = new LicenseCheckCache(10, TTL, clock);
+        put(cache, found("A", 1L, 10L, new Date(NOW + 10 * TTL)));
+
+        clock.advance(TTL - 1);
+        assertNotNull(cache.get("A", "pc"));
+        clock.advance(1);
+        assertNull(cache.get("A", "pc"));
+        assertEquals(1L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    void ttlIsCappedAtEndingDate() {
+        LicenseCheckCache cache = new LicenseCheckCache(10, TTL, clock);
+        put(cache, found("A", 1L, 10L, new Date(NOW + 1_000)));
+
+        clock.advance(999);
+        assertNotNull(cache.get("A", "pc"));
+        clock.advance(1);
+        assertNull(cache.get("A", "pc"));
+
+        // Истекшая лицензия не кешируется вовсе
+        put(cache, found("B", 2L, 20L, new Date(clock.millis())));
+        assertNull(cache.get("B", "pc"));
+        assertEquals(0, cache.getStats().get("size"));
+    }
+
+    @Test
+    void evictionHooksRemoveOnlyMatchingEntries() {
+        LicenseCheckCache cache = new LicenseCheckCache(10, TTL, clock);
+        put(cache, found("A", 1L, 10L, null));
+        put(cache, found("B", 2L, 10L, null));
+        put(cache, found("C", 3L, 30L, null));
+        put(cache, found("D", 4L, 40L, null));
+
+        cache.evictLicense(10L);
+        assertNull(cache.get("A", "pc"));
+        assertNull(cache.get("B", "pc"));
+        assertNotNull(cache.get("C", "pc"));
+
+        cache.evictDevice(3L);
+        assertNull(cache.get("C", "pc"));
+
+        cache.evict("D", "other");
+        assertNotNull(cache.get("D", "pc"));
+        cache.evict("D", "pc");
+        assertNull(cache.get("D", "pc"));
+        assertEquals(4L, cache.getStats().get("invalidations"));
+
+        put(cache, found("E", 5L, 50L, null));
+        cache.clear();
+        assertNull(cache.get("E", "pc"));
+        assertEquals(5L, cache.getStats().get("invalidations"));
+    }
+
+    @Test
+    void replacedEntryDropsStaleIndexes() {
+        LicenseCheckCache cache = new LicenseCheckCache(10, TTL, clock);
+        put(cache, found("A", 1L, 10L, null));
+        // Устройство перепривязано к другой лицензии
+        put(cache, found("A", 1L, 20L, null));
+
+        cache.evictLicense(10L);
+        assertNotNull(cache.get("A", "pc"));
+        cache.evictLicense(20L);
+        assertNull(cache.get("A", "pc"));
+    }
+
+    @Test
+    void onlyFoundVerdictsAreCached() {
+        LicenseCheckCache cache = new LicenseCheckCache(10, TTL, clock);
+        DeviceLicenseRepository repository = mock(DeviceLicenseRepository.class);
+        DeviceKeyFilter filter = mock(DeviceKeyFilter.class);
+        when(filter.mightContain("A", "pc")).thenReturn(true);
+        when(filter.mightContain("B", "pc")).thenReturn(true);
+        when(filter.mightContain("C", "pc")).thenReturn(true);
+
+        LicenseCheckView bound = view("A", 1L, 10L, 10L);
+        LicenseCheckView notActivated = view("B", 2L, null, null);
+        when(repository.findCheckView("A", "pc")).thenReturn(List.of(bound));
+        when(repository.findCheckView("B", "pc")).thenReturn(List.of(notActivated));
+        when(repository.findCheckView("C", "pc")).thenReturn(List.of());
+
+        LicenseCheckService service = new LicenseCheckService(repository, cache, filter);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(LicenseCheckStatus.FOUND, service.check("A", "pc").getStatus());
+            assertEquals(LicenseCheckStatus.NOT_ACTIVATED, service.check("B", "pc").getStatus());
+            assertEquals(LicenseCheckStatus.DEVICE_NOT_FOUND, service.check("C", "pc").getStatus());
+        }
+
+        verify(repository, times(1)).findCheckView("A", "pc");
+        verify(repository, times(2)).findCheckView("B", "pc");
+        verify(repository, times(2)).findCheckView("C", "pc");
+        assertEquals(1, cache.getStats().get("size"));
+        assertSame(cache.get("A", "pc"), service.check("A", "pc"));
+    }
+
+    @Test
+    void invalidationDuringLoadDiscardsItsVerdict() {
+        LicenseCheckCache cache = new LicenseCheckCache(10, TTL, clock);
+        long first = cache.startLoad();
+        long second = cache.startLoad();
+        // Блокировка лицензии 10 и изменение устройства 3 зафиксированы, пока шли чтения
+        cache.evictLicense(10L);
+        cache.evictDevice(3L);
+        cache.put(found("A", 1L, 10L, null), first);
+        cache.put(found("B", 2L, 20L, null), first);
+        cache.put(found("C", 3L, 30L, null), second);
+        cache.finishLoad(first);
+        cache.finishLoad(second);
+
+        assertNull(cache.get("A", "pc"));
+        assertNotNull(cache.get("B", "pc"));
+        assertNull(cache.get("C", "pc"));
+        assertEquals(2L, cache.getStats().get("staleLoads"));
+
+        // Чтение, начатое после инвалидации, сохраняется
+        put(cache, found("A", 1L, 10L, null));
+        assertNotNull(cache.get("A", "pc"));
+
+        long load = cache.startLoad();
+        cache.evict("D", "pc");
+        cache.clear();
+        cache.put(found("E", 5L, 50L, null), load);
+        cache.finishLoad(load);
+        assertNull(cache.get("E", "pc"));
+    }
+
+    // Проверка читает строку до блокировки лицензии, а кладет вердикт после evictLicense
+    @Test
+    void checkInterleavedWithEvictDoesNotCacheStaleVerdict() {
+        LicenseCheckCache cache = new LicenseCheckCache(10, TTL, clock);
+        DeviceLicenseRepository repository = mock(DeviceLicenseRepository.class);
+        DeviceKeyFilter filter = mock(DeviceKeyFilter.class);
+        when(filter.mightContain(anyString(), anyString())).thenReturn(true);
+        LicenseCheckView bound = view("A", 1L, 10L, 10L);
+        LicenseCheckView other = view("B", 2L, 20L, 20L);
+        when(repository.findCheckView("A", "pc")).thenAnswer(invocation -> {
+            cache.evictLicense(10L);
+            return List.of(bound);
+        });
+        when(repository.findCheckViews(anySet())).thenAnswer(invocation -> {
+            cache.evictLicense(10L);
+            return List.of(bound, other);
+        });
+
+        LicenseCheckService service = new LicenseCheckService(repository, cache, filter);
+        assertEquals(LicenseCheckStatus.FOUND, service.check("A", "pc").getStatus());
+        assertNull(cache.get("A", "pc"));
+
+        List<LicenseCheckResult> results = service.checkAll(List.of(
+                new LicenseCheckRequest("A", "pc"), new LicenseCheckRequest("B", "pc")));
+        assertEquals(2, results.size());
+        assertNull(cache.get("A", "pc"));
+        assertNotNull(cache.get("B", "pc"));
+    }
+
+    // Чтение без параллельных инвалидаций
+    private static void put(LicenseCheckCache cache, LicenseCheckResult result) {
+        long load = cache.startLoad();
+        cache.put(result, load);
+        cache.finishLoad(load);
+    }
+
+    private static LicenseCheckResult found(String macAddress, Long deviceId, Long licenseId, Date endingDate) {
+        LicenseCheckResult result = LicenseCheckResult.of(macAddress, "pc", LicenseCheckStatus.FOUND);
+        result.setDeviceId(deviceId);
+        result.setLicenseId(licenseId);
+        result.setEndingDate(endingDate);
+        return result;
+    }
+
+    private static LicenseCheckView view(String macAddress, Long deviceId, Long boundLicenseId, Long licenseId) {
+        LicenseCheckView view = mock(LicenseCheckView.class);
+        when(view.getMacAddress()).thenReturn(macAddress);
+        when(view.getDeviceName()).thenReturn("pc");
+        when(view.getDeviceId()).thenReturn(deviceId);
+        when(view.getBoundLicenseId()).thenReturn(boundLicenseId);
+        when(view.getLicenseId()).thenReturn(licenseId);
+        when(view.getEndingDate()).thenReturn(new Date(NOW + 10 * TTL));
+        when(view.getBlocked()).thenReturn(false);
+        when(view.getRevision()).thenReturn(0L);
+        return view;
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.model.License;
+import org.example.kurs.model.LicenseStatus;
+import org.example.kurs.model.LicenseView;
+import org.example.kurs.repository.LicenseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class LicenseExpirySchedulerTest {
+
+    @Autowired
+    private LicenseExpiryScheduler licenseExpiryScheduler;
+
+    @Autowired
+    private AdminListService adminListService;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void dueLicensesFlipToExpiredWithHistoryAndRenewedOnesStayActive() throws Exception {
+        ApplicationUser owner = fixtures.user("expiry");
+        long now = System.currentTimeMillis();
+        License expiring = createLicense(owner, "EXPIRY-KEY", new Date(now + 60_000));
+        License renewed = createLicense(owner, "RENEWED-KEY", new Date(now + 60_000));
+        License blocked = createLicense(owner, "BLOCKED-KEY", new Date(now + 60_000));
+        blocked.setBlocked(true);
+        licenseRepository.save(blocked);
+        assertEquals(LicenseStatus.ACTIVE, expiring.getStatus());
+        assertEquals(LicenseStatus.BLOCKED, licenseRepository.findById(blocked.getId()).orElseThrow().getStatus());
+
+        licenseExpiryScheduler.schedule(expiring.getId(), expiring.getEndingDate());
+        licenseExpiryScheduler.schedule(renewed.getId(), renewed.getEndingDate());
+        // Продление после планирования: запись в heap устарела, условный UPDATE лицензию не трогает
+        renewed.setEndingDate(new Date(now + 86_400_000));
+        licenseRepository.save(renewed);
+
+        assertTrue(licenseExpiryScheduler.expireDue(now + 61_000) >= 1);
+
+        License reloaded = licenseRepository.findById(expiring.getId()).orElseThrow();
+        assertEquals(LicenseStatus.EXPIRED, reloaded.getStatus());
+        assertEquals(expiring.getRevision() + 1, reloaded.getRevision());
+        assertEquals(LicenseStatus.ACTIVE, licenseRepository.findById(renewed.getId()).orElseThrow().getStatus());
+        assertEquals(LicenseStatus.BLOCKED, licenseRepository.findById(blocked.getId()).orElseThrow().getStatus());
+
+        // История пишется асинхронно после коммита
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (expiredHistory(expiring.getId()) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, expiredHistory(expiring.getId()));
+        assertEquals(0, expiredHistory(renewed.getId()));
+
+        assertTrue(adminListService.licenses(null, 500, owner.getId(), null, null, null, LicenseStatus.EXPIRED).getItems()
+                .stream().map(LicenseView::getId).toList().contains(expiring.getId()));
+        assertEquals(1, adminListService.licenses(null, 500, owner.getId(), null, null, null, LicenseStatus.BLOCKED)
+                .getItems().size());
+    }
+
+    // Обычное изменение просроченной лицензии статус не меняет: истечение и событие истории - за планировщиком
+    @Test
+    void updateOfOverdueLicenseLeavesExpiryToScheduler() throws Exception {
+        ApplicationUser owner = fixtures.user("overdue");
+        long now = System.currentTimeMillis();
+        License license = createLicense(owner, "OVERDUE-KEY", new Date(now + 60_000));
+
+        license.setEndingDate(new Date(now - 1_000));
+        license.setDescription("overdue");
+        licenseRepository.save(license);
+        License updated = licenseRepository.findById(license.getId()).orElseThrow();
+        assertEquals(LicenseStatus.ACTIVE, updated.getStatus());
+        assertEquals(license.getRevision(), updated.getRevision());
+
+        licenseExpiryScheduler.schedule(license.getId(), license.getEndingDate());
+        assertTrue(licenseExpiryScheduler.expireDue(now) >= 1);
+        License expired = licenseRepository.findById(license.getId()).orElseThrow();
+        assertEquals(LicenseStatus.EXPIRED, expired.getStatus());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (expiredHistory(license.getId()) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, expiredHistory(license.getId()));
+
+        // Продление истекшей лицензии возвращает ее в ACTIVE
+        expired.setEndingDate(new Date(now + 86_400_000));
+        licenseRepository.save(expired);
+        License renewed = licenseRepository.findById(license.getId()).orElseThrow();
+        assertEquals(LicenseStatus.ACTIVE, renewed.getStatus());
+        assertEquals(expired.getRevision() + 1, renewed.getRevision());
+    }
+
+    private long expiredHistory(Long licenseId) {
+        return jdbcTemplate.queryForObject("select count(*) from license_history where license_id = ? and status = 'Истекла'",
+                Long.class, licenseId);
+    }
+
+    private License createLicense(ApplicationUser owner, String code, Date endingDate) {
+        return fixtures.license(owner, code, endingDate, 1);
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.LicenseHistory;
+import org.example.kurs.repository.LicenseHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Маленькая порция: выборка и удаление месяца идут в несколько приемов
+@SpringBootTest(properties = "licensing.history.archive.chunk-size=7")
+@ActiveProfiles("test")
+class LicenseHistoryArchiveTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2001, 3);
+
+    @Autowired
+    private LicenseHistoryArchive licenseHistoryArchive;
+
+    @Autowired
+    private LicenseHistoryRepository licenseHistoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${licensing.history.archive.directory}")
+    private String directory;
+
+    @Test
+    void expiredMonthsMoveToArchiveAndStayReadable() throws Exception {
+        // Архив от прошлых запусков не должен попасть в проверку
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith("license-history-2001-")).toList()) {
+                Files.delete(file);
+            }
+        }
+
+        List<LicenseHistory> rows = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            rows.add(new LicenseHistory(null, 1000L + i % 3, 1L, "Создана",
+                    Timestamp.valueOf(MONTH.atDay(1 + i % 28).atTime(12, i)), "archived " + i, null));
+        }
+        rows.add(new LicenseHistory(null, 1000L, 1L, "Создана",
+                Timestamp.valueOf(MONTH.plusMonths(1).atDay(1).atStartOfDay()), "kept", null));
+        licenseHistoryRepository.saveAll(rows);
+        long before = licenseHistoryRepository.count();
+
+        assertEquals(30, licenseHistoryArchive.archiveBefore(MONTH.plusMonths(1)));
+
+        assertEquals(before - 30, licenseHistoryRepository.count());
+        assertTrue(licenseHistoryArchive.months().contains(MONTH.toString()));
+        List<LicenseHistory> archived = new ArrayList<>();
+        licenseHistoryArchive.read(MONTH, history -> history.getLicenseId() == 1000L, archived::add);
+        assertEquals(10, archived.size());
+        assertTrue(archived.stream().allMatch(history -> history.getDescription().startsWith("archived")));
+
+        // Повторный запуск ничего не дублирует
+        assertEquals(0, licenseHistoryArchive.archiveBefore(MONTH.plusMonths(1)));
+
+        // Прерванное удаление: часть строк осталась в таблице и попадет во второй файл месяца
+        List<LicenseHistory> all = new ArrayList<>();
+        licenseHistoryArchive.read(MONTH, history -> true, all::add);
+        assertEquals(30, all.size());
+        for (LicenseHistory history : all.subList(5, 20)) {
+            jdbcTemplate.update("insert into license_history (id, license_id, user_id, status, change_date, description) "
+                            + "values (?, ?, ?, ?, ?, ?)", history.getId(), history.getLicenseId(), history.getUserId(),
+                    history.getStatus(), history.getChangeDate(), history.getDescription());
+        }
+        Thread.sleep(5);
+        assertEquals(15, licenseHistoryArchive.archiveBefore(MONTH.plusMonths(1)));
+
+        List<LicenseHistory> merged = new ArrayList<>();
+        licenseHistoryArchive.read(MONTH, history -> true, merged::add);
+        assertEquals(all.stream().map(LicenseHistory::getId).toList(), merged.stream().map(LicenseHistory::getId).toList());
+        for (int i = 1; i < merged.size(); i++) {
+            assertTrue(!merged.get(i).getChangeDate().before(merged.get(i - 1).getChangeDate()));
+        }
+    }
+}
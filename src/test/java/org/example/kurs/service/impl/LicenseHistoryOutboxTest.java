@@ -0,0 +1,75 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.service.LicenseHistoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Путь через outbox: публикация в транзакции, запись после коммита, отметка о выполнении и повторная отправка.
+// resubmit-after=0 - незавершенная публикация отправляется повторно при первом же вызове
+@SpringBootTest(properties = "licensing.history.resubmit-after=0")
+@ActiveProfiles("test")
+class LicenseHistoryOutboxTest {
+
+    private static final long LICENSE_ID = 7_100_001L;
+
+    @Autowired
+    private LicenseHistoryService licenseHistoryService;
+
+    @Autowired
+    private LicenseHistoryWriter licenseHistoryWriter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void resubmittedPublicationDoesNotDuplicateHistory() throws Exception {
+        transactionTemplate.executeWithoutResult(status ->
+                licenseHistoryService.recordLicenseChange(LICENSE_ID, 1L, "Создана", new Date(), "outbox"));
+
+        awaitCompleted(LICENSE_ID);
+        String eventId = jdbcTemplate.queryForObject(
+                "select event_id from license_history where license_id = ?", String.class, LICENSE_ID);
+        long skipped = (long) licenseHistoryWriter.getStats().get("skipped");
+
+        // История записана, но отметка о выполнении потеряна (сбой между коммитом пакета и отметкой)
+        jdbcTemplate.update("update event_publication set completion_date = null where serialized_event like ?",
+                "%" + eventId + "%");
+        licenseHistoryService.resubmitIncomplete();
+
+        awaitCompleted(LICENSE_ID);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from license_history where license_id = ?", Integer.class, LICENSE_ID));
+        assertEquals(skipped + 1, licenseHistoryWriter.getStats().get("skipped"));
+    }
+
+    // Ждем, пока публикация отмечена выполненной: это происходит после коммита пакета с записью
+    private void awaitCompleted(long licenseId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (incomplete(licenseId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(incomplete(licenseId));
+    }
+
+    private boolean incomplete(long licenseId) {
+        Integer pending = jdbcTemplate.queryForObject(
+                "select count(*) from event_publication where completion_date is null and serialized_event like ?",
+                Integer.class, "%\"licenseId\":" + licenseId + "%");
+        Integer completed = jdbcTemplate.queryForObject(
+                "select count(*) from event_publication where completion_date is not null and serialized_event like ?",
+                Integer.class, "%\"licenseId\":" + licenseId + "%");
+        return pending > 0 || completed == 0;
+    }
+}
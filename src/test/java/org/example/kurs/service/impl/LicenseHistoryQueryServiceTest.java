@@ -0,0 +1,73 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.KeysetPage;
+import org.example.kurs.model.LicenseHistory;
+import org.example.kurs.repository.LicenseHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class LicenseHistoryQueryServiceTest {
+
+    private static final long LICENSE_ID = 990_019L;
+
+    @Autowired
+    private LicenseHistoryQueryService licenseHistoryQueryService;
+
+    @Autowired
+    private LicenseHistoryRepository licenseHistoryRepository;
+
+    @Test
+    void pagesThroughFilteredHistoryWithoutGapsOrDuplicates() {
+        // Группы по 4 записи с одинаковым временем проверяют порядок по id внутри одного change_date
+        long base = System.currentTimeMillis() - 1_000_000;
+        List<LicenseHistory> rows = new ArrayList<>();
+        for (int i = 0; i < 103; i++) {
+            String status = i % 2 == 0 ? "Активирована" : "Создана";
+            rows.add(new LicenseHistory(null, LICENSE_ID, 1L, status, new Date(base + (i / 4) * 1000L), "row " + i, null));
+        }
+        rows.add(new LicenseHistory(null, LICENSE_ID + 1, 1L, "Создана", new Date(base), "other license", null));
+        licenseHistoryRepository.saveAll(rows);
+
+        List<LicenseHistory> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            KeysetPage<LicenseHistory> page = licenseHistoryQueryService.find(LICENSE_ID, null, null, null, null, cursor, 10);
+            assertTrue(page.getItems().size() <= 10);
+            seen.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(11, pages);
+        assertEquals(103, seen.size());
+        assertEquals(103, seen.stream().map(LicenseHistory::getId).distinct().count());
+        for (int i = 1; i < seen.size(); i++) {
+            LicenseHistory previous = seen.get(i - 1);
+            LicenseHistory current = seen.get(i);
+            int byDate = previous.getChangeDate().compareTo(current.getChangeDate());
+            assertTrue(byDate > 0 || (byDate == 0 && previous.getId() > current.getId()));
+        }
+
+        KeysetPage<LicenseHistory> activated = licenseHistoryQueryService.find(LICENSE_ID, null, "Активирована",
+                new Date(base), new Date(base + 10_000), null, 100);
+        assertEquals(20, activated.getItems().size());
+        assertNull(activated.getNextCursor());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> licenseHistoryQueryService.find(LICENSE_ID, null, null, null, null, "not-a-cursor", 10));
+    }
+}
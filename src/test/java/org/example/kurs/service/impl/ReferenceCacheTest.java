@@ -0,0 +1,121 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.Product;
+import org.example.kurs.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReferenceCacheTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Test
+    void productReadsAreCachedAndWritesInvalidate() {
+        Product product = new Product();
+        product.setName("Cached product");
+        productService.saveProduct(product);
+
+        long hitsBefore = (long) productService.getCacheStats().get("hits");
+        assertEquals("Cached product", productService.getProductById(product.getId()).orElseThrow().getName());
+        assertEquals("Cached product", productService.getProductById(product.getId()).orElseThrow().getName());
+        assertEquals(hitsBefore + 1, (long) productService.getCacheStats().get("hits"));
+
+        Product renamed = new Product();
+        renamed.setId(product.getId());
+        renamed.setName("Renamed product");
+        productService.saveProduct(renamed);
+        assertEquals("Renamed product", productService.getProductById(product.getId()).orElseThrow().getName());
+
+        productService.deleteProduct(product.getId());
+        assertFalse(productService.getProductById(product.getId()).isPresent());
+    }
+
+    @Test
+    void refreshAheadReloadsInBackground() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        MutableClock clock = new MutableClock(1_000_000L);
+        NearCache<Long, Integer> cache = new NearCache<>("test-cache", key -> Optional.of(loads.incrementAndGet()), 10, 400, 0.25, clock);
+        try {
+            assertEquals(1, cache.get(1L).orElseThrow());
+            clock.advance(99);
+            // Моложе refresh-ahead: фонового обновления нет
+            assertEquals(1, cache.get(1L).orElseThrow());
+            clock.advance(51);
+            // Запись старше refresh-ahead: прежнее значение сразу, новое загружается в фоне
+            assertEquals(1, cache.get(1L).orElseThrow());
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((long) cache.getStats().get("refreshes") < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(2, cache.get(1L).orElseThrow());
+
+            Map<String, Object> stats = cache.getStats();
+            assertEquals(1L, stats.get("refreshes"));
+            assertEquals(2, loads.get());
+            assertTrue((double) stats.get("hitRatio") > 0.5);
+
+            // Обновленная запись отсчитывает ttl заново
+            clock.advance(399);
+            assertEquals(2, cache.get(1L).orElseThrow());
+        } finally {
+            cache.close();
+        }
+    }
+
+    // Сброс ключа отменяет сохранение только его загрузки: загрузки других ключей кешируются
+    @Test
+    void invalidateDiscardsOnlyLoadsOfTheSameKey() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        NearCache<Long, Long> cache = new NearCache<>("test-cache", key -> {
+            started.countDown();
+            await(release);
+            return Optional.of(key * 10);
+        }, 10, 60_000, 0, new MutableClock(1_000_000L));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Long>> kept = executor.submit(() -> cache.get(1L));
+            Future<Optional<Long>> discarded = executor.submit(() -> cache.get(3L));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            cache.invalidate(2L);
+            cache.invalidate(3L);
+            release.countDown();
+
+            assertEquals(10L, kept.get(5, TimeUnit.SECONDS).orElseThrow());
+            assertEquals(30L, discarded.get(5, TimeUnit.SECONDS).orElseThrow());
+            Map<String, Object> stats = cache.getStats();
+            assertEquals(1, stats.get("size"));
+            assertEquals(10L, cache.get(1L).orElseThrow());
+            assertEquals(1L, cache.getStats().get("hits"));
+        } finally {
+            executor.shutdownNow();
+            cache.close();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordSurvivesEncodeAndDecode() {
+        Ticket ticket = ticket(1);
+        ByteBuffer buffer = ByteBuffer.allocate(TicketJournalFormat.HEADER_LENGTH + TicketJournalFormat.MAX_PAYLOAD_LENGTH);
+
+        TicketJournalFormat.encode(ticket, buffer);
+        Ticket decoded = TicketJournalFormat.decode(buffer);
+
+        assertSameTicket(ticket, decoded);
+        assertEquals(buffer.limit(), buffer.position());
+    }
+
+    @Test
+    void absentValuesSurviveEncodeAndDecode() {
+        Ticket ticket = Ticket.createTicket(null, true, null);
+        ticket.setServerDate(null);
+        ticket.setActivationDate(null);
+        ByteBuffer buffer = ByteBuffer.allocate(TicketJournalFormat.HEADER_LENGTH + TicketJournalFormat.MAX_PAYLOAD_LENGTH);
+
+        TicketJournalFormat.encode(ticket, buffer);
+        Ticket decoded = TicketJournalFormat.decode(buffer);
+
+        assertNull(decoded.getServerDate());
+        assertNull(decoded.getActivationDate());
+        assertNull(decoded.getExpirationDate());
+        assertNull(decoded.getUserId());
+        assertNull(decoded.getDeviceId());
+        assertNull(decoded.getDigitalSignature());
+        assertTrue(decoded.isBlocked());
+    }
+
+    @Test
+    void corruptedRecordFailsCrcCheck() {
+        ByteBuffer buffer = ByteBuffer.allocate(TicketJournalFormat.HEADER_LENGTH + TicketJournalFormat.MAX_PAYLOAD_LENGTH);
+        TicketJournalFormat.encode(ticket(1), buffer);
+        int offset = TicketJournalFormat.HEADER_LENGTH + 20;
+        buffer.put(offset, (byte) (buffer.get(offset) ^ 1));
+
+        assertNull(TicketJournalFormat.decode(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void appendsRollOverToNewSegmentsAndReadInOrder() throws IOException {
+        TicketJournal journal = journal(1024, TicketJournal.FsyncPolicy.INTERVAL);
+        for (int i = 0; i < 40; i++) {
+            journal.append(ticket(i));
+        }
+        journal.flush();
+        journal.close();
+
+        TicketJournalReader reader = new TicketJournalReader(directory);
+        assertTrue(reader.segments().size() > 1, "сегментов: " + reader.segments().size());
+        List<Ticket> tickets = new ArrayList<>();
+        reader.forEach(tickets::add);
+        assertEquals(40, tickets.size());
+        for (int i = 0; i < 40; i++) {
+            assertSameTicket(ticket(i), tickets.get(i));
+        }
+    }
+
+    @Test
+    void reopenSkipsTornTailAndContinuesAfterLastRecord() throws IOException {
+        TicketJournal journal = journal(64 * 1024, TicketJournal.FsyncPolicy.ALWAYS);
+        for (int i = 0; i < 3; i++) {
+            journal.append(ticket(i));
+        }
+        long end = segmentEnd();
+        journal.close();
+
+        // Оборванная запись: заголовок с длиной есть, payload записан не полностью
+        Path segment = new TicketJournalReader(directory).segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(20);
+            torn.putInt(100).putInt(12345).putLong(7L).putInt(9).flip();
+            channel.write(torn, end);
+        }
+        assertEquals(3, TicketJournalReader.readSegment(segment).size());
+
+        TicketJournal reopened = journal(64 * 1024, TicketJournal.FsyncPolicy.ALWAYS);
+        assertEquals(end, ((Number) reopened.getStats().get("segmentPosition")).longValue());
+        reopened.append(ticket(3));
+        reopened.close();
+
+        List<Ticket> tickets = TicketJournalReader.readSegment(segment);
+        assertEquals(4, tickets.size());
+        assertSameTicket(ticket(3), tickets.get(3));
+    }
+
+    @Test
+    void appendDoesNotWaitForFlush() throws Exception {
+        TicketJournal journal = journal(64 * 1024, TicketJournal.FsyncPolicy.INTERVAL);
+        Object flushLock = ReflectionTestUtils.getField(journal, "flushLock");
+
+        // Пока идет сброс на диск (удерживается блокировка сброса), тикеты продолжают записываться
+        synchronized (flushLock) {
+            CompletableFuture.runAsync(() -> journal.append(ticket(1))).get(5, TimeUnit.SECONDS);
+        }
+        journal.flush();
+        journal.close();
+
+        assertEquals(1L, journal.getStats().get("appended"));
+        assertEquals(1L, journal.getStats().get("flushes"));
+    }
+
+    private TicketJournal journal(int segmentSize, TicketJournal.FsyncPolicy fsyncPolicy) throws IOException {
+        TicketJournal journal = new TicketJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directoryName", directory.toString());
+        ReflectionTestUtils.setField(journal, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(journal, "fsyncPolicy", fsyncPolicy);
+        journal.open();
+        return journal;
+    }
+
+    private long segmentEnd() {
+        List<Ticket> tickets = TicketJournalReader.readSegment(new TicketJournalReader(directory).segments().get(0));
+        ByteBuffer buffer = ByteBuffer.allocate(TicketJournalFormat.HEADER_LENGTH + TicketJournalFormat.MAX_PAYLOAD_LENGTH);
+        long end = 0;
+        for (Ticket ticket : tickets) {
+            TicketJournalFormat.encode(ticket, buffer);
+            end += buffer.remaining();
+        }
+        return end;
+    }
+
+    private static Ticket ticket(int i) {
+        Ticket ticket = Ticket.createTicket(100L + i, i % 2 == 0, new Date(1_800_000_000_000L + i));
+        ticket.setServerDate(LocalDateTime.of(2026, 1, 1, 0, 0).plusMinutes(i).truncatedTo(ChronoUnit.MILLIS));
+        ticket.setActivationDate(new Date(1_700_000_000_000L + i));
+        ticket.setDeviceId(200L + i);
+        ticket.setDigitalSignature("signature-" + i);
+        return ticket;
+    }
+
+    private static void assertSameTicket(Ticket expected, Ticket actual) {
+        assertEquals(expected.getServerDate(), actual.getServerDate());
+        assertEquals(expected.getTicketLifetime(), actual.getTicketLifetime());
+        assertEquals(expected.getActivationDate(), actual.getActivationDate());
+        assertEquals(expected.getExpirationDate(), actual.getExpirationDate());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getDeviceId(), actual.getDeviceId());
+        assertEquals(expected.isBlocked(), actual.isBlocked());
+        assertEquals(expected.getDigitalSignature(), actual.getDigitalSignature());
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.kurs.service.impl;
+
+import org.example.kurs.client.TicketVerifier;
+import org.example.kurs.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketSignerTest {
+
+    private TicketSigner signer;
+    private TicketVerifier verifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signer = signer("", "");
+        verifier = TicketVerifier.fromBase64(signer.getPublicKey());
+    }
+
+    @Test
+    void signedTicketVerifiesWithPublishedKey() {
+        LocalDateTime serverDate = LocalDateTime.of(2026, 1, 10, 12, 0);
+        Date expirationDate = new Date(serverDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 86_400_000L);
+        Ticket ticket = ticket(serverDate, 42L, 7L, expirationDate, false);
+
+        TicketVerifier.VerifiedTicket verified = verifier.verify(signer.sign(ticket).getDigitalSignature());
+
+        assertEquals(serverDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), verified.getServerDate().getTime());
+        assertEquals(5, verified.getTicketLifetime());
+        assertEquals(42L, verified.getUserId());
+        assertEquals(7L, verified.getDeviceId());
+        assertEquals(expirationDate, verified.getExpirationDate());
+        assertFalse(verified.isBlocked());
+        // Доверие ограничено датой окончания лицензии, а не сроком жизни тикета
+        assertEquals(expirationDate, verified.getTrustedUntil());
+        assertTrue(verified.isValidAt(new Date(expirationDate.getTime() - 1)));
+        assertFalse(verified.isValidAt(expirationDate));
+    }
+
+    @Test
+    void absentFieldsSurviveRoundTrip() {
+        Ticket ticket = ticket(LocalDateTime.now(), null, null, null, true);
+
+        TicketVerifier.VerifiedTicket verified = verifier.verify(signer.sign(ticket).getDigitalSignature());
+
+        assertNull(verified.getUserId());
+        assertNull(verified.getDeviceId());
+        assertNull(verified.getExpirationDate());
+        assertTrue(verified.isBlocked());
+        assertFalse(verified.isValidAt(new Date()));
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        String compact = signer.sign(ticket(LocalDateTime.now(), 42L, 7L, new Date(), false)).getDigitalSignature();
+        int separator = compact.indexOf('.');
+        byte[] payload = Base64.getUrlDecoder().decode(compact.substring(0, separator));
+        // Меняем младший байт userId
+        payload[payload.length - 17] ^= 1;
+        String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(payload) + compact.substring(separator);
+
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(tampered));
+    }
+
+    @Test
+    void tamperedSignatureIsRejected() {
+        String compact = signer.sign(ticket(LocalDateTime.now(), 42L, 7L, new Date(), false)).getDigitalSignature();
+        int separator = compact.indexOf('.');
+        byte[] signature = Base64.getUrlDecoder().decode(compact.substring(separator + 1));
+        signature[0] ^= 1;
+        String tampered = compact.substring(0, separator + 1) + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(tampered));
+    }
+
+    @Test
+    void ticketSignedWithAnotherKeyIsRejected() throws Exception {
+        TicketSigner other = signer("", "");
+        String compact = other.sign(ticket(LocalDateTime.now(), 42L, 7L, new Date(), false)).getDigitalSignature();
+
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(compact));
+    }
+
+    @Test
+    void malformedTicketIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(null));
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify("no-separator"));
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify("!!!.???"));
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(".abc"));
+    }
+
+    @Test
+    void configuredKeyPairIsUsed() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance(TicketVerifier.ALGORITHM).generateKeyPair();
+        Base64.Encoder encoder = Base64.getEncoder();
+        TicketSigner configured = signer(encoder.encodeToString(keyPair.getPrivate().getEncoded()),
+                encoder.encodeToString(keyPair.getPublic().getEncoded()));
+
+        String compact = configured.sign(ticket(LocalDateTime.now(), 1L, 2L, new Date(), false)).getDigitalSignature();
+
+        assertEquals(1L, new TicketVerifier(keyPair.getPublic()).verify(compact).getUserId());
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(compact));
+    }
+
+    private static TicketSigner signer(String privateKey, String publicKey) throws Exception {
+        TicketSigner signer = new TicketSigner();
+        ReflectionTestUtils.setField(signer, "privateKeyBase64", privateKey);
+        ReflectionTestUtils.setField(signer, "publicKeyBase64", publicKey);
+        signer.init();
+        return signer;
+    }
+
+    private static Ticket ticket(LocalDateTime serverDate, Long userId, Long deviceId, Date expirationDate, boolean blocked) {
+        Ticket ticket = Ticket.createTicket(userId, blocked, expirationDate);
+        ticket.setServerDate(serverDate);
+        ticket.setDeviceId(deviceId);
+        return ticket;
+    }
+}
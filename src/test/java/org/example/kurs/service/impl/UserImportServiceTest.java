@@ -0,0 +1,170 @@
+package org.example.kurs.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.kurs.LicenseFixtures;
+import org.example.kurs.model.ApplicationRole;
+import org.example.kurs.model.ApplicationUser;
+import org.example.kurs.repository.ApplicationUserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private ApplicationUserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdentifierAllocator identifierAllocator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LicenseFixtures fixtures;
+
+    @Test
+    void csvRowsGetOneOutcomeEach() throws Exception {
+        fixtures.user("csv-taken");
+        String csv = """
+                username,email,password,role
+                "Doe, Jane",csv-jane@example.org,secret,admin
+                Jane again,csv-jane@example.org,secret,
+                Taken,csv-taken@example.org,secret,
+                No email,,secret,
+
+                Bad role,csv-role@example.org,secret,owner
+                "Unclosed,csv-quote@example.org,secret,
+                """;
+
+        List<JsonNode> report = new ArrayList<>();
+        Map<UserImportService.RowStatus, Integer> totals = importUsers(userImportService, csv, UserImportService.Format.CSV, report);
+
+        assertEquals(Map.of(
+                UserImportService.RowStatus.CREATED, 1,
+                UserImportService.RowStatus.DUPLICATE, 1,
+                UserImportService.RowStatus.CONFLICT, 1,
+                UserImportService.RowStatus.INVALID, 3), totals);
+        // Номера строк считаются с заголовком, пустая строка пропускается без записи в отчет
+        assertOutcome(report.get(0), 2, "CREATED");
+        assertOutcome(report.get(1), 3, "DUPLICATE");
+        assertOutcome(report.get(2), 4, "CONFLICT");
+        assertOutcome(report.get(3), 5, "INVALID");
+        assertOutcome(report.get(4), 7, "INVALID");
+        assertOutcome(report.get(5), 8, "INVALID");
+        assertEquals(1, report.get(6).get("summary").get("created").asInt());
+
+        ApplicationUser created = userRepository.findByEmail("csv-jane@example.org").orElseThrow();
+        assertEquals("Doe, Jane", created.getUsername());
+        assertEquals(ApplicationRole.ADMIN, created.getRole());
+        assertTrue(passwordEncoder.matches("secret", created.getPassword()));
+    }
+
+    @Test
+    void ndjsonKeepsPreHashedPassword() throws Exception {
+        String hash = new BCryptPasswordEncoder(4).encode("migrated");
+        String ndjson = "{\"username\":\"hashed\",\"email\":\"ndjson-hashed@example.org\",\"password_hash\":\"" + hash + "\"}\n"
+                + "{\"username\":\"plain\",\"email\":\"ndjson-plain@example.org\",\"password\":\"secret\"}\n"
+                + "{\"username\":\"not a hash\",\"email\":\"ndjson-bad@example.org\",\"password_hash\":\"secret\"}\n"
+                + "{\"username\":\"broken\"\n";
+
+        List<JsonNode> report = new ArrayList<>();
+        Map<UserImportService.RowStatus, Integer> totals = importUsers(userImportService, ndjson, UserImportService.Format.NDJSON, report);
+
+        assertEquals(Map.of(
+                UserImportService.RowStatus.CREATED, 2,
+                UserImportService.RowStatus.INVALID, 2), totals);
+        assertOutcome(report.get(0), 1, "CREATED");
+        assertOutcome(report.get(1), 2, "CREATED");
+        assertOutcome(report.get(2), 3, "INVALID");
+        assertOutcome(report.get(3), 4, "INVALID");
+
+        // Готовый хеш сохраняется как есть, без повторного хеширования
+        assertEquals(hash, userRepository.findByEmail("ndjson-hashed@example.org").orElseThrow().getPassword());
+        ApplicationUser plain = userRepository.findByEmail("ndjson-plain@example.org").orElseThrow();
+        assertEquals(ApplicationRole.USER, plain.getRole());
+        assertTrue(passwordEncoder.matches("secret", plain.getPassword()));
+    }
+
+    @Test
+    void failedBatchFallsBackToRowByRow() throws Exception {
+        fixtures.user("race-taken");
+        // Проверка порции не видит email, занятый параллельно: пакетная вставка падает на uk_users_email
+        ApplicationUserRepository staleRepository = mock(ApplicationUserRepository.class);
+        when(staleRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        UserImportService service = new UserImportService(staleRepository, passwordEncoder, jdbcTemplate,
+                identifierAllocator, transactionTemplate, objectMapper, 1, 500);
+        String hash = new BCryptPasswordEncoder(4).encode("migrated");
+        String csv = "username,email,password_hash\n"
+                + "first,race-first@example.org," + hash + "\n"
+                + "taken,race-taken@example.org," + hash + "\n"
+                + "second,race-second@example.org," + hash + "\n";
+
+        List<JsonNode> report = new ArrayList<>();
+        try {
+            Map<UserImportService.RowStatus, Integer> totals = importUsers(service, csv, UserImportService.Format.CSV, report);
+
+            assertEquals(Map.of(
+                    UserImportService.RowStatus.CREATED, 2,
+                    UserImportService.RowStatus.CONFLICT, 1), totals);
+        } finally {
+            service.shutdown();
+        }
+        assertOutcome(report.get(0), 2, "CREATED");
+        assertOutcome(report.get(1), 3, "CONFLICT");
+        assertOutcome(report.get(2), 4, "CREATED");
+        assertTrue(userRepository.findByEmail("race-first@example.org").isPresent());
+        assertTrue(userRepository.findByEmail("race-second@example.org").isPresent());
+        assertEquals("-", userRepository.findByEmail("race-taken@example.org").orElseThrow().getPassword());
+    }
+
+    private Map<UserImportService.RowStatus, Integer> importUsers(UserImportService service, String input,
+                                                                 UserImportService.Format format,
+                                                                 List<JsonNode> report) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Map<UserImportService.RowStatus, Integer> totals = service.importUsers(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), format, output);
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            report.add(objectMapper.readTree(line));
+        }
+        return totals;
+    }
+
+    private static void assertOutcome(JsonNode row, int line, String status) {
+        assertEquals(line, row.get("line").asInt());
+        assertEquals(status, row.get("status").asText(), row.toString());
+    }
+}